@@ -0,0 +1,116 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Writes every {@code @PreInit} and {@code @PostInit} method and its dependencies to {@value #INDEX} so ReflectInit does
+ * not have to scan the classpath at startup. Addons can use it by adding {@code meteordevelopment:meteor-client-processor}
+ * to their {@code annotationProcessor} dependencies. The processor is registered as aggregating for incremental builds
+ * with Gradle.
+ * <p>
+ * Each line of the index is {@code <annotation> <class> <method> [<dependency>,...]} with binary class names.
+ */
+@SupportedAnnotationTypes({
+    "meteordevelopment.meteorclient.utils.PreInit",
+    "meteordevelopment.meteorclient.utils.PostInit"
+})
+public class InitIndexProcessor extends AbstractProcessor {
+    public static final String INDEX = "META-INF/meteor-client/init.index";
+
+    private static final Map<String, String> ANNOTATIONS = Map.of(
+        "meteordevelopment.meteorclient.utils.PreInit", "PreInit",
+        "meteordevelopment.meteorclient.utils.PostInit", "PostInit"
+    );
+
+    private final List<String> entries = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            String name = ANNOTATIONS.get(annotation.getQualifiedName().toString());
+            if (name == null) continue;
+
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.METHOD) continue;
+                ExecutableElement method = (ExecutableElement) element;
+
+                if (!method.getModifiers().contains(Modifier.STATIC) || !method.getParameters().isEmpty()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Init methods must be static and take no parameters.", method);
+                    continue;
+                }
+
+                TypeElement owner = (TypeElement) method.getEnclosingElement();
+                StringBuilder sb = new StringBuilder();
+                sb.append(name).append(' ').append(binaryName(owner)).append(' ').append(method.getSimpleName());
+
+                List<String> dependencies = getDependencies(method, annotation);
+                if (!dependencies.isEmpty()) sb.append(' ').append(String.join(",", dependencies));
+
+                entries.add(sb.toString());
+            }
+        }
+
+        if (roundEnv.processingOver()) write();
+        return false;
+    }
+
+    private List<String> getDependencies(ExecutableElement method, TypeElement annotation) {
+        List<String> dependencies = new ArrayList<>();
+
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) continue;
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("dependencies")) continue;
+
+                @SuppressWarnings("unchecked")
+                List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) entry.getValue().getValue();
+
+                for (AnnotationValue value : values) {
+                    TypeMirror type = (TypeMirror) value.getValue();
+                    dependencies.add(binaryName((TypeElement) ((DeclaredType) type).asElement()));
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+
+            try (Writer writer = file.openWriter()) {
+                for (String entry : entries) writer.write(entry + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write init index: " + e.getMessage());
+        }
+    }
+}
@@ -137,6 +137,7 @@ public class MeteorClient implements ClientModInitializer {
             OnlinePlayers.leave();
             Systems.save();
             GuiThemes.save();
+            Systems.flush();
         }));
     }
 
@@ -78,11 +78,13 @@ public class SwarmCommand extends Command {
             if (swarm.isActive()) {
                 if (swarm.isHost()) {
                     if (swarm.host.getConnectionCount() > 0) {
-                        ChatUtils.info("--- Swarm Connections (highlight)(%s/%s)(default) ---", swarm.host.getConnectionCount(), swarm.host.getConnections().length);
+                        ChatUtils.info("--- Swarm Connections (highlight)(%s)(default) ---", swarm.host.getConnectionCount());
 
-                        for (int i = 0; i < swarm.host.getConnections().length; i++) {
-                            SwarmConnection connection = swarm.host.getConnections()[i];
-                            if (connection != null) ChatUtils.info("(highlight)Worker %s(default): %s.", i, connection.getConnection());
+                        for (int i = 0; i < swarm.host.getConnections().size(); i++) {
+                            SwarmConnection connection = swarm.host.getConnections().get(i);
+                            long latency = connection.getLastLatency();
+
+                            ChatUtils.info("(highlight)Worker %s(default): %s, latency: %s, unacknowledged: %s.", i, connection.getConnection(), latency == -1 ? "?" : String.format("%.2fms", latency / 1_000_000.0), connection.getUnacknowledged());
                         }
                     }
                     else {
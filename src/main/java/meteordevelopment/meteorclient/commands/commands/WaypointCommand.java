@@ -74,7 +74,7 @@ public class WaypointCommand extends Command {
             Waypoint waypoint = WaypointArgumentType.get(context);
             waypoint.visible.set(!waypoint.visible.get());
 
-            Waypoints.get().save();
+            Waypoints.get().markDirty();
             return SINGLE_SUCCESS;
         })));
     }
@@ -8,39 +8,45 @@ package meteordevelopment.meteorclient.events.packets;
 import meteordevelopment.meteorclient.events.Cancellable;
 import net.minecraft.network.packet.Packet;
 
+/**
+ * Packets are posted from both the render and the netty threads so every thread uses its own event instances.
+ */
 public class PacketEvent {
     public static class Receive extends Cancellable {
-        private static final Receive INSTANCE = new Receive();
+        private static final ThreadLocal<Receive> INSTANCE = ThreadLocal.withInitial(Receive::new);
 
         public Packet<?> packet;
 
         public static Receive get(Packet<?> packet) {
-            INSTANCE.setCancelled(false);
-            INSTANCE.packet = packet;
-            return INSTANCE;
+            Receive event = INSTANCE.get();
+            event.setCancelled(false);
+            event.packet = packet;
+            return event;
         }
     }
 
     public static class Send extends Cancellable {
-        private static final Send INSTANCE = new Send();
+        private static final ThreadLocal<Send> INSTANCE = ThreadLocal.withInitial(Send::new);
 
         public Packet<?> packet;
 
         public static Send get(Packet<?> packet) {
-            INSTANCE.setCancelled(false);
-            INSTANCE.packet = packet;
-            return INSTANCE;
+            Send event = INSTANCE.get();
+            event.setCancelled(false);
+            event.packet = packet;
+            return event;
         }
     }
 
     public static class Sent {
-        private static final Sent INSTANCE = new Sent();
+        private static final ThreadLocal<Sent> INSTANCE = ThreadLocal.withInitial(Sent::new);
 
         public Packet<?> packet;
 
         public static Sent get(Packet<?> packet) {
-            INSTANCE.packet = packet;
-            return INSTANCE;
+            Sent event = INSTANCE.get();
+            event.packet = packet;
+            return event;
         }
     }
 }
@@ -23,7 +23,6 @@ import net.minecraft.item.Items;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import static meteordevelopment.meteorclient.utils.Utils.getWindowHeight;
 import static meteordevelopment.meteorclient.utils.Utils.getWindowWidth;
@@ -80,32 +79,26 @@ public class ModulesScreen extends TabScreen {
     protected void createSearchW(WContainer w, String text) {
         if (!text.isEmpty()) {
             // Titles
-            Set<Module> modules = Modules.get().searchTitles(text);
+            List<Module> modules = Modules.get().searchTitles(text, Config.get().moduleSearchCount.get());
 
             if (modules.size() > 0) {
                 WSection section = w.add(theme.section("Modules")).expandX().widget();
                 section.spacing = 0;
 
-                int count = 0;
                 for (Module module : modules) {
-                    if (count >= Config.get().moduleSearchCount.get() || count >= modules.size()) break;
                     section.add(theme.module(module)).expandX();
-                    count++;
                 }
             }
 
             // Settings
-            modules = Modules.get().searchSettingTitles(text);
+            modules = Modules.get().searchSettingTitles(text, Config.get().moduleSearchCount.get());
 
             if (modules.size() > 0) {
                 WSection section = w.add(theme.section("Settings")).expandX().widget();
                 section.spacing = 0;
 
-                int count = 0;
                 for (Module module : modules) {
-                    if (count >= Config.get().moduleSearchCount.get() || count >= modules.size()) break;
                     section.add(theme.module(module)).expandX();
-                    count++;
                 }
             }
         }
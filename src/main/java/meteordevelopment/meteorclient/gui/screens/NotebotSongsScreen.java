@@ -5,7 +5,6 @@
 
 package meteordevelopment.meteorclient.gui.screens;
 
-import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.containers.WTable;
@@ -14,13 +13,9 @@ import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.systems.modules.misc.Notebot;
 import meteordevelopment.meteorclient.utils.Utils;
-import meteordevelopment.meteorclient.utils.notebot.decoder.SongDecoders;
-import org.apache.commons.io.FilenameUtils;
+import meteordevelopment.meteorclient.utils.notebot.SongLibrary;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.concurrent.atomic.AtomicBoolean;
+import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class NotebotSongsScreen extends WindowScreen {
     private static final Notebot notebot = Modules.get().get(Notebot.class);
@@ -32,6 +27,14 @@ public class NotebotSongsScreen extends WindowScreen {
 
     public NotebotSongsScreen(GuiTheme theme) {
         super(theme, "Notebot Songs");
+
+        // Songs are listed from the library index which is refreshed in the background
+        SongLibrary.refresh(() -> {
+            if (mc.currentScreen == this && table != null) {
+                table.clear();
+                initSongsTable();
+            }
+        });
     }
 
     @Override
@@ -56,40 +59,43 @@ public class NotebotSongsScreen extends WindowScreen {
     }
 
     private void initSongsTable() {
-        AtomicBoolean noSongsFound = new AtomicBoolean(true);
-        try {
-            Files.list(MeteorClient.FOLDER.toPath().resolve("notebot")).forEach(path -> {
-                if (SongDecoders.hasDecoder(path)) {
-                    String name = path.getFileName().toString();
-
-                    if (Utils.searchTextDefault(name, filterText, false)){
-                        addPath(path);
-                        noSongsFound.set(false);
-                    }
-                }
-            });
-        } catch (IOException e) {
+        if (!SongLibrary.FOLDER.isDirectory()) {
             table.add(theme.label("Missing meteor-client/notebot folder.")).expandCellX();
             table.row();
         }
 
-        if (noSongsFound.get()) {
-            table.add(theme.label("No songs found.")).expandCellX().center();
+        boolean noSongsFound = true;
+
+        for (SongLibrary.Entry entry : SongLibrary.getEntries()) {
+            String name = entry.file().getName();
+
+            if (Utils.searchTextDefault(name, filterText, false) || (!filterText.isEmpty() && Utils.searchInWords(entry.title(), filterText) > 0)) {
+                addEntry(entry);
+                noSongsFound = false;
+            }
+        }
+
+        if (noSongsFound) {
+            table.add(theme.label(SongLibrary.isRefreshing() ? "Indexing songs..." : "No songs found.")).expandCellX().center();
         }
     }
 
-    private void addPath(Path path) {
+    private void addEntry(SongLibrary.Entry entry) {
         table.add(theme.horizontalSeparator()).expandX().minWidth(400);
         table.row();
 
-        table.add(theme.label(FilenameUtils.getBaseName(path.getFileName().toString()))).expandCellX();
+        table.add(theme.label(entry.getName())).expandCellX();
+
+        int seconds = Math.max(entry.lastTick(), 0) / 20;
+        table.add(theme.label(String.format("%d:%02d", seconds / 60, seconds % 60))).right();
+
         WButton load = table.add(theme.button("Load")).right().widget();
         load.action = () -> {
-            notebot.loadSong(path.toFile());
+            notebot.loadSong(entry.file());
         };
         WButton preview = table.add(theme.button("Preview")).right().widget();
         preview.action = () -> {
-            notebot.previewSong(path.toFile());
+            notebot.previewSong(entry.file());
         };
 
         table.row();
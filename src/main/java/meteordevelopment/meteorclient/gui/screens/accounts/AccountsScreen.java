@@ -54,7 +54,7 @@ public class AccountsScreen extends WindowScreen {
                 account.getCache().loadHead();
 
                 Accounts.get().add(account);
-                if (account.login()) Accounts.get().save();
+                if (account.login()) Accounts.get().markDirty();
 
                 if (screen != null) {
                     screen.locked = false;
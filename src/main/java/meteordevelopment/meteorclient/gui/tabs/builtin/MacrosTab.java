@@ -108,7 +108,7 @@ public class MacrosTab extends Tab {
             }
 
             if (isNew) Macros.get().add(value);
-            else Macros.get().save();
+            else Macros.get().markDirty();
 
             return true;
         }
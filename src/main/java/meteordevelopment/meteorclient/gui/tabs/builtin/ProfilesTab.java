@@ -134,7 +134,7 @@ public class ProfilesTab extends Tab {
                 profile.loadOnJoin.set(valid);
 
                 if (isNew) Profiles.get().add(profile);
-                else Profiles.get().save();
+                else Profiles.get().markDirty();
 
                 close();
             };
@@ -54,7 +54,7 @@ public abstract class WAccount extends WHorizontalList {
                 if (account.login()) {
                     name.set(account.getUsername());
 
-                    Accounts.get().save();
+                    Accounts.get().markDirty();
 
                     screen.taskAfterRender = refreshScreenAction;
                 }
@@ -24,27 +24,27 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(FluidRenderer.class)
 public class FluidRendererMixin {
-    @Unique private final ThreadLocal<Integer> alphas = new ThreadLocal<>();
+    @Unique private final ThreadLocal<int[]> alphas = ThreadLocal.withInitial(() -> new int[1]);
 
     @Inject(method = "render", at = @At("HEAD"), cancellable = true)
     private void onRender(BlockRenderView world, BlockPos pos, VertexConsumer vertexConsumer, BlockState blockState, FluidState fluidState, CallbackInfo info) {
         Ambience ambience = Modules.get().get(Ambience.class);
 
         if (ambience.isActive() && ambience.customLavaColor.get() && fluidState.isIn(FluidTags.LAVA)) {
-            alphas.set(-2);
+            alphas.get()[0] = -2;
         }
         else {
             // Xray and Wallhack
             int alpha = Xray.getAlpha(fluidState.getBlockState(), pos);
 
             if (alpha == 0) info.cancel();
-            else alphas.set(alpha);
+            else alphas.get()[0] = alpha;
         }
     }
 
     @Inject(method = "vertex", at = @At("HEAD"), cancellable = true)
     private void onVertex(VertexConsumer vertexConsumer, double x, double y, double z, float red, float green, float blue, float u, float v, int light, CallbackInfo info) {
-        int alpha = alphas.get();
+        int alpha = alphas.get()[0];
 
         if (alpha == -2) {
             Color color = Modules.get().get(Ambience.class).lavaColor.get();
@@ -14,12 +14,11 @@ import meteordevelopment.meteorclient.renderer.text.FontFamily;
 import meteordevelopment.meteorclient.renderer.text.FontInfo;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+import meteordevelopment.meteorclient.utils.render.FontCache;
 import meteordevelopment.meteorclient.utils.render.FontUtils;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 
@@ -32,21 +31,50 @@ public class Fonts {
     public static final List<FontFamily> FONT_FAMILIES = new ArrayList<>();
     public static CustomTextRenderer RENDERER;
 
-    @PreInit(dependencies = Shaders.class)
+    private static List<FontFamily> builtinFamilies;
+    private static int scanId;
+
+    @PreInit(dependencies = { Shaders.class, MeteorExecutor.class })
     public static void refresh() {
-        FONT_FAMILIES.clear();
+        builtinFamilies = new ArrayList<>();
 
         for (String builtinFont : BUILTIN_FONTS) {
-            FontUtils.loadBuiltin(FONT_FAMILIES, builtinFont);
+            FontUtils.loadBuiltin(builtinFamilies, builtinFont);
         }
 
-        for (String fontPath : FontUtils.getSearchPaths()) {
-            FontUtils.loadSystem(FONT_FAMILIES, new File(fontPath));
-        }
+        Map<String, FontCache.Entry> cache = FontCache.load();
+        int id = ++scanId;
 
-        FONT_FAMILIES.sort(Comparator.comparing(FontFamily::getName));
+        if (cache.isEmpty()) {
+            // Nothing cached yet, scan synchronously so the font saved in the config can be found
+            List<FontCache.Entry> entries = FontUtils.scanSystem(cache);
+            FontCache.save(entries);
 
-        MeteorClient.LOG.info("Found {} font families.", FONT_FAMILIES.size());
+            setFamilies(entries);
+        }
+        else {
+            // Use the cached fonts for now and rescan changed files in the background
+            setFamilies(cache.values());
+
+            MeteorExecutor.execute(() -> {
+                List<FontCache.Entry> entries = FontUtils.scanSystem(cache);
+
+                boolean changed = entries.size() != cache.size();
+                for (FontCache.Entry entry : entries) {
+                    if (cache.get(entry.path()) != entry) {
+                        changed = true;
+                        break;
+                    }
+                }
+
+                if (!changed) return;
+
+                FontCache.save(entries);
+                mc.execute(() -> {
+                    if (id == scanId) setFamilies(entries);
+                });
+            });
+        }
 
         DEFAULT_FONT_FAMILY = FontUtils.getBuiltinFontInfo(BUILTIN_FONTS[1]).family();
         DEFAULT_FONT = getFamily(DEFAULT_FONT_FAMILY).get(FontInfo.Type.Regular);
@@ -55,11 +83,25 @@ public class Fonts {
         load(config != null ? config.font.get() : DEFAULT_FONT);
     }
 
+    private static void setFamilies(Collection<FontCache.Entry> entries) {
+        List<FontFamily> families = new ArrayList<>(builtinFamilies);
+        FontUtils.loadSystem(families, entries);
+        families.sort(Comparator.comparing(FontFamily::getName));
+
+        FONT_FAMILIES.clear();
+        FONT_FAMILIES.addAll(families);
+
+        MeteorClient.LOG.info("Found {} font families.", FONT_FAMILIES.size());
+    }
+
     public static void load(FontFace fontFace) {
         if (RENDERER != null && RENDERER.fontFace.equals(fontFace)) return;
 
         try {
+            CustomTextRenderer previous = RENDERER;
             RENDERER = new CustomTextRenderer(fontFace);
+            if (previous != null) previous.destroy();
+
             MeteorClient.EVENT_BUS.post(CustomFontChangedEvent.get());
         }
         catch (Exception e) {
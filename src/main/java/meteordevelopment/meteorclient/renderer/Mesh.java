@@ -44,6 +44,7 @@ public class Mesh {
 
     private final DrawMode drawMode;
     private final int primitiveVerticesSize;
+    private final int initialVerticesSize, initialIndicesSize;
 
     private final int vao, vbo, ibo;
 
@@ -55,8 +56,8 @@ public class Mesh {
 
     private int vertexI, indicesCount;
 
-    private boolean building, rendering3D;
-    private double cameraX, cameraZ;
+    private boolean building, rendering3D, retained;
+    private double originX, originY, originZ;
     private boolean beganRendering;
 
     public Mesh(DrawMode drawMode, Attrib... attributes) {
@@ -66,11 +67,9 @@ public class Mesh {
         this.drawMode = drawMode;
         this.primitiveVerticesSize = stride * drawMode.indicesCount;
 
-        vertices = BufferUtils.createByteBuffer(primitiveVerticesSize * 256 * 4);
-        verticesPointerStart = memAddress0(vertices);
-
-        indices = BufferUtils.createByteBuffer(drawMode.indicesCount * 512 * 4);
-        indicesPointer = memAddress0(indices);
+        this.initialVerticesSize = primitiveVerticesSize * 256 * 4;
+        this.initialIndicesSize = drawMode.indicesCount * 512 * 4;
+        allocateBuffers();
 
         vao = GL.genVertexArray();
         GL.bindVertexArray(vao);
@@ -102,8 +101,17 @@ public class Mesh {
         GL.deleteVertexArray(vao);
     }
 
+    private void allocateBuffers() {
+        vertices = BufferUtils.createByteBuffer(initialVerticesSize);
+        verticesPointerStart = memAddress0(vertices);
+
+        indices = BufferUtils.createByteBuffer(initialIndicesSize);
+        indicesPointer = memAddress0(indices);
+    }
+
     public void begin() {
         if (building) throw new IllegalStateException("Mesh.end() called while already building.");
+        if (vertices == null) allocateBuffers();
 
         verticesPointer = verticesPointerStart;
         vertexI = 0;
@@ -111,25 +119,50 @@ public class Mesh {
 
         building = true;
         rendering3D = Utils.rendering3D;
+        retained = false;
 
         if (rendering3D) {
             Vec3d camera = mc.gameRenderer.getCamera().getPos();
 
-            cameraX = camera.x;
-            cameraZ = camera.z;
+            originX = camera.x;
+            originZ = camera.z;
         }
         else {
-            cameraX = 0;
-            cameraZ = 0;
+            originX = 0;
+            originZ = 0;
         }
+
+        originY = 0;
+    }
+
+    /**
+     * Begins building a retained 3D mesh. Vertices are stored relative to the origin and the camera offset is only
+     * applied when rendering, so the mesh can be rendered every frame without being built again. The vertex data is
+     * uploaded once in {@link #end()} and the memory used for building is released afterwards.
+     */
+    public void begin(double originX, double originY, double originZ) {
+        if (building) throw new IllegalStateException("Mesh.end() called while already building.");
+        if (vertices == null) allocateBuffers();
+
+        verticesPointer = verticesPointerStart;
+        vertexI = 0;
+        indicesCount = 0;
+
+        building = true;
+        rendering3D = true;
+        retained = true;
+
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
     }
 
     public Mesh vec3(double x, double y, double z) {
         long p = verticesPointer;
 
-        memPutFloat(p, (float) (x - cameraX));
-        memPutFloat(p + 4, (float) y);
-        memPutFloat(p + 8, (float) (z - cameraZ));
+        memPutFloat(p, (float) (x - originX));
+        memPutFloat(p + 4, (float) (y - originY));
+        memPutFloat(p + 8, (float) (z - originZ));
 
         verticesPointer += 12;
         return this;
@@ -230,16 +263,24 @@ public class Mesh {
         if (!building) throw new IllegalStateException("Mesh.end() called while not building.");
 
         if (indicesCount > 0) {
+            int usage = retained ? GL_STATIC_DRAW : GL_DYNAMIC_DRAW;
+
             GL.bindVertexBuffer(vbo);
-            GL.bufferData(GL_ARRAY_BUFFER, vertices.limit(getVerticesOffset()), GL_DYNAMIC_DRAW);
+            GL.bufferData(GL_ARRAY_BUFFER, vertices.limit(getVerticesOffset()), usage);
             GL.bindVertexBuffer(0);
 
             GL.bindIndexBuffer(ibo);
-            GL.bufferData(GL_ELEMENT_ARRAY_BUFFER, indices.limit(indicesCount * 4), GL_DYNAMIC_DRAW);
+            GL.bufferData(GL_ELEMENT_ARRAY_BUFFER, indices.limit(indicesCount * 4), usage);
             GL.bindIndexBuffer(0);
         }
 
         building = false;
+
+        // Retained meshes are rarely built again so their vertices are only kept on the gpu
+        if (retained) {
+            vertices = null;
+            indices = null;
+        }
     }
 
     public void beginRender(MatrixStack matrices) {
@@ -258,7 +299,9 @@ public class Mesh {
             if (matrices != null) matrixStack.multiplyPositionMatrix(matrices.peek().getPositionMatrix());
 
             Vec3d cameraPos = mc.gameRenderer.getCamera().getPos();
-            matrixStack.translate(0, -cameraPos.y, 0);
+
+            if (retained) matrixStack.translate(originX - cameraPos.x, originY - cameraPos.y, originZ - cameraPos.z);
+            else matrixStack.translate(0, -cameraPos.y, 0);
         }
 
         beganRendering = true;
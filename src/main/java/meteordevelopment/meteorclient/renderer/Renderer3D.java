@@ -20,6 +20,15 @@ public class Renderer3D {
         triangles.begin();
     }
 
+    /**
+     * Begins building retained meshes, see {@link Mesh#begin(double, double, double)}. Use a separate renderer for each
+     * retained region and {@link #destroy()} it once the region is no longer rendered.
+     */
+    public void begin(double originX, double originY, double originZ) {
+        lines.begin(originX, originY, originZ);
+        triangles.begin(originX, originY, originZ);
+    }
+
     public void end() {
         lines.end();
         triangles.end();
@@ -30,6 +39,11 @@ public class Renderer3D {
         triangles.render(matrices);
     }
 
+    public void destroy() {
+        lines.destroy();
+        triangles.destroy();
+    }
+
     // Lines
 
     public void line(double x1, double y1, double z1, double x2, double y2, double z2, Color color1, Color color2) {
@@ -6,11 +6,13 @@
 package meteordevelopment.meteorclient.renderer.text;
 
 public class CharData {
+    public final int page;
     public final float x0, y0, x1, y1;
     public final float u0, v0, u1, v1;
     public final float xAdvance;
 
-    public CharData(float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float xAdvance) {
+    public CharData(int page, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float xAdvance) {
+        this.page = page;
         this.x0 = x0;
         this.y0 = y0;
         this.x1 = x1;
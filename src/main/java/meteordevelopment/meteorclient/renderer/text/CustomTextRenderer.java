@@ -5,7 +5,7 @@
 
 package meteordevelopment.meteorclient.renderer.text;
 
-import meteordevelopment.meteorclient.renderer.*;
+import com.mojang.blaze3d.systems.RenderSystem;
 import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import net.minecraft.client.util.math.MatrixStack;
@@ -17,13 +17,14 @@ import java.nio.ByteBuffer;
 public class CustomTextRenderer implements TextRenderer {
     public static final Color SHADOW_COLOR = new Color(60, 60, 60, 180);
 
-    private final Mesh mesh = new ShaderMesh(Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
-
     public final FontFace fontFace;
 
-    private final Font[] fonts;
+    private final ByteBuffer buffer;
+    private final Font[] fonts = new Font[5];
     private Font font;
 
+    private double alpha = 1;
+
     private boolean building;
     private boolean scaleOnly;
     private double scale = 1;
@@ -32,28 +33,28 @@ public class CustomTextRenderer implements TextRenderer {
         this.fontFace = fontFace;
 
         byte[] bytes = Utils.readBytes(fontFace.toStream());
-        ByteBuffer buffer = BufferUtils.createByteBuffer(bytes.length).put(bytes);
+        buffer = BufferUtils.createByteBuffer(bytes.length).put(bytes);
+        ((Buffer) buffer).flip();
+    }
 
-        fonts = new Font[5];
-        for (int i = 0; i < fonts.length; i++) {
-            ((Buffer) buffer).flip();
-            fonts[i] = new Font(buffer, (int) Math.round(18 * ((i * 0.5) + 1)));
-        }
+    private Font getFont(int i) {
+        // Fonts share the same buffer and only rasterize glyphs when they are first rendered
+        if (fonts[i] == null) fonts[i] = new Font(buffer, (int) Math.round(18 * ((i * 0.5) + 1)));
+        return fonts[i];
     }
 
     @Override
     public void setAlpha(double a) {
-        mesh.alpha = a;
+        alpha = a;
+        if (building) font.setAlpha(a);
     }
 
     @Override
     public void begin(double scale, boolean scaleOnly, boolean big) {
         if (building) throw new RuntimeException("CustomTextRenderer.begin() called twice");
 
-        if (!scaleOnly) mesh.begin();
-
         if (big) {
-            this.font = fonts[fonts.length - 1];
+            this.font = getFont(fonts.length - 1);
         }
         else {
             double scaleA = Math.floor(scale * 10) / 10;
@@ -65,12 +66,14 @@ public class CustomTextRenderer implements TextRenderer {
             else if (scaleA >= 1.5) scaleI = 2;
             else scaleI = 1;
 
-            font = fonts[scaleI - 1];
+            font = getFont(scaleI - 1);
         }
 
         this.building = true;
         this.scaleOnly = scaleOnly;
 
+        font.setAlpha(alpha);
+
         double fontScale = font.getHeight() / 18.0;
         this.scale = 1 + (scale - fontScale) / fontScale;
     }
@@ -79,13 +82,13 @@ public class CustomTextRenderer implements TextRenderer {
     public double getWidth(String text, int length, boolean shadow) {
         if (text.isEmpty()) return 0;
 
-        Font font = building ? this.font : fonts[0];
+        Font font = building ? this.font : getFont(0);
         return (font.getWidth(text, length) + (shadow ? 1 : 0)) * scale + (shadow ? 1 : 0);
     }
 
     @Override
     public double getHeight(boolean shadow) {
-        Font font = building ? this.font : fonts[0];
+        Font font = building ? this.font : getFont(0);
         return (font.getHeight() + 1 + (shadow ? 1 : 0)) * scale;
     }
 
@@ -99,13 +102,13 @@ public class CustomTextRenderer implements TextRenderer {
             int preShadowA = SHADOW_COLOR.a;
             SHADOW_COLOR.a = (int) (color.a / 255.0 * preShadowA);
 
-            width = font.render(mesh, text, x + 1, y + 1, SHADOW_COLOR, scale);
-            font.render(mesh, text, x, y, color, scale);
+            width = font.render(text, x + 1, y + 1, SHADOW_COLOR, scale);
+            font.render(text, x, y, color, scale);
 
             SHADOW_COLOR.a = preShadowA;
         }
         else {
-            width = font.render(mesh, text, x, y, color, scale);
+            width = font.render(text, x, y, color, scale);
         }
 
         if (!wasBuilding) end();
@@ -121,14 +124,24 @@ public class CustomTextRenderer implements TextRenderer {
     public void end(MatrixStack matrices) {
         if (!building) throw new RuntimeException("CustomTextRenderer.end() called without calling begin()");
 
-        if (!scaleOnly) {
-            mesh.end();
-
-            GL.bindTexture(font.texture.getGlId());
-            mesh.render(matrices);
-        }
+        if (!scaleOnly) font.draw(matrices);
+        else font.discard();
 
         building = false;
         scale = 1;
     }
+
+    /**
+     * Frees the atlas pages of all sizes, called when another font is loaded.
+     */
+    public void destroy() {
+        Runnable action = () -> {
+            for (Font font : fonts) {
+                if (font != null) font.destroy();
+            }
+        };
+
+        if (RenderSystem.isOnRenderThread()) action.run();
+        else RenderSystem.recordRenderCall(action::run);
+    }
 }
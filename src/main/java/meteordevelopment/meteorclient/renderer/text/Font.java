@@ -5,49 +5,58 @@
 
 package meteordevelopment.meteorclient.renderer.text;
 
-import meteordevelopment.meteorclient.renderer.Mesh;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.renderer.*;
 import meteordevelopment.meteorclient.utils.render.ByteTexture;
 import meteordevelopment.meteorclient.utils.render.color.Color;
-import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.client.util.math.MatrixStack;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.stb.STBTTFontinfo;
 import org.lwjgl.stb.STBTTPackContext;
 import org.lwjgl.stb.STBTTPackedchar;
 import org.lwjgl.stb.STBTruetype;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A font of a single size. Glyphs are rasterized the first time they are rendered and packed into atlas pages, pages
+ * that were not used for the longest time are reused once {@link #MAX_PAGES} is reached. Text measurement only caches
+ * the advances of code points, it does not rasterize glyphs and does not need an OpenGL context.
+ */
 public class Font {
-    public AbstractTexture texture;
+    private static final int PAGE_SIZE = 1024;
+    private static final int MAX_PAGES = 4;
+
+    private final ByteBuffer buffer;
+    private final STBTTFontinfo fontInfo;
 
     private final int height;
     private final float scale;
     private final float ascent;
-    private final CharData[] charData;
+
+    private final float[] asciiAdvances = new float[128];
+
+    private final Int2ObjectMap<Glyph> glyphs = new Int2ObjectOpenHashMap<>();
+    private final List<Page> pages = new ArrayList<>();
+    private final STBTTPackedchar.Buffer packedChar = STBTTPackedchar.create(1);
+
+    private int batch;
+    private double alpha = 1;
 
     public Font(ByteBuffer buffer, int height) {
+        this.buffer = buffer;
         this.height = height;
 
         // Initialize font
-        STBTTFontinfo fontInfo = STBTTFontinfo.create();
+        fontInfo = STBTTFontinfo.create();
         STBTruetype.stbtt_InitFont(fontInfo, buffer);
 
-        // Allocate STBTTPackedchar buffer
-        charData = new CharData[128];
-        STBTTPackedchar.Buffer cdata = STBTTPackedchar.create(charData.length);
-        ByteBuffer bitmap = BufferUtils.createByteBuffer(2048 * 2048);
-
-        // Create font texture
-        STBTTPackContext packContext = STBTTPackContext.create();
-        STBTruetype.stbtt_PackBegin(packContext, bitmap, 2048, 2048, 0, 1);
-        STBTruetype.stbtt_PackSetOversampling(packContext, 2, 2);
-        STBTruetype.stbtt_PackFontRange(packContext, buffer, 0, height, 32, cdata);
-        STBTruetype.stbtt_PackEnd(packContext);
-
-        // Create texture object and get font scale
-        texture = new ByteTexture(2048, 2048, bitmap, ByteTexture.Format.A, ByteTexture.Filter.Linear, ByteTexture.Filter.Linear);
         scale = STBTruetype.stbtt_ScaleForPixelHeight(fontInfo, height);
 
         // Get font vertical ascent
@@ -57,36 +66,48 @@ public class Font {
             this.ascent = ascent.get(0);
         }
 
-        // Populate charData array
-        for (int i = 0; i < charData.length; i++) {
-            STBTTPackedchar packedChar = cdata.get(i);
+        for (int i = 0; i < asciiAdvances.length; i++) asciiAdvances[i] = computeAdvance(resolve(i));
+    }
 
-            float ipw = 1f / 2048;
-            float iph = 1f / 2048;
+    // Metrics
 
-            charData[i] = new CharData(
-                    packedChar.xoff(),
-                    packedChar.yoff(),
-                    packedChar.xoff2(),
-                    packedChar.yoff2(),
-                    packedChar.x0() * ipw,
-                    packedChar.y0() * iph,
-                    packedChar.x1() * ipw,
-                    packedChar.y1() * iph,
-                    packedChar.xadvance()
-            );
+    private int resolve(int cp) {
+        if (cp < 32) return 32;
+        if (cp < 128) return cp;
+        return STBTruetype.stbtt_FindGlyphIndex(fontInfo, cp) == 0 ? 32 : cp;
+    }
+
+    private float getAdvance(int cp) {
+        return cp < 128 ? asciiAdvances[cp] : getEntry(cp).advance;
+    }
+
+    private Glyph getEntry(int cp) {
+        Glyph glyph = glyphs.get(cp);
+
+        if (glyph == null) {
+            glyph = new Glyph(cp < 128 ? asciiAdvances[cp] : computeAdvance(resolve(cp)));
+            glyphs.put(cp, glyph);
+        }
+
+        return glyph;
+    }
+
+    private float computeAdvance(int cp) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer advance = stack.mallocInt(1);
+            STBTruetype.stbtt_GetCodepointHMetrics(fontInfo, cp, advance, null);
+            return advance.get(0) * scale;
         }
     }
 
     public double getWidth(String string, int length) {
         double width = 0;
 
-        for (int i = 0; i < length; i++) {
-            int cp = string.charAt(i);
-            if (cp < 32 || cp > 128) cp = 32;
-            CharData c = charData[cp - 32];
+        for (int i = 0; i < length; ) {
+            int cp = codePointAt(string, i, length);
+            i += Character.charCount(cp);
 
-            width += c.xAdvance;
+            width += getAdvance(cp);
         }
 
         return width;
@@ -96,13 +117,126 @@ public class Font {
         return height;
     }
 
-    public double render(Mesh mesh, String string, double x, double y, Color color, double scale) {
+    /**
+     * Like {@link String#codePointAt(int)} but does not combine a surrogate pair which is split by the limit.
+     */
+    private static int codePointAt(String string, int index, int limit) {
+        char high = string.charAt(index);
+
+        if (Character.isHighSurrogate(high) && index + 1 < limit) {
+            char low = string.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) return Character.toCodePoint(high, low);
+        }
+
+        return high;
+    }
+
+    // Glyphs
+
+    private CharData getGlyph(int cp) {
+        Glyph glyph = getEntry(cp);
+        CharData c = glyph.data;
+
+        if (c == null) {
+            int resolved = resolve(cp);
+            c = resolved == cp ? rasterize(cp) : getGlyph(resolved);
+
+            glyph.data = c;
+        }
+
+        pages.get(c.page).lastUsed = batch;
+        return c;
+    }
+
+    private CharData rasterize(int cp) {
+        for (int i = 0; i < pages.size(); i++) {
+            CharData c = pack(i, cp);
+            if (c != null) return c;
+        }
+
+        // Create a new page or reuse the least recently used one which is not part of the current batch
+        int page = pages.size();
+
+        if (pages.size() >= MAX_PAGES) {
+            page = getLeastRecentlyUsed();
+
+            // Every page is used by the current batch, render it first so a page can be reused
+            if (page == -1) {
+                flush();
+                page = getLeastRecentlyUsed();
+            }
+        }
+
+        if (page == pages.size()) pages.add(new Page());
+        else evict(page);
+
+        CharData c = pack(page, cp);
+        if (c == null) throw new IllegalStateException("Glyph " + cp + " does not fit into an empty font atlas page.");
+
+        return c;
+    }
+
+    /**
+     * @return the page that was not used for the longest time and is not part of the current batch, or -1
+     */
+    private int getLeastRecentlyUsed() {
+        int page = -1;
+
+        for (int i = 0; i < pages.size(); i++) {
+            Page p = pages.get(i);
+            if (p.lastUsed != batch && (page == -1 || p.lastUsed < pages.get(page).lastUsed)) page = i;
+        }
+
+        return page;
+    }
+
+    private CharData pack(int pageI, int cp) {
+        Page page = pages.get(pageI);
+        if (!STBTruetype.stbtt_PackFontRange(page.packContext, buffer, 0, height, cp, packedChar)) return null;
+
+        STBTTPackedchar p = packedChar.get(0);
+        page.markDirty(p.y0(), p.y1());
+
+        float ip = 1f / PAGE_SIZE;
+
+        return new CharData(
+            pageI,
+            p.xoff(),
+            p.yoff(),
+            p.xoff2(),
+            p.yoff2(),
+            p.x0() * ip,
+            p.y0() * ip,
+            p.x1() * ip,
+            p.y1() * ip,
+            p.xadvance()
+        );
+    }
+
+    private void evict(int pageI) {
+        // Advances stay cached, only the rasterized glyphs are dropped
+        for (Glyph glyph : glyphs.values()) {
+            if (glyph.data != null && glyph.data.page == pageI) glyph.data = null;
+        }
+
+        pages.get(pageI).clear();
+    }
+
+    // Rendering
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public double render(String string, double x, double y, Color color, double scale) {
         y += ascent * this.scale * scale;
 
-        for (int i = 0; i < string.length(); i++) {
-            int cp = string.charAt(i);
-            if (cp < 32 || cp > 128) cp = 32;
-            CharData c = charData[cp - 32];
+        for (int i = 0; i < string.length(); ) {
+            int cp = codePointAt(string, i, string.length());
+            i += Character.charCount(cp);
+
+            CharData c = getGlyph(cp);
+            Mesh mesh = pages.get(c.page).getMesh(alpha);
 
             mesh.quad(
                 mesh.vec2(x + c.x0 * scale, y + c.y0 * scale).vec2(c.u0, c.v0).color(color).next(),
@@ -116,4 +250,120 @@ public class Font {
 
         return x;
     }
+
+    /**
+     * Renders all text rendered since the last call, pages with glyphs rasterized since then are uploaded first.
+     */
+    public void draw(MatrixStack matrices) {
+        for (Page page : pages) {
+            if (page.mesh == null || !page.mesh.isBuilding()) continue;
+
+            if (page.isDirty()) page.upload();
+
+            GL.bindTexture(page.texture.getGlId());
+            page.mesh.render(matrices);
+        }
+
+        batch++;
+    }
+
+    /**
+     * Renders the text of the current batch before one of its pages is reused. Text meshes are not rendered in 3D so
+     * no matrices are needed.
+     */
+    private void flush() {
+        draw(null);
+    }
+
+    /**
+     * Drops all text rendered since the last call to {@link #draw(MatrixStack)}.
+     */
+    public void discard() {
+        for (Page page : pages) {
+            if (page.mesh != null && page.mesh.isBuilding()) page.mesh.end();
+        }
+
+        batch++;
+    }
+
+    public void destroy() {
+        for (Page page : pages) page.destroy();
+
+        pages.clear();
+        glyphs.clear();
+    }
+
+    private static class Glyph {
+        private final float advance;
+        private CharData data;
+
+        public Glyph(float advance) {
+            this.advance = advance;
+        }
+    }
+
+    private static class Page {
+        private final ByteBuffer bitmap = BufferUtils.createByteBuffer(PAGE_SIZE * PAGE_SIZE);
+        private final STBTTPackContext packContext = STBTTPackContext.create();
+
+        private ByteTexture texture;
+        private Mesh mesh;
+
+        private int dirtyMinY = Integer.MAX_VALUE, dirtyMaxY = -1;
+        public int lastUsed;
+
+        public Page() {
+            begin();
+        }
+
+        private void begin() {
+            STBTruetype.stbtt_PackBegin(packContext, bitmap, PAGE_SIZE, PAGE_SIZE, 0, 1);
+            STBTruetype.stbtt_PackSetOversampling(packContext, 2, 2);
+        }
+
+        public void markDirty(int minY, int maxY) {
+            dirtyMinY = Math.min(dirtyMinY, minY);
+            dirtyMaxY = Math.max(dirtyMaxY, maxY);
+        }
+
+        public boolean isDirty() {
+            return texture == null || dirtyMaxY >= dirtyMinY;
+        }
+
+        public Mesh getMesh(double alpha) {
+            if (mesh == null) mesh = new ShaderMesh(Shaders.TEXT, DrawMode.Triangles, Mesh.Attrib.Vec2, Mesh.Attrib.Vec2, Mesh.Attrib.Color);
+            if (!mesh.isBuilding()) mesh.begin();
+
+            mesh.alpha = alpha;
+            return mesh;
+        }
+
+        public void upload() {
+            if (texture == null) {
+                texture = new ByteTexture(PAGE_SIZE, PAGE_SIZE, bitmap, ByteTexture.Format.A, ByteTexture.Filter.Linear, ByteTexture.Filter.Linear);
+            }
+            else if (dirtyMaxY >= dirtyMinY) {
+                texture.upload(0, dirtyMinY, PAGE_SIZE, dirtyMaxY - dirtyMinY + 1, bitmap.slice(dirtyMinY * PAGE_SIZE, (dirtyMaxY - dirtyMinY + 1) * PAGE_SIZE), ByteTexture.Format.A);
+            }
+
+            dirtyMinY = Integer.MAX_VALUE;
+            dirtyMaxY = -1;
+        }
+
+        public void clear() {
+            STBTruetype.stbtt_PackEnd(packContext);
+
+            MemoryUtil.memSet(bitmap, 0);
+            markDirty(0, PAGE_SIZE - 1);
+
+            begin();
+        }
+
+        public void destroy() {
+            STBTruetype.stbtt_PackEnd(packContext);
+
+            if (texture != null) texture.clearGlId();
+            if (mesh != null) mesh.destroy();
+        }
+    }
 }
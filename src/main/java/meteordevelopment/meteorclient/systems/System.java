@@ -6,7 +6,6 @@
 package meteordevelopment.meteorclient.systems;
 
 import meteordevelopment.meteorclient.MeteorClient;
-import meteordevelopment.meteorclient.utils.files.StreamUtils;
 import meteordevelopment.meteorclient.utils.misc.ISerializable;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
@@ -19,6 +18,7 @@ public abstract class System<T> implements ISerializable<T> {
     private File file;
 
     protected boolean isFirstInit;
+    private volatile boolean dirty;
 
     public System(String name) {
         this.name = name;
@@ -31,25 +31,35 @@ public abstract class System<T> implements ISerializable<T> {
 
     public void init() {}
 
+    /**
+     * Marks the system to be saved in the background, changes made within a second of each other are saved together.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Serializes the system on the calling thread and queues the tag to be written in the background.
+     * @see Systems#flush()
+     */
     public void save(File folder) {
         File file = getFile();
         if (file == null) return;
 
-        NbtCompound tag = toTag();
-        if (tag == null) return;
+        // Only saves to the main folder are pending, cleared before serializing so changes made meanwhile are kept
+        if (folder == null) dirty = false;
 
-        try {
-            File tempFile = File.createTempFile(MeteorClient.MOD_ID, file.getName());
-            NbtIo.write(tag, tempFile);
+        long start = java.lang.System.nanoTime();
 
-            if (folder != null) file = new File(folder, file.getName());
+        NbtCompound tag = toTag();
+        if (tag == null) return;
 
-            file.getParentFile().mkdirs();
-            StreamUtils.copy(tempFile, file);
-            tempFile.delete();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        if (folder != null) file = new File(folder, file.getName());
+        Systems.write(this, file, tag, java.lang.System.nanoTime() - start);
     }
 
     public void save() {
@@ -60,6 +70,9 @@ public abstract class System<T> implements ISerializable<T> {
         File file = getFile();
         if (file == null) return;
 
+        // Make sure queued saves have been written before reading them back
+        Systems.flush();
+
         try {
             if (folder != null) file = new File(folder, file.getName());
 
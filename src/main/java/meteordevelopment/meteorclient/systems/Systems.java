@@ -7,6 +7,7 @@ package meteordevelopment.meteorclient.systems;
 
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.systems.accounts.Accounts;
 import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.friends.Friends;
@@ -17,18 +18,41 @@ import meteordevelopment.meteorclient.systems.profiles.Profiles;
 import meteordevelopment.meteorclient.systems.proxies.Proxies;
 import meteordevelopment.meteorclient.systems.waypoints.Waypoints;
 import meteordevelopment.orbit.EventHandler;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Systems {
+    /** Dirty systems are saved every this many ticks. */
+    private static final int SAVE_DELAY = 20;
+
     @SuppressWarnings("rawtypes")
     private static final Map<Class<? extends System>, System<?>> systems = new HashMap<>();
     private static final List<Runnable> preLoadTasks = new ArrayList<>(1);
 
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.setName("Meteor-Systems-Writer");
+        return thread;
+    });
+
+    // Only the newest tag of a file is written if it was saved again before the writer got to it
+    private static final Map<File, PendingWrite> pendingWrites = new HashMap<>();
+    private static final Map<String, SaveStats> stats = new ConcurrentHashMap<>();
+
+    private static int ticksSinceSave;
+
     public static void addPreLoadTask(Runnable task) {
         preLoadTasks.add(task);
     }
@@ -69,19 +93,88 @@ public class Systems {
         save();
     }
 
+    @EventHandler
+    private static void onTick(TickEvent.Post event) {
+        if (++ticksSinceSave < SAVE_DELAY) return;
+        ticksSinceSave = 0;
+
+        for (System<?> system : systems.values()) {
+            if (system.isDirty()) system.save();
+        }
+    }
+
+    /**
+     * Serializes all systems on the calling thread, the files are written in the background.
+     */
     public static void save(File folder) {
         long start = java.lang.System.currentTimeMillis();
         MeteorClient.LOG.info("Saving");
 
         for (System<?> system : systems.values()) system.save(folder);
 
-        MeteorClient.LOG.info("Saved in {} milliseconds.", java.lang.System.currentTimeMillis() - start);
+        writer.execute(() -> MeteorClient.LOG.info("Saved in {} milliseconds.", java.lang.System.currentTimeMillis() - start));
     }
 
     public static void save() {
         save(null);
     }
 
+    /**
+     * Blocks until all queued saves have been written.
+     */
+    public static void flush() {
+        try {
+            writer.submit(() -> {}).get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static void write(System<?> system, File file, NbtCompound tag, long serializeTime) {
+        synchronized (pendingWrites) {
+            if (pendingWrites.put(file, new PendingWrite(system.getName(), tag, serializeTime)) != null) return;
+        }
+
+        writer.execute(() -> {
+            PendingWrite write;
+
+            synchronized (pendingWrites) {
+                write = pendingWrites.remove(file);
+            }
+
+            long start = java.lang.System.nanoTime();
+            File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+            try {
+                file.getParentFile().mkdirs();
+                NbtIo.write(write.tag(), tempFile);
+
+                long size = tempFile.length();
+
+                try {
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                SaveStats saveStats = new SaveStats(size, write.serializeTime(), java.lang.System.nanoTime() - start);
+                stats.put(write.name(), saveStats);
+
+                MeteorClient.LOG.debug("Saved {} ({} bytes) in {} ms, serialized in {} ms", write.name(), size, saveStats.writeTime() / 1_000_000.0, saveStats.serializeTime() / 1_000_000.0);
+            } catch (IOException e) {
+                MeteorClient.LOG.error("Failed to save {}", write.name(), e);
+                tempFile.delete();
+            }
+        });
+    }
+
+    /**
+     * @return size and timings of the last save of the system, or null if it was not saved yet
+     */
+    public static SaveStats getSaveStats(System<?> system) {
+        return stats.get(system.getName());
+    }
+
     public static void load(File folder) {
         long start = java.lang.System.currentTimeMillis();
         MeteorClient.LOG.info("Loading");
@@ -100,4 +193,13 @@ public class Systems {
     public static <T extends System<?>> T get(Class<T> klass) {
         return (T) systems.get(klass);
     }
+
+    /**
+     * @param size          size of the written file in bytes
+     * @param serializeTime nanoseconds spent in {@link System#toTag()} on the saving thread
+     * @param writeTime     nanoseconds spent writing the file in the background
+     */
+    public record SaveStats(long size, long serializeTime, long writeTime) {}
+
+    private record PendingWrite(String name, NbtCompound tag, long serializeTime) {}
 }
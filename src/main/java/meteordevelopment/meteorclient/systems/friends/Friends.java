@@ -6,24 +6,36 @@
 package meteordevelopment.meteorclient.systems.friends;
 
 import com.mojang.util.UUIDTypeAdapter;
+import it.unimi.dsi.fastutil.ints.Int2ByteMap;
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+import meteordevelopment.meteorclient.events.entity.EntityAddedEvent;
+import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
 import meteordevelopment.meteorclient.systems.System;
 import meteordevelopment.meteorclient.systems.Systems;
 import meteordevelopment.meteorclient.utils.misc.NbtUtils;
 import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+import meteordevelopment.orbit.EventHandler;
 import net.minecraft.client.network.PlayerListEntry;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 public class Friends extends System<Friends> implements Iterable<Friend> {
+    private static final byte UNKNOWN = 0, FRIEND = 1, NOT_FRIEND = 2;
+
     private final List<Friend> friends = new ArrayList<>();
 
+    // Indices over the friends list, rebuilt whenever it changes
+    private final Map<String, Friend> byName = new HashMap<>();
+    private final Map<UUID, Friend> byId = new HashMap<>();
+
+    // Whether the player entity with this id is a friend
+    private final Int2ByteMap entityFlags = new Int2ByteOpenHashMap();
+
     public Friends() {
         super("friends");
     }
@@ -35,9 +47,10 @@ public class Friends extends System<Friends> implements Iterable<Friend> {
     public boolean add(Friend friend) {
         if (friend.name.isEmpty() || friend.name.contains(" ")) return false;
 
-        if (!friends.contains(friend)) {
+        if (get(friend.name) == null) {
             friends.add(friend);
-            save();
+            reindex();
+            markDirty();
 
             return true;
         }
@@ -47,33 +60,64 @@ public class Friends extends System<Friends> implements Iterable<Friend> {
 
     public boolean remove(Friend friend) {
         if (friends.remove(friend)) {
-            save();
+            reindex();
+            markDirty();
             return true;
         }
 
         return false;
     }
 
-    public Friend get(String name) {
+    /**
+     * Rebuilds the name and uuid indices, needs to be called on the render thread after the list or the name or uuid of
+     * a friend changed.
+     */
+    void reindex() {
+        byName.clear();
+        byId.clear();
+        entityFlags.clear();
+
         for (Friend friend : friends) {
-            if (friend.name.equals(name)) {
-                return friend;
-            }
+            byName.put(normalize(friend.name), friend);
+
+            UUID id = friend.getId();
+            if (id != null) byId.put(id, friend);
         }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public Friend get(String name) {
+        return name != null ? byName.get(normalize(name)) : null;
+    }
 
-        return null;
+    public Friend get(UUID id) {
+        return id != null ? byId.get(id) : null;
     }
 
     public Friend get(PlayerEntity player) {
-        return get(player.getEntityName());
+        Friend friend = get(player.getUuid());
+        return friend != null ? friend : get(player.getEntityName());
     }
 
     public Friend get(PlayerListEntry player) {
-        return get(player.getProfile().getName());
+        Friend friend = get(player.getProfile().getId());
+        return friend != null ? friend : get(player.getProfile().getName());
     }
 
     public boolean isFriend(PlayerEntity player) {
-        return player != null && get(player) != null;
+        if (player == null) return false;
+
+        byte flag = entityFlags.get(player.getId());
+
+        if (flag == UNKNOWN) {
+            flag = get(player) != null ? FRIEND : NOT_FRIEND;
+            entityFlags.put(player.getId(), flag);
+        }
+
+        return flag == FRIEND;
     }
 
     public boolean isFriend(PlayerListEntry player) {
@@ -92,6 +136,22 @@ public class Friends extends System<Friends> implements Iterable<Friend> {
         return friends.isEmpty();
     }
 
+    @EventHandler
+    private void onEntityAdded(EntityAddedEvent event) {
+        // Entity ids can be reused by a different player
+        if (event.entity instanceof PlayerEntity) entityFlags.remove(event.entity.getId());
+    }
+
+    @EventHandler
+    private void onGameJoined(GameJoinedEvent event) {
+        entityFlags.clear();
+    }
+
+    @EventHandler
+    private void onGameLeft(GameLeftEvent event) {
+        entityFlags.clear();
+    }
+
     @Override
     public @NotNull Iterator<Friend> iterator() {
         return friends.iterator();
@@ -109,23 +169,24 @@ public class Friends extends System<Friends> implements Iterable<Friend> {
     @Override
     public Friends fromTag(NbtCompound tag) {
         friends.clear();
+        reindex();
 
         for (NbtElement itemTag : tag.getList("friends", 10)) {
             NbtCompound friendTag = (NbtCompound) itemTag;
             if (!friendTag.contains("name")) continue;
 
             String name = friendTag.getString("name");
-            if (get(name) != null) continue;
-
             String uuid = friendTag.getString("id");
             Friend friend = !uuid.isBlank()
                 ? new Friend(name, UUIDTypeAdapter.fromString(uuid))
                 : new Friend(name);
 
-            friends.add(friend);
+            // The name index doubles as the duplicate check, reindex() fills the rest once all friends are read
+            if (byName.putIfAbsent(normalize(name), friend) == null) friends.add(friend);
         }
 
         Collections.sort(friends);
+        reindex();
 
         MeteorExecutor.execute(() -> friends.forEach(Friend::updateInfo));
 
@@ -13,9 +13,9 @@ import meteordevelopment.meteorclient.systems.hud.HudElement;
 import meteordevelopment.meteorclient.systems.hud.HudElementInfo;
 import meteordevelopment.meteorclient.systems.hud.HudRenderer;
 import meteordevelopment.meteorclient.utils.misc.MeteorStarscript;
+import meteordevelopment.meteorclient.utils.misc.TrackedScript;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.starscript.Script;
 import meteordevelopment.starscript.Section;
 import meteordevelopment.starscript.compiler.Compiler;
 import meteordevelopment.starscript.compiler.Parser;
@@ -133,7 +133,7 @@ public class TextHud extends HudElement {
         .build()
     );
 
-    private Script script, conditionScript;
+    private TrackedScript script, conditionScript;
     private Section section;
 
     private boolean firstTick = true;
@@ -160,13 +160,15 @@ public class TextHud extends HudElement {
 
     private void calculateSize(HudRenderer renderer) {
         double width = 0;
+        boolean blank = true;
 
-        if (section != null) {
-            String str = section.toString();
-            if (!str.isBlank()) width = renderer.textWidth(str, shadow.get(), getScale());
+        // Sections are rendered one after another, measure them the same way
+        for (Section s = section; s != null; s = s.next) {
+            width += renderer.textWidth(s.text, shadow.get(), getScale());
+            if (!s.text.isBlank()) blank = false;
         }
 
-        if (width != 0) {
+        if (!blank && width != 0) {
             setSize(width, renderer.textHeight(shadow.get(), getScale()));
             empty = false;
         }
@@ -199,10 +201,10 @@ public class TextHud extends HudElement {
                 section = new Section(0, result.errors.get(0).toString());
                 calculateSize(renderer);
             }
-            else script = Compiler.compile(result);
+            else script = new TrackedScript(Compiler.compile(result));
 
             if (shown.get() != Shown.Always) {
-                conditionScript = Compiler.compile(Parser.parse(condition.get()));
+                conditionScript = new TrackedScript(Compiler.compile(Parser.parse(condition.get())));
             }
 
             needsCompile = false;
@@ -210,8 +212,13 @@ public class TextHud extends HudElement {
 
         try {
             if (script != null) {
-                section = MeteorStarscript.ss.run(script);
-                calculateSize(renderer);
+                // Only measure the text again when it changed
+                Section section = script.run();
+
+                if (!equals(section, this.section)) {
+                    this.section = section;
+                    calculateSize(renderer);
+                }
             }
         }
         catch (StarscriptError error) {
@@ -220,7 +227,16 @@ public class TextHud extends HudElement {
         }
 
         if (shown.get() != Shown.Always && conditionScript != null) {
-            String text = MeteorStarscript.run(conditionScript);
+            String text;
+
+            try {
+                text = conditionScript.run().toString();
+            }
+            catch (StarscriptError error) {
+                MeteorStarscript.printChatError(error);
+                text = null;
+            }
+
             if (text == null) visible = false;
             else visible = shown.get() == Shown.WhenTrue ? text.equalsIgnoreCase("true") : text.equalsIgnoreCase("false");
         }
@@ -259,6 +275,17 @@ public class TextHud extends HudElement {
         recalculateSize = true;
     }
 
+    private static boolean equals(Section a, Section b) {
+        while (a != null && b != null) {
+            if (a.index != b.index || !a.text.equals(b.text)) return false;
+
+            a = a.next;
+            b = b.next;
+        }
+
+        return a == b;
+    }
+
     private double getScale() {
         return customScale.get() ? scale.get() : -1;
     }
@@ -34,7 +34,7 @@ public class Macros extends System<Macros> implements Iterable<Macro> {
     public void add(Macro macro) {
         macros.add(macro);
         MeteorClient.EVENT_BUS.subscribe(macro);
-        save();
+        markDirty();
     }
 
     public Macro get(String name) {
@@ -52,7 +52,7 @@ public class Macros extends System<Macros> implements Iterable<Macro> {
     public void remove(Macro macro) {
         if (macros.remove(macro)) {
             MeteorClient.EVENT_BUS.unsubscribe(macro);
-            save();
+            markDirty();
         }
     }
 
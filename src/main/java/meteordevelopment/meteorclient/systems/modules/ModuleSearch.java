@@ -0,0 +1,299 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.systems.modules;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.settings.Setting;
+import meteordevelopment.meteorclient.settings.SettingGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Index over module and setting titles used by the module search. Ranks modules the same way as
+ * {@link meteordevelopment.meteorclient.utils.Utils#searchLevenshteinDefault(String, String, boolean)} but only keeps
+ * the best results. Modules sharing trigrams with the filter are scored first so the distance of the remaining modules
+ * can be cut off early once it can no longer make it into the results.
+ */
+public class ModuleSearch {
+    private static final int INSERT_COST = 1, SUBSTITUTE_COST = 8, DELETE_COST = 8;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Long2ObjectMap<IntArrayList> titleTrigrams = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<IntArrayList> settingTrigrams = new Long2ObjectOpenHashMap<>();
+
+    private int[] hits = new int[16];
+    private int[] previousRow = new int[32], currentRow = new int[32];
+
+    private final Results results = new Results();
+
+    // Indexing
+
+    public void add(Module module) {
+        List<char[]> settings = new ArrayList<>();
+
+        for (SettingGroup group : module.settings) {
+            for (Setting<?> setting : group) settings.add(lower(setting.title));
+        }
+
+        Entry entry = new Entry(module, lower(module.title), settings.toArray(new char[0][]));
+        int id = entries.size();
+        entries.add(entry);
+
+        addTrigrams(titleTrigrams, entry.title, id);
+        for (char[] setting : entry.settings) addTrigrams(settingTrigrams, setting, id);
+    }
+
+    public void remove(Module module) {
+        for (Entry entry : entries) {
+            if (entry.module == module) entry.removed = true;
+        }
+    }
+
+    private static void addTrigrams(Long2ObjectMap<IntArrayList> trigrams, char[] text, int id) {
+        for (int i = 0; i + 3 <= text.length; i++) {
+            IntArrayList ids = trigrams.computeIfAbsent(trigram(text, i), key -> new IntArrayList());
+            if (ids.isEmpty() || ids.getInt(ids.size() - 1) != id) ids.add(id);
+        }
+    }
+
+    private static long trigram(char[] text, int i) {
+        return ((long) text[i] << 32) | ((long) text[i + 1] << 16) | text[i + 2];
+    }
+
+    private static char[] lower(String text) {
+        return text.toLowerCase(Locale.ROOT).toCharArray();
+    }
+
+    // Searching
+
+    /**
+     * @return at most {@code limit} modules ordered by how close their title is to the text
+     */
+    public List<Module> searchTitles(String text, int limit) {
+        char[] filter = lower(text);
+        results.begin(limit);
+
+        countHits(titleTrigrams, filter);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.removed || (hits[i] > 0) != (pass == 0)) continue;
+
+                int bound = results.getBound();
+                if (lowerBound(filter, entry.title) > bound) continue;
+
+                int score = distance(filter, entry.title, bound);
+                if (score <= bound) results.offer(entry.module, score);
+            }
+        }
+
+        return results.end();
+    }
+
+    /**
+     * @return at most {@code limit} modules ordered by how close the closest title of their settings is to the text
+     */
+    public List<Module> searchSettingTitles(String text, int limit) {
+        char[] filter = lower(text);
+        results.begin(limit);
+
+        countHits(settingTrigrams, filter);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.removed || (hits[i] > 0) != (pass == 0)) continue;
+
+                int lowest = Integer.MAX_VALUE;
+
+                for (char[] setting : entry.settings) {
+                    int bound = Math.min(results.getBound(), lowest);
+                    if (lowerBound(filter, setting) > bound) continue;
+
+                    int score = distance(filter, setting, bound);
+                    if (score < lowest) lowest = score;
+                }
+
+                if (lowest <= results.getBound()) results.offer(entry.module, lowest);
+            }
+        }
+
+        return results.end();
+    }
+
+    private void countHits(Long2ObjectMap<IntArrayList> trigrams, char[] filter) {
+        if (hits.length < entries.size()) hits = new int[Math.max(entries.size(), hits.length * 2)];
+        Arrays.fill(hits, 0, entries.size(), 0);
+
+        for (int i = 0; i + 3 <= filter.length; i++) {
+            IntArrayList ids = trigrams.get(trigram(filter, i));
+            if (ids == null) continue;
+
+            for (int j = 0; j < ids.size(); j++) hits[ids.getInt(j)]++;
+        }
+    }
+
+    private static int lowerBound(char[] filter, char[] text) {
+        int difference = text.length - filter.length;
+        return difference >= 0 ? difference * INSERT_COST : -difference * DELETE_COST;
+    }
+
+    /**
+     * Same weighted edit distance as {@link meteordevelopment.meteorclient.utils.Utils#levenshteinDistance(String, String, int, int, int)}
+     * but stops as soon as the distance is guaranteed to be larger than the bound.
+     * @return the distance or {@link Integer#MAX_VALUE} if it is larger than the bound
+     */
+    private int distance(char[] filter, char[] text, int bound) {
+        if (previousRow.length <= text.length) {
+            previousRow = new int[text.length * 2];
+            currentRow = new int[text.length * 2];
+        }
+
+        int[] previous = previousRow, current = currentRow;
+        for (int j = 0; j <= text.length; j++) previous[j] = j * INSERT_COST;
+
+        for (int i = 1; i <= filter.length; i++) {
+            current[0] = i * DELETE_COST;
+            int rowMin = current[0];
+
+            for (int j = 1; j <= text.length; j++) {
+                int sCost = previous[j - 1] + (filter[i - 1] == text[j - 1] ? 0 : SUBSTITUTE_COST);
+                int dCost = previous[j] + DELETE_COST;
+                int iCost = current[j - 1] + INSERT_COST;
+
+                current[j] = Math.min(Math.min(dCost, iCost), sCost);
+                if (current[j] < rowMin) rowMin = current[j];
+            }
+
+            // Costs are never negative so the distance can't get lower than the lowest value of a row
+            if (rowMin > bound) return Integer.MAX_VALUE;
+
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+
+        return previous[text.length];
+    }
+
+    private static class Entry {
+        public final Module module;
+        public final char[] title;
+        public final char[][] settings;
+        public boolean removed;
+
+        public Entry(Module module, char[] title, char[][] settings) {
+            this.module = module;
+            this.title = title;
+            this.settings = settings;
+        }
+    }
+
+    /**
+     * Max heap of the best results ordered by score and then by module, the root is the result which is replaced next.
+     */
+    private static class Results {
+        private Module[] modules = new Module[16];
+        private int[] scores = new int[16];
+        private int size, limit;
+
+        public void begin(int limit) {
+            this.limit = limit;
+            size = 0;
+
+            if (modules.length < limit) {
+                modules = new Module[limit];
+                scores = new int[limit];
+            }
+        }
+
+        /**
+         * @return the highest score which can still be added
+         */
+        public int getBound() {
+            return size < limit ? Integer.MAX_VALUE : scores[0];
+        }
+
+        public void offer(Module module, int score) {
+            if (limit <= 0) return;
+
+            if (size < limit) {
+                modules[size] = module;
+                scores[size] = score;
+                siftUp(size++);
+            }
+            else if (compare(score, module, scores[0], modules[0]) < 0) {
+                modules[0] = module;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        public List<Module> end() {
+            Module[] sorted = new Module[size];
+
+            while (size > 0) {
+                sorted[size - 1] = modules[0];
+
+                size--;
+                modules[0] = modules[size];
+                scores[0] = scores[size];
+                modules[size] = null;
+                siftDown(0);
+            }
+
+            return Arrays.asList(sorted);
+        }
+
+        private static int compare(int score1, Module module1, int score2, Module module2) {
+            if (score1 != score2) return Integer.compare(score1, score2);
+            return module1.compareTo(module2);
+        }
+
+        private boolean greater(int i, int j) {
+            return compare(scores[i], modules[i], scores[j], modules[j]) > 0;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!greater(i, parent)) break;
+
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = i * 2 + 1, right = left + 1, largest = i;
+
+                if (left < size && greater(left, largest)) largest = left;
+                if (right < size && greater(right, largest)) largest = right;
+                if (largest == i) break;
+
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            Module module = modules[i];
+            modules[i] = modules[j];
+            modules[j] = module;
+
+            int score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
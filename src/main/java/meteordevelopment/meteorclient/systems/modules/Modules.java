@@ -5,7 +5,6 @@
 
 package meteordevelopment.meteorclient.systems.modules;
 
-import com.google.common.collect.Ordering;
 import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.Lifecycle;
 import meteordevelopment.meteorclient.MeteorClient;
@@ -35,7 +34,6 @@ import meteordevelopment.meteorclient.systems.modules.world.*;
 import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.misc.Keybind;
 import meteordevelopment.meteorclient.utils.misc.MeteorIdentifier;
-import meteordevelopment.meteorclient.utils.misc.ValueComparableMap;
 import meteordevelopment.meteorclient.utils.misc.input.Input;
 import meteordevelopment.meteorclient.utils.misc.input.KeyAction;
 import meteordevelopment.orbit.EventHandler;
@@ -71,6 +69,7 @@ public class Modules extends System<Modules> {
     private final Map<Category, List<Module>> groups = new HashMap<>();
 
     private final List<Module> active = new ArrayList<>();
+    private final ModuleSearch search = new ModuleSearch();
     private Module moduleToBind;
 
     public Modules() {
@@ -168,31 +167,19 @@ public class Modules extends System<Modules> {
     }
 
     public Set<Module> searchTitles(String text) {
-        Map<Module, Integer> modules = new ValueComparableMap<>(Ordering.natural());
-
-        for (Module module : this.moduleInstances.values()) {
-            int score = Utils.searchLevenshteinDefault(module.title, text, false);
-            modules.put(module, modules.getOrDefault(module, 0) + score);
-        }
+        return new LinkedHashSet<>(searchTitles(text, moduleInstances.size()));
+    }
 
-        return modules.keySet();
+    public List<Module> searchTitles(String text, int limit) {
+        return search.searchTitles(text, limit);
     }
 
     public Set<Module> searchSettingTitles(String text) {
-        Map<Module, Integer> modules = new ValueComparableMap<>(Ordering.natural());
-
-        for (Module module : this.moduleInstances.values()) {
-            int lowest = Integer.MAX_VALUE;
-            for (SettingGroup sg : module.settings) {
-                for (Setting<?> setting : sg) {
-                    int score = Utils.searchLevenshteinDefault(setting.title, text, false);
-                    if (score < lowest) lowest = score;
-                }
-            }
-            modules.put(module, modules.getOrDefault(module, 0) + lowest);
-        }
+        return new LinkedHashSet<>(searchSettingTitles(text, moduleInstances.size()));
+    }
 
-        return modules.keySet();
+    public List<Module> searchSettingTitles(String text, int limit) {
+        return search.searchSettingTitles(text, limit);
     }
 
     void addActive(Module module) {
@@ -369,12 +356,14 @@ public class Modules extends System<Modules> {
             return false;
         })) {
             getGroup(removedModule.get().category).remove(removedModule.get());
+            search.remove(removedModule.get());
         }
 
         // Add the module
         moduleInstances.put(module.getClass(), module);
         modules.add(module);
         getGroup(module.category).add(module);
+        search.add(module);
 
         // Register color settings for the module
         module.settings.registerColorSettings(module);
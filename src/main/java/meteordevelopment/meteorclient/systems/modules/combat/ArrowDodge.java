@@ -10,8 +10,7 @@ import meteordevelopment.meteorclient.mixin.ProjectileEntityAccessor;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
-import meteordevelopment.meteorclient.utils.entity.ProjectileEntitySimulator;
-import meteordevelopment.meteorclient.utils.misc.Pool;
+import meteordevelopment.meteorclient.utils.entity.TrajectoryCache;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.projectile.ArrowEntity;
@@ -19,7 +18,6 @@ import net.minecraft.entity.projectile.ProjectileEntity;
 import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
-import org.joml.Vector3d;
 
 import java.util.*;
 
@@ -99,9 +97,7 @@ public class ArrowDodge extends Module {
         new Vec3d(-1, 0, -1)
     );
 
-    private final ProjectileEntitySimulator simulator = new ProjectileEntitySimulator();
-    private final Pool<Vector3d> vec3s = new Pool<>(Vector3d::new);
-    private final List<Vector3d> points = new ArrayList<>();
+    private final List<TrajectoryCache.Trajectory> trajectories = new ArrayList<>();
 
     public ArrowDodge() {
         super(Categories.Combat, "arrow-dodge", "Tries to dodge arrows coming at you.");
@@ -109,8 +105,7 @@ public class ArrowDodge extends Module {
 
     @EventHandler
     private void onTick(TickEvent.Pre event) {
-        for (Vector3d point : points) vec3s.free(point);
-        points.clear();
+        trajectories.clear();
 
         for (Entity e : mc.world.getEntities()) {
             if (!(e instanceof ProjectileEntity)) continue;
@@ -119,11 +114,9 @@ public class ArrowDodge extends Module {
                 UUID owner = ((ProjectileEntityAccessor) e).getOwnerUuid();
                 if (owner != null && owner.equals(mc.player.getUuid())) continue;
             }
-            if (!simulator.set(e, accurate.get(), 0.5D)) continue;
-            for (int i = 0; i < (simulationSteps.get() > 0 ? simulationSteps.get() : Integer.MAX_VALUE); i++) {
-                points.add(vec3s.get().set(simulator.pos));
-                if (simulator.tick() != null) break;
-            }
+
+            TrajectoryCache.Trajectory trajectory = TrajectoryCache.get(e, accurate.get(), simulationSteps.get(), 0.5);
+            if (trajectory != null) trajectories.add(trajectory);
         }
 
         if (isValid(Vec3d.ZERO, false)) return; // no need to move
@@ -165,10 +158,13 @@ public class ArrowDodge extends Module {
         Vec3d playerPos = mc.player.getPos().add(velocity);
         Vec3d headPos = playerPos.add(0, 1, 0);
 
-        for (Vector3d pos : points) {
-            Vec3d projectilePos = new Vec3d(pos.x, pos.y, pos.z);
-            if (projectilePos.isInRange(playerPos, distanceCheck.get())) return false;
-            if (projectilePos.isInRange(headPos, distanceCheck.get())) return false;
+        for (TrajectoryCache.Trajectory trajectory : trajectories) {
+            for (int i = 0; i < trajectory.getPointCount(); i++) {
+                double x = trajectory.getX(i), y = trajectory.getY(i), z = trajectory.getZ(i);
+
+                if (playerPos.squaredDistanceTo(x, y, z) < distanceCheck.get() * distanceCheck.get()) return false;
+                if (headPos.squaredDistanceTo(x, y, z) < distanceCheck.get() * distanceCheck.get()) return false;
+            }
         }
 
         if (checkGround) {
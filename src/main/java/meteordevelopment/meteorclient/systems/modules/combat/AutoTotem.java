@@ -5,11 +5,11 @@
 
 package meteordevelopment.meteorclient.systems.modules.combat;
 
-import meteordevelopment.meteorclient.events.packets.PacketEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.utils.network.PacketDispatcher;
 import meteordevelopment.meteorclient.utils.player.FindItemResult;
 import meteordevelopment.meteorclient.utils.player.InvUtils;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
@@ -77,6 +77,15 @@ public class AutoTotem extends Module {
 
     public AutoTotem() {
         super(Categories.Combat, "auto-totem", "Automatically equips a totem in your offhand.");
+
+        PacketDispatcher.onReceive(this, EntityStatusS2CPacket.class, EventPriority.HIGH, (event, packet) -> {
+            if (packet.getStatus() != 35) return;
+
+            Entity entity = packet.getEntity(mc.world);
+            if (entity == null || !(entity.equals(mc.player))) return;
+
+            ticks = 0;
+        });
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -102,17 +111,6 @@ public class AutoTotem extends Module {
         ticks++;
     }
 
-    @EventHandler(priority = EventPriority.HIGH)
-    private void onReceivePacket(PacketEvent.Receive event) {
-        if (!(event.packet instanceof EntityStatusS2CPacket p)) return;
-        if (p.getStatus() != 35) return;
-
-        Entity entity = p.getEntity(mc.world);
-        if (entity == null || !(entity.equals(mc.player))) return;
-
-        ticks = 0;
-    }
-
     public boolean isLocked() {
         return isActive() && locked;
     }
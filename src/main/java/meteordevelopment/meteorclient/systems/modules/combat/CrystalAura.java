@@ -9,7 +9,6 @@ import com.google.common.util.concurrent.AtomicDouble;
 import it.unimi.dsi.fastutil.ints.*;
 import meteordevelopment.meteorclient.events.entity.EntityAddedEvent;
 import meteordevelopment.meteorclient.events.entity.EntityRemovedEvent;
-import meteordevelopment.meteorclient.events.packets.PacketEvent;
 import meteordevelopment.meteorclient.events.render.Render2DEvent;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
@@ -22,9 +21,11 @@ import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.friends.Friends;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.utils.entity.EntityIndex;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
 import meteordevelopment.meteorclient.utils.entity.Target;
 import meteordevelopment.meteorclient.utils.misc.Keybind;
+import meteordevelopment.meteorclient.utils.network.PacketDispatcher;
 import meteordevelopment.meteorclient.utils.player.*;
 import meteordevelopment.meteorclient.utils.render.NametagUtils;
 import meteordevelopment.meteorclient.utils.render.RenderUtils;
@@ -591,6 +592,9 @@ public class CrystalAura extends Module {
 
     public CrystalAura() {
         super(Categories.Combat, "crystal-aura", "Automatically places and attacks crystals.");
+
+        PacketDispatcher.onSend(this, UpdateSelectedSlotC2SPacket.class, EventPriority.MEDIUM, (event, packet) -> switchTimer = switchDelay.get());
+        PacketDispatcher.onSent(this, PlayerMoveC2SPacket.class, EventPriority.MEDIUM, (event, packet) -> serverYaw = packet.getYaw((float) serverYaw));
     }
 
     @Override
@@ -754,7 +758,11 @@ public class CrystalAura extends Module {
         Entity crystal = null;
 
         // Find best crystal to break
-        for (Entity entity : mc.world.getEntities()) {
+        EntityIndex.EntityList crystals = EntityIndex.get(EntityIndex.Group.Crystal);
+        for (int i = 0; i < crystals.size(); i++) {
+            Entity entity = crystals.get(i);
+            if (entity.isRemoved()) continue;
+
             double damage = getBreakDamage(entity, true);
 
             if (damage > bestDamage) {
@@ -873,13 +881,6 @@ public class CrystalAura extends Module {
         attacks++;
     }
 
-    @EventHandler
-    private void onPacketSend(PacketEvent.Send event) {
-        if (event.packet instanceof UpdateSelectedSlotC2SPacket) {
-            switchTimer = switchDelay.get();
-        }
-    }
-
     // Place
 
     private void doPlace() {
@@ -901,7 +902,11 @@ public class CrystalAura extends Module {
         } else if (mainItem != Items.END_CRYSTAL && offItem != Items.END_CRYSTAL) return;
 
         // Check for multiplace
-        for (Entity entity : mc.world.getEntities()) {
+        EntityIndex.EntityList crystals = EntityIndex.get(EntityIndex.Group.Crystal);
+        for (int i = 0; i < crystals.size(); i++) {
+            Entity entity = crystals.get(i);
+            if (entity.isRemoved()) continue;
+
             if (getBreakDamage(entity, false) > 0) return;
         }
 
@@ -910,9 +915,11 @@ public class CrystalAura extends Module {
         AtomicReference<BlockPos.Mutable> bestBlockPos = new AtomicReference<>(new BlockPos.Mutable());
         AtomicBoolean isSupport = new AtomicBoolean(support.get() != SupportMode.Disabled);
 
-        // Find best position to place the crystal on
+        List<PlaceCandidate> candidates = new ArrayList<>();
+
+        // Collect positions the crystal could be placed on, damage is calculated once the iteration is done
         BlockIterator.register((int) Math.ceil(placeRange.get()), (int) Math.ceil(placeRange.get()), (bp, blockState) -> {
-            // Check if its bedrock or obsidian and return if isSupport is false
+            // Check if its bedrock or obsidian and return if support is disabled
             boolean hasBlock = blockState.isOf(Blocks.BEDROCK) || blockState.isOf(Blocks.OBSIDIAN);
             if (!hasBlock && (!isSupport.get() || !blockState.isReplaceable())) return;
 
@@ -930,37 +937,60 @@ public class CrystalAura extends Module {
             blockPos.set(bp).move(0, 1, 0);
             if (isOutOfRange(vec3d, blockPos, true)) return;
 
-            // Check damage to self and anti suicide
-            double selfDamage = DamageUtils.crystalDamage(mc.player, vec3d, predictMovement.get(), bp, ignoreTerrain.get());
-            if (selfDamage > maxDamage.get() || (antiSuicide.get() && selfDamage >= EntityUtils.getTotalHealth(mc.player))) return;
+            candidates.add(new PlaceCandidate(bp.toImmutable(), hasBlock));
+        });
+
+        // Find best position to place the crystal on and place it
+        BlockIterator.after(() -> {
+            // Damage for obsidian and bedrock positions does not depend on previous candidates so it is calculated in parallel
+            candidates.parallelStream().filter(candidate -> candidate.hasBlock).forEach(candidate -> {
+                Vec3d crystalPos = new Vec3d(candidate.pos.getX() + 0.5, candidate.pos.getY() + 1, candidate.pos.getZ() + 0.5);
+
+                candidate.selfDamage = DamageUtils.crystalDamage(mc.player, crystalPos, predictMovement.get(), candidate.pos, ignoreTerrain.get());
+                candidate.targetDamages = new double[targets.size()];
 
-            // Check damage to targets and face place
-            double damage = getDamageToTargets(vec3d, bp, false, !hasBlock && support.get() == SupportMode.Fast);
+                for (int i = 0; i < targets.size(); i++) {
+                    candidate.targetDamages[i] = DamageUtils.crystalDamage(targets.get(i), crystalPos, predictMovement.get(), candidate.pos, ignoreTerrain.get());
+                }
+            });
 
             boolean shouldFacePlace = shouldFacePlace();
             double minimumDamage = Math.min(minDamage.get(), shouldFacePlace ? 1.5 : minDamage.get());
 
-            if (damage < minimumDamage) return;
+            // Candidates are compared in iteration order to give the same result as evaluating them one by one
+            for (PlaceCandidate candidate : candidates) {
+                BlockPos bp = candidate.pos;
+                boolean hasBlock = candidate.hasBlock;
+                if (!hasBlock && !isSupport.get()) continue;
 
-            // Check if it can be placed
-            double x = bp.getX();
-            double y = bp.getY() + 1;
-            double z = bp.getZ();
-            ((IBox) box).set(x, y, z, x + 1, y + (placement112.get() ? 1 : 2), z + 1);
+                ((IVec3d) vec3d).set(bp.getX() + 0.5, bp.getY() + 1, bp.getZ() + 0.5);
 
-            if (intersectsWithEntities(box)) return;
+                // Check damage to self and anti suicide
+                double selfDamage = hasBlock ? candidate.selfDamage : DamageUtils.crystalDamage(mc.player, vec3d, predictMovement.get(), bp, ignoreTerrain.get());
+                if (selfDamage > maxDamage.get() || (antiSuicide.get() && selfDamage >= EntityUtils.getTotalHealth(mc.player))) continue;
 
-            // Compare damage
-            if (damage > bestDamage.get() || (isSupport.get() && hasBlock)) {
-                bestDamage.set(damage);
-                bestBlockPos.get().set(bp);
-            }
+                // Check damage to targets and face place
+                double damage = hasBlock ? getDamageToTargets(candidate.targetDamages) : getDamageToTargets(vec3d, bp, false, support.get() == SupportMode.Fast);
+                if (damage < minimumDamage) continue;
 
-            if (hasBlock) isSupport.set(false);
-        });
+                // Check if it can be placed
+                double x = bp.getX();
+                double y = bp.getY() + 1;
+                double z = bp.getZ();
+                ((IBox) box).set(x, y, z, x + 1, y + (placement112.get() ? 1 : 2), z + 1);
 
-        // Place the crystal
-        BlockIterator.after(() -> {
+                if (intersectsWithEntities(box)) continue;
+
+                // Compare damage
+                if (damage > bestDamage.get() || (isSupport.get() && hasBlock)) {
+                    bestDamage.set(damage);
+                    bestBlockPos.get().set(bp);
+                }
+
+                if (hasBlock) isSupport.set(false);
+            }
+
+            // Place the crystal
             if (bestDamage.get() == 0) return;
 
             BlockHitResult result = getPlaceInfo(bestBlockPos.get());
@@ -1069,13 +1099,6 @@ public class CrystalAura extends Module {
 
     // Yaw steps
 
-    @EventHandler
-    private void onPacketSent(PacketEvent.Sent event) {
-        if (event.packet instanceof PlayerMoveC2SPacket) {
-            serverYaw = ((PlayerMoveC2SPacket) event.packet).getYaw((float) serverYaw);
-        }
-    }
-
     public boolean doYawSteps(double targetYaw, double targetPitch) {
         targetYaw = MathHelper.wrapDegrees(targetYaw) + 180;
         double serverYaw = MathHelper.wrapDegrees(this.serverYaw) + 180;
@@ -1194,6 +1217,25 @@ public class CrystalAura extends Module {
         return damage;
     }
 
+    private double getDamageToTargets(double[] targetDamages) {
+        double damage = 0;
+
+        for (int i = 0; i < targetDamages.length; i++) {
+            double dmg = targetDamages[i];
+
+            // Update best target
+            if (dmg > bestTargetDamage) {
+                bestTarget = targets.get(i);
+                bestTargetDamage = dmg;
+                bestTargetTimer = 10;
+            }
+
+            damage += dmg;
+        }
+
+        return damage;
+    }
+
     @Override
     public String getInfoString() {
         return bestTarget != null && bestTargetTimer > 0 ? bestTarget.getGameProfile().getName() : null;
@@ -1370,4 +1412,17 @@ public class CrystalAura extends Module {
         Gradient,
         None
     }
+
+    private static class PlaceCandidate {
+        public final BlockPos pos;
+        public final boolean hasBlock;
+
+        public double selfDamage;
+        public double[] targetDamages;
+
+        public PlaceCandidate(BlockPos pos, boolean hasBlock) {
+            this.pos = pos;
+            this.hasBlock = hasBlock;
+        }
+    }
 }
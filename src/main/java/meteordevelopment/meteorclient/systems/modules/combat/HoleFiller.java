@@ -19,13 +19,12 @@ import meteordevelopment.meteorclient.utils.player.FindItemResult;
 import meteordevelopment.meteorclient.utils.player.InvUtils;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
 import meteordevelopment.meteorclient.utils.world.Dir;
+import meteordevelopment.meteorclient.utils.world.HoleIndex;
 import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.entity.TntEntity;
 import net.minecraft.entity.decoration.EndCrystalEntity;
@@ -236,6 +235,13 @@ public class HoleFiller extends Module {
     @Override
     public void onActivate() {
         timer = 0;
+        HoleIndex.acquire();
+    }
+
+    @Override
+    public void onDeactivate() {
+        HoleIndex.release();
+        holes.clear();
     }
 
     @EventHandler
@@ -246,44 +252,28 @@ public class HoleFiller extends Module {
         FindItemResult block = InvUtils.findInHotbar(itemStack -> blocks.get().contains(Block.getBlockFromItem(itemStack.getItem())));
         if (!block.found()) return;
 
-        BlockIterator.register(searchRadius.get(), searchRadius.get(), (blockPos, blockState) -> {
-            if (!validHole(blockPos)) return;
-
-            int bedrock = 0, obsidian = 0;
-            Direction air = null;
-
-            for (Direction direction : Direction.values()) {
-                if (direction == Direction.UP) continue;
-
-                BlockState state = mc.world.getBlockState(blockPos.offset(direction));
-
-                if (state.getBlock() == Blocks.BEDROCK) bedrock++;
-                else if (state.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                else if (direction == Direction.DOWN) return;
-                else if (validHole(blockPos.offset(direction)) && air == null) {
-                    for (Direction dir : Direction.values()) {
-                        if (dir == direction.getOpposite() || dir == Direction.UP) continue;
+        BlockPos pos = mc.player.getBlockPos();
+        int radius = searchRadius.get();
 
-                        BlockState blockState1 = mc.world.getBlockState(blockPos.offset(direction).offset(dir));
+        if (smart.get() && !forceFill.get().isPressed()) {
+            // Only fill the hole closest to each target, the feet range is measured from the top of the hole
+            int range = (int) Math.ceil(feetRange.get()) + 1;
 
-                        if (blockState1.getBlock() == Blocks.BEDROCK) bedrock++;
-                        else if (blockState1.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                        else return;
-                    }
+            for (PlayerEntity target : targets) {
+                BlockPos hole = HoleIndex.getNearest(target.getBlockPos(), range, (x, y, z, type, partner) -> canFill(x, y, z, partner));
+                if (hole == null || holes.stream().anyMatch(h -> h.blockPos.equals(hole))) continue;
 
-                    air = direction;
-                }
-
-                if (obsidian + bedrock == 5 && air == null) holes.add(new Hole(blockPos, (byte) 0));
-                else if (obsidian + bedrock == 8 && doubles.get() && air != null) {
-                    holes.add(new Hole(blockPos, Dir.get(air)));
-                }
+                Direction partner = HoleIndex.getPartner(hole.getX(), hole.getY(), hole.getZ());
+                holes.add(new Hole(hole.getX(), hole.getY(), hole.getZ(), partner == null ? 0 : Dir.get(partner)));
             }
-        });
-
-        BlockIterator.after(() -> {
-            if (timer > 0 || holes.isEmpty()) return;
+        }
+        else {
+            HoleIndex.forEach(pos.getX() - radius, pos.getY() - radius, pos.getZ() - radius, pos.getX() + radius, pos.getY() + radius, pos.getZ() + radius, (x, y, z, type, partner) -> {
+                if (canFill(x, y, z, partner)) holes.add(new Hole(x, y, z, partner == null ? 0 : Dir.get(partner)));
+            });
+        }
 
+        if (timer <= 0 && !holes.isEmpty()) {
             int bpt = 0;
             for (Hole hole : holes) {
                 if (bpt >= blocksPerTick.get()) continue;
@@ -291,7 +281,7 @@ public class HoleFiller extends Module {
             }
 
             timer = placeDelay.get();
-        });
+        }
 
         timer--;
     }
@@ -314,8 +304,13 @@ public class HoleFiller extends Module {
         }
     }
 
-    private boolean validHole(BlockPos pos) {
-        testPos.set(pos);
+    private boolean canFill(int x, int y, int z, Direction partner) {
+        if (!validHole(x, y, z)) return false;
+        return partner == null || (doubles.get() && validHole(x + partner.getOffsetX(), y, z + partner.getOffsetZ()));
+    }
+
+    private boolean validHole(int x, int y, int z) {
+        testPos.set(x, y, z);
 
         if (mc.player.getBlockPos().equals(testPos)) return false;
         if (distance(mc.player, testPos, false) > placeRange.get()) return false;
@@ -326,7 +321,10 @@ public class HoleFiller extends Module {
         if (((AbstractBlockAccessor) mc.world.getBlockState(testPos).getBlock()).isCollidable()) return false;
         testPos.add(0, -1, 0);
 
-        ((IBox) box).set(pos);
+        // Make sure the floor and walls are still there before placing into the hole
+        if (!HoleIndex.verify(x, y, z)) return false;
+
+        ((IBox) box).set(testPos);
         if (!mc.world.getOtherEntities(null, box, entity
             -> entity instanceof PlayerEntity
             || entity instanceof TntEntity
@@ -395,8 +393,8 @@ public class HoleFiller extends Module {
         private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
         private final byte exclude;
 
-        public Hole(BlockPos blockPos, byte exclude) {
-            this.blockPos.set(blockPos);
+        public Hole(int x, int y, int z, byte exclude) {
+            this.blockPos.set(x, y, z);
             this.exclude = exclude;
         }
     }
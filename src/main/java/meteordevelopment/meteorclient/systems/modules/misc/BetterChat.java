@@ -12,6 +12,7 @@ import it.unimi.dsi.fastutil.chars.Char2CharOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import meteordevelopment.meteorclient.commands.Commands;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
 import meteordevelopment.meteorclient.events.game.ReceiveMessageEvent;
 import meteordevelopment.meteorclient.events.game.SendMessageEvent;
 import meteordevelopment.meteorclient.mixin.ChatHudAccessor;
@@ -36,10 +37,7 @@ import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.regex.Matcher;
+import java.util.*;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -217,9 +215,6 @@ public class BetterChat extends Module {
         .build()
     );
 
-    private static final Pattern antiSpamRegex = Pattern.compile(" \\(([0-9]+)\\)$");
-    private static final Pattern timestampRegex = Pattern.compile("^(<[0-9]{2}:[0-9]{2}>\\s)");
-
     private final Char2CharMap SMALL_CAPS = new Char2CharOpenHashMap();
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm");
     public final IntList lines = new IntArrayList();
@@ -236,22 +231,25 @@ public class BetterChat extends Module {
     @EventHandler
     private void onMessageReceive(ReceiveMessageEvent event) {
         Text message = event.getMessage();
+        String messageString = message.getString();
 
-        if (filterRegex.get()) {
-            String messageString = message.getString();
-            for (Pattern pattern : filterRegexList) {
-                if (pattern.matcher(messageString).find()) {
-                    event.cancel();
-                    return;
-                }
-            }
+        if (filterRegex.get() && isFiltered(messageString)) {
+            event.cancel();
+            return;
         }
 
+        int count = 1;
+
         if (antiSpam.get()) {
-            Text antiSpammed = appendAntiSpam(message);
+            AntiSpamWindow.Entry entry = antiSpamWindow.get(messageString);
+
+            if (entry != null) {
+                Text antiSpammed = appendAntiSpam(message, entry);
 
-            if (antiSpammed != null) {
-                message = antiSpammed;
+                if (antiSpammed != null) {
+                    message = antiSpammed;
+                    count = entry.count() + 1;
+                }
             }
         }
 
@@ -261,46 +259,31 @@ public class BetterChat extends Module {
             message = Text.empty().append(timestamp).append(message);
         }
 
+        if (antiSpam.get()) antiSpamWindow.add(messageString, message, count, antiSpamDepth.get());
+
         event.setMessage(message);
     }
 
 
-    private Text appendAntiSpam(Text text) {
-        String textString = text.getString();
-        Text returnText = null;
+    private Text appendAntiSpam(Text text, AntiSpamWindow.Entry entry) {
         int messageIndex = -1;
 
         List<ChatHudLine> messages = ((ChatHudAccessor) mc.inGameHud.getChatHud()).getMessages();
         if (messages.isEmpty()) return null;
 
+        // The previous message is only merged if it is still one of the last depth messages in the chat
         for (int i = 0; i < Math.min(antiSpamDepth.get(), messages.size()); i++) {
-            String stringToCheck = messages.get(i).content().getString();
-
-            Matcher timestampMatcher = timestampRegex.matcher(stringToCheck);
-            if (timestampMatcher.find()) {
-                stringToCheck = stringToCheck.substring(8);
-            }
-
-            if (textString.equals(stringToCheck)) {
+            if (messages.get(i).content() == entry.message()) {
                 messageIndex = i;
-                returnText = text.copy().append(Text.literal(" (2)").formatted(Formatting.GRAY));
                 break;
-            } else {
-                Matcher matcher = antiSpamRegex.matcher(stringToCheck);
-                if (!matcher.find()) continue;
-
-                String group = matcher.group(matcher.groupCount());
-                int number = Integer.parseInt(group);
-
-                if (stringToCheck.substring(0, matcher.start()).equals(textString)) {
-                    messageIndex = i;
-                    returnText = text.copy().append(Text.literal(" (" + (number + 1) + ")").formatted(Formatting.GRAY));
-                    break;
-                }
             }
         }
 
-        if (returnText != null) {
+        Text returnText = null;
+
+        if (messageIndex != -1) {
+            returnText = text.copy().append(Text.literal(" (" + (entry.count() + 1) + ")").formatted(Formatting.GRAY));
+
             List<ChatHudLine.Visible> visible = ((ChatHudAccessor) mc.inGameHud.getChatHud()).getVisibleMessages();
 
             int start = -1;
@@ -321,6 +304,12 @@ public class BetterChat extends Module {
         return returnText;
     }
 
+    @EventHandler
+    private void onGameLeft(GameLeftEvent event) {
+        // Messages of the last server are not merged with messages of the next one
+        antiSpamWindow.clear();
+    }
+
     @EventHandler
     private void onMessageSend(SendMessageEvent event) {
         String message = event.message;
@@ -466,8 +455,14 @@ public class BetterChat extends Module {
 
     // Filter Regex
 
+    private static final Pattern backReferenceRegex = Pattern.compile("\\\\(?:[1-9]|k<)");
+
     private final List<Pattern> filterRegexList = new ArrayList<>();
 
+    // All filters combined into a single alternation and the filters which can't be combined
+    private Pattern combinedFilter;
+    private final List<Pattern> separateFilters = new ArrayList<>();
+
     private void compileFilterRegexList() {
         filterRegexList.clear();
 
@@ -479,6 +474,82 @@ public class BetterChat extends Module {
                 error("Removing Invalid regex: %s", removed);
             }
         }
+
+        combineFilters();
+    }
+
+    /**
+     * Combines the filters so a message only has to be matched against a single pattern. Filters with back references
+     * are kept separate since wrapping them would change their group numbers.
+     */
+    private void combineFilters() {
+        combinedFilter = null;
+        separateFilters.clear();
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Pattern pattern : filterRegexList) {
+            if (backReferenceRegex.matcher(pattern.pattern()).find()) {
+                separateFilters.add(pattern);
+                continue;
+            }
+
+            if (!sb.isEmpty()) sb.append('|');
+            sb.append("(?:").append(pattern.pattern()).append(')');
+        }
+
+        if (sb.isEmpty()) return;
+
+        try {
+            combinedFilter = Pattern.compile(sb.toString());
+        } catch (PatternSyntaxException e) {
+            // Named groups can't be declared twice in a single pattern
+            separateFilters.clear();
+            separateFilters.addAll(filterRegexList);
+        }
+    }
+
+    private boolean isFiltered(String message) {
+        if (combinedFilter != null && combinedFilter.matcher(message).find()) return true;
+
+        for (Pattern pattern : separateFilters) {
+            if (pattern.matcher(message).find()) return true;
+        }
+
+        return false;
+    }
+
+    // Anti Spam
+
+    private final AntiSpamWindow antiSpamWindow = new AntiSpamWindow();
+
+    /**
+     * The last received distinct messages keyed by their text without timestamp and count, so duplicates can be found
+     * without going through the chat history. Entries are ordered from the oldest to the most recently received.
+     */
+    private static class AntiSpamWindow {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        public Entry get(String text) {
+            return entries.get(text);
+        }
+
+        public void add(String text, Text message, int count, int capacity) {
+            // A merged duplicate replaces its previous entry and moves it to the end instead of taking another place
+            entries.remove(text);
+            entries.put(text, new Entry(message, count));
+
+            for (Iterator<Entry> it = entries.values().iterator(); entries.size() > capacity; ) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        public void clear() {
+            entries.clear();
+        }
+
+        private record Entry(Text message, int count) {}
     }
 
     // Prefix and Suffix
@@ -22,6 +22,7 @@ import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.notebot.NotebotUtils;
+import meteordevelopment.meteorclient.utils.notebot.SongLibrary;
 import meteordevelopment.meteorclient.utils.notebot.decoder.SongDecoder;
 import meteordevelopment.meteorclient.utils.notebot.decoder.SongDecoders;
 import meteordevelopment.meteorclient.utils.notebot.instrumentdetect.InstrumentDetectMode;
@@ -449,7 +450,7 @@ public class Notebot extends Module {
                 return;
             }
 
-            if (song.getNotesMap().containsKey(currentTick)) {
+            if (song.hasNotes(currentTick)) {
                 if (playingMode == PlayingMode.Preview) onTickPreview();
                 else if (mc.player.getAbilities().creativeMode) {
                     error("You need to be in survival mode.");
@@ -649,15 +650,24 @@ public class Notebot extends Module {
     }
 
     public void playRandomSong() {
-        File[] files = MeteorClient.FOLDER.toPath().resolve("notebot").toFile().listFiles();
-        if (files == null) return;
+        List<SongLibrary.Entry> songs = SongLibrary.getEntries();
 
-        File randomSong = files[ThreadLocalRandom.current().nextInt(files.length)];
-        if (SongDecoders.hasDecoder(randomSong)) {
-            loadSong(randomSong);
-        } else {
-            playRandomSong();
+        if (!songs.isEmpty()) {
+            File file = songs.get(ThreadLocalRandom.current().nextInt(songs.size())).file();
+
+            if (file.isFile()) {
+                loadSong(file);
+                return;
+            }
         }
+
+        // The library has not been indexed yet or is outdated
+        if (!SongLibrary.isRefreshing()) SongLibrary.refresh(null);
+
+        File[] files = SongLibrary.FOLDER.listFiles(file -> file.isFile() && SongDecoders.hasDecoder(file));
+        if (files == null || files.length == 0) return;
+
+        loadSong(files[ThreadLocalRandom.current().nextInt(files.length)]);
     }
 
     public void disable() {
@@ -794,7 +804,7 @@ public class Notebot extends Module {
     }
 
     private void onTickPreview() {
-        for (Note note : song.getNotesMap().get(currentTick)) {
+        for (Note note : song.getNotes(currentTick)) {
             if (mode.get() == NotebotUtils.NotebotMode.ExactInstruments) {
                 mc.player.playSound(note.getInstrument().getSound().value(), 2f, (float) Math.pow(2.0D, (note.getNoteLevel() - 12) / 12.0D));
             } else {
@@ -889,7 +899,7 @@ public class Notebot extends Module {
     }
 
     private void onTickPlay() {
-        Collection<Note> notes = song.getNotesMap().get(this.currentTick);
+        List<Note> notes = song.getNotes(this.currentTick);
         if (!notes.isEmpty()) {
 
             // Rotate player's head
@@ -5,26 +5,31 @@
 
 package meteordevelopment.meteorclient.systems.modules.misc;
 
-import meteordevelopment.meteorclient.events.packets.PacketEvent;
 import meteordevelopment.meteorclient.settings.PacketListSetting;
 import meteordevelopment.meteorclient.settings.Setting;
 import meteordevelopment.meteorclient.settings.SettingGroup;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.utils.network.PacketDispatcher;
 import meteordevelopment.meteorclient.utils.network.PacketUtils;
-import meteordevelopment.orbit.EventHandler;
 import meteordevelopment.orbit.EventPriority;
 import net.minecraft.network.packet.Packet;
 
+import java.util.BitSet;
 import java.util.Set;
 
 public class PacketCanceller extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
+    // Compiled from the settings so checking a packet does not have to hash its class
+    private BitSet s2cIds = new BitSet();
+    private BitSet c2sIds = new BitSet();
+
     private final Setting<Set<Class<? extends Packet<?>>>> s2cPackets = sgGeneral.add(new PacketListSetting.Builder()
         .name("S2C-packets")
         .description("Server-to-client packets to cancel.")
         .filter(aClass -> PacketUtils.getS2CPackets().contains(aClass))
+        .onChanged(packets -> s2cIds = PacketDispatcher.getIds(packets))
         .build()
     );
 
@@ -32,20 +37,28 @@ public class PacketCanceller extends Module {
         .name("C2S-packets")
         .description("Client-to-server packets to cancel.")
         .filter(aClass -> PacketUtils.getC2SPackets().contains(aClass))
+        .onChanged(packets -> c2sIds = PacketDispatcher.getIds(packets))
         .build()
     );
 
+    @SuppressWarnings("unchecked")
     public PacketCanceller() {
         super(Categories.Misc, "packet-canceller", "Allows you to cancel certain packets.");
-    }
 
-    @EventHandler(priority = EventPriority.HIGHEST + 1)
-    private void onReceivePacket(PacketEvent.Receive event) {
-        if (s2cPackets.get().contains(event.packet.getClass())) event.cancel();
+        // Runs before all other packet listeners
+        Class<Packet<?>> packetClass = (Class<Packet<?>>) (Class<?>) Packet.class;
+
+        PacketDispatcher.onReceive(this, packetClass, EventPriority.HIGHEST + 1, (event, packet) -> {
+            if (isCancelled(s2cIds, s2cPackets.get(), packet)) event.cancel();
+        });
+
+        PacketDispatcher.onSend(this, packetClass, EventPriority.HIGHEST + 1, (event, packet) -> {
+            if (isCancelled(c2sIds, c2sPackets.get(), packet)) event.cancel();
+        });
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST + 1)
-    private void onSendPacket(PacketEvent.Send event) {
-        if (c2sPackets.get().contains(event.packet.getClass())) event.cancel();
+    private static boolean isCancelled(BitSet ids, Set<Class<? extends Packet<?>>> packets, Packet<?> packet) {
+        int id = PacketDispatcher.getId(packet.getClass());
+        return id != -1 ? ids.get(id) : packets.contains(packet.getClass());
     }
 }
@@ -5,63 +5,143 @@
 
 package meteordevelopment.meteorclient.systems.modules.misc.swarm;
 
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
-public class SwarmConnection extends Thread {
-    public final Socket socket;
-    public String messageToSend;
+/**
+ * A single worker connected to the {@link SwarmHost}. All IO happens on the host's selector thread, other threads only
+ * queue messages through {@link #queue(int, ByteBuffer)}.
+ */
+public class SwarmConnection {
+    /** Workers with more unacknowledged messages are disconnected. */
+    private static final int MAX_PENDING_ACKS = 1024;
+
+    public final SocketChannel channel;
+    private final InetSocketAddress address;
+
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+
+    private final Int2LongMap pendingAcks = new Int2LongOpenHashMap();
+    private volatile long lastLatency = -1;
+    private volatile boolean overloaded;
+
+    SelectionKey key;
 
-    public SwarmConnection(Socket socket) {
-        this.socket = socket;
-        start();
+    public SwarmConnection(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.address = (InetSocketAddress) channel.getRemoteAddress();
+
+        ChatUtils.infoPrefix("Swarm", "New worker connected on %s.", getIp(address.getAddress().getHostAddress()));
     }
 
-    @Override
-    public void run() {
-        ChatUtils.infoPrefix("Swarm", "New worker connected on %s.", getIp(socket.getInetAddress().getHostAddress()));
+    /**
+     * Queues the frame unless the worker stopped acknowledging messages, in which case the host drops the connection.
+     */
+    void queue(int id, ByteBuffer frame) {
+        synchronized (writeQueue) {
+            if (pendingAcks.size() >= MAX_PENDING_ACKS) {
+                overloaded = true;
+                return;
+            }
 
-        try {
-            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-
-            while (!isInterrupted()) {
-                if (messageToSend != null) {
-                    try {
-                        out.writeUTF(messageToSend);
-                        out.flush();
-                    } catch (Exception e) {
-                        ChatUtils.errorPrefix("Swarm", "Encountered error when sending command.");
-                        e.printStackTrace();
-                    }
-
-                    messageToSend = null;
-                }
+            writeQueue.add(frame);
+            pendingAcks.put(id, System.nanoTime());
+        }
+    }
+
+    boolean isOverloaded() {
+        return overloaded;
+    }
+
+    boolean hasPendingWrites() {
+        synchronized (writeQueue) {
+            return !writeQueue.isEmpty();
+        }
+    }
+
+    /**
+     * Writes as many queued frames as the socket accepts, frames queued since the last write are sent together.
+     * @return true if everything was written
+     */
+    boolean write() throws IOException {
+        synchronized (writeQueue) {
+            while (!writeQueue.isEmpty()) {
+                channel.write(writeQueue.toArray(new ByteBuffer[0]));
+
+                while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) writeQueue.poll();
+                if (!writeQueue.isEmpty()) return false;
             }
 
-            out.close();
-        } catch (IOException e) {
-            ChatUtils.infoPrefix("Swarm", "Error creating a connection with %s on port %s.", getIp(socket.getInetAddress().getHostAddress()), socket.getPort());
-            e.printStackTrace();
+            return true;
         }
     }
 
+    /**
+     * Reads acknowledgements sent by the worker.
+     * @return false if the worker closed the connection
+     */
+    boolean read() throws IOException {
+        if (channel.read(readBuffer) == -1) return false;
+        readBuffer.flip();
+
+        while (readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < SwarmProtocol.HEADER_SIZE || length > readBuffer.capacity() - 4) throw new IOException("Invalid Swarm frame length " + length + ".");
+            if (readBuffer.remaining() < 4 + length) break;
+
+            readBuffer.getInt();
+            byte type = readBuffer.get();
+            int id = readBuffer.getInt();
+            readBuffer.position(readBuffer.position() + length - SwarmProtocol.HEADER_SIZE);
+
+            if (type == SwarmProtocol.ACK) {
+                synchronized (writeQueue) {
+                    long sent = pendingAcks.remove(id);
+                    if (sent != 0) lastLatency = System.nanoTime() - sent;
+                }
+            }
+        }
+
+        readBuffer.compact();
+        return true;
+    }
+
     public void disconnect() {
+        if (key != null) key.cancel();
+
         try {
-            socket.close();
+            channel.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        ChatUtils.infoPrefix("Swarm", "Worker disconnected on ip: %s.", socket.getInetAddress().getHostAddress());
+        ChatUtils.infoPrefix("Swarm", "Worker disconnected on ip: %s.", address.getAddress().getHostAddress());
+    }
+
+    /** Number of messages that were sent to the worker but not acknowledged yet. */
+    public int getUnacknowledged() {
+        synchronized (writeQueue) {
+            return pendingAcks.size();
+        }
+    }
 
-        interrupt();
+    /** Time in nanoseconds between sending the last acknowledged message and receiving its acknowledgement, or -1. */
+    public long getLastLatency() {
+        return lastLatency;
     }
 
     public String getConnection() {
-        return getIp(socket.getInetAddress().getHostAddress()) + ":" + socket.getPort();
+        return getIp(address.getAddress().getHostAddress()) + ":" + address.getPort();
     }
 
     private String getIp(String ip) {
@@ -5,90 +5,192 @@
 
 package meteordevelopment.meteorclient.systems.modules.misc.swarm;
 
-import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves all workers from a single thread using a {@link Selector}. The thread only wakes up when a worker connects,
+ * sends an acknowledgement or when there are messages to write. The selector and all channels are only closed by the
+ * host thread.
+ */
 public class SwarmHost extends Thread {
-    private ServerSocket socket;
-    private final SwarmConnection[] clientConnections = new SwarmConnection[50];
+    private ServerSocketChannel socket;
+    private Selector selector;
+    private final List<SwarmConnection> clientConnections = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final int port;
 
     public SwarmHost(int port) {
+        this.port = port;
+
         try {
-            socket = new ServerSocket(port);
+            selector = Selector.open();
+            socket = ServerSocketChannel.open();
+            socket.bind(new InetSocketAddress(port));
+            socket.configureBlocking(false);
+            socket.register(selector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
             socket = null;
             ChatUtils.errorPrefix("Swarm", "Couldn't start a server on port %s.", port);
             e.printStackTrace();
         }
 
-        if (socket != null) start();
+        if (socket != null) {
+            setName("Meteor-Swarm-Host");
+            setDaemon(true);
+            start();
+        }
     }
 
     @Override
     public void run() {
-        ChatUtils.infoPrefix("Swarm", "Listening for incoming connections on port %s.", socket.getLocalPort());
+        ChatUtils.infoPrefix("Swarm", "Listening for incoming connections on port %s.", port);
 
         while (!isInterrupted()) {
             try {
-                Socket connection = socket.accept();
-                assignConnectionToSubServer(connection);
+                selector.select();
+                if (isInterrupted()) break;
+
+                for (SwarmConnection connection : clientConnections) {
+                    if (connection.isOverloaded()) {
+                        ChatUtils.errorPrefix("Swarm", "Worker %s stopped acknowledging messages.", connection.getConnection());
+                        removeConnection(connection);
+                    }
+                    // Register interest in writing for connections with queued messages
+                    else if (connection.key.isValid() && connection.hasPendingWrites()) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) accept();
+                    else handle(key, (SwarmConnection) key.attachment());
+                }
             } catch (IOException e) {
+                if (isInterrupted()) break;
+
                 ChatUtils.errorPrefix("Swarm", "Error making a connection to worker.");
                 e.printStackTrace();
+            } catch (ClosedSelectorException e) {
+                break;
             }
         }
+
+        close();
     }
 
-    public void assignConnectionToSubServer(Socket connection) {
-        for (int i = 0; i < clientConnections.length; i++) {
-            if (this.clientConnections[i] == null) {
-                this.clientConnections[i] = new SwarmConnection(connection);
-                break;
+    private void accept() throws IOException {
+        SocketChannel channel = socket.accept();
+        if (channel == null) return;
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        SwarmConnection connection = new SwarmConnection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        clientConnections.add(connection);
+    }
+
+    private void handle(SelectionKey key, SwarmConnection connection) {
+        try {
+            if (key.isReadable() && !connection.read()) {
+                removeConnection(connection);
+                return;
             }
+
+            if (key.isValid() && key.isWritable() && connection.write()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            ChatUtils.errorPrefix("Swarm", "Encountered error when communicating with worker %s.", connection.getConnection());
+            e.printStackTrace();
+
+            removeConnection(connection);
         }
     }
 
+    private void removeConnection(SwarmConnection connection) {
+        clientConnections.remove(connection);
+        connection.disconnect();
+    }
+
+    /**
+     * Stops the host thread, which closes all connections once it wakes up.
+     */
     public void disconnect() {
-        for (SwarmConnection connection : clientConnections) {
-            if (connection != null) connection.disconnect();
+        interrupt();
+
+        if (selector == null) return;
+
+        if (socket == null) {
+            // The thread was never started
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        else selector.wakeup();
+    }
+
+    private void close() {
+        for (SwarmConnection connection : clientConnections) connection.disconnect();
+        clientConnections.clear();
 
         try {
             socket.close();
+            selector.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        ChatUtils.infoPrefix("Swarm", "Server closed on port %s.", socket.getLocalPort());
-
-        interrupt();
+        ChatUtils.infoPrefix("Swarm", "Server closed on port %s.", port);
     }
 
+    /**
+     * Queues the message for every connected worker. The frame is only encoded once and messages queued before the
+     * selector thread wakes up are written in one batch.
+     */
     public void sendMessage(String s) {
-        MeteorExecutor.execute(() -> {
-            for (SwarmConnection connection : clientConnections) {
-                if (connection != null) {
-                    connection.messageToSend = s;
-                }
-            }
-        });
+        int id = nextMessageId.getAndIncrement();
+        ByteBuffer frame = SwarmProtocol.encode(SwarmProtocol.MESSAGE, id, s);
+
+        // Workers drop the connection when receiving larger frames
+        if (frame.remaining() - 4 > SwarmProtocol.MAX_FRAME_SIZE) {
+            ChatUtils.errorPrefix("Swarm", "Message is too long to be sent to the workers.");
+            return;
+        }
+
+        for (SwarmConnection connection : clientConnections) {
+            connection.queue(id, frame.duplicate());
+        }
+
+        selector.wakeup();
     }
 
-    public SwarmConnection[] getConnections() {
+    public List<SwarmConnection> getConnections() {
         return clientConnections;
     }
 
     public int getConnectionCount() {
-        int count = 0;
-
-        for (SwarmConnection clientConnection : clientConnections) {
-            if (clientConnection != null) count++;
-        }
-
-        return count;
+        return clientConnections.size();
     }
 }
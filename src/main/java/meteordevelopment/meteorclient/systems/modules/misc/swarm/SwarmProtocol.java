@@ -0,0 +1,38 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.systems.modules.misc.swarm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames exchanged between the Swarm host and its workers. Every frame starts with an int holding the length of the
+ * rest of the frame, followed by the frame type and the message id.
+ * <ul>
+ *     <li>{@link #MESSAGE}: host to worker, followed by the UTF-8 encoded command.</li>
+ *     <li>{@link #ACK}: worker to host, acknowledges that the message with the id was received.</li>
+ * </ul>
+ */
+public class SwarmProtocol {
+    public static final byte MESSAGE = 0;
+    public static final byte ACK = 1;
+
+    /** Size of the type and id fields. */
+    public static final int HEADER_SIZE = 1 + 4;
+    public static final int MAX_FRAME_SIZE = 1024 * 64;
+
+    public static ByteBuffer encode(byte type, int id, String message) {
+        byte[] bytes = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + HEADER_SIZE + bytes.length);
+        buffer.putInt(HEADER_SIZE + bytes.length);
+        buffer.put(type);
+        buffer.putInt(id);
+        buffer.put(bytes);
+
+        return buffer.flip();
+    }
+}
@@ -10,9 +10,13 @@ import meteordevelopment.meteorclient.commands.Commands;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
 import net.minecraft.block.Block;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class SwarmWorker extends Thread {
     private Socket socket;
@@ -35,11 +39,26 @@ public class SwarmWorker extends Thread {
         ChatUtils.infoPrefix("Swarm", "Connected to Swarm host on at %s on port %s.", getIp(socket.getInetAddress().getHostAddress()), socket.getPort());
 
         try {
-            DataInputStream in = new DataInputStream(socket.getInputStream());
-
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
 
             while (!isInterrupted()) {
-                String read = in.readUTF();
+                int length = in.readInt();
+                if (length < SwarmProtocol.HEADER_SIZE || length > SwarmProtocol.MAX_FRAME_SIZE) throw new IOException("Invalid Swarm frame length " + length + ".");
+
+                byte type = in.readByte();
+                int id = in.readInt();
+                byte[] payload = new byte[length - SwarmProtocol.HEADER_SIZE];
+                in.readFully(payload);
+
+                if (type != SwarmProtocol.MESSAGE) continue;
+
+                // Acknowledge before running the command so the host measures transport latency only
+                ByteBuffer ack = SwarmProtocol.encode(SwarmProtocol.ACK, id, null);
+                out.write(ack.array(), 0, ack.limit());
+                out.flush();
+
+                String read = new String(payload, StandardCharsets.UTF_8);
 
                 if (!read.equals("")) {
                     ChatUtils.infoPrefix("Swarm", "Received command: (highlight)%s", read);
@@ -14,6 +14,7 @@ import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.systems.friends.Friends;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.utils.entity.EntityIndex;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 import meteordevelopment.meteorclient.utils.render.NametagUtils;
@@ -191,11 +192,16 @@ public class ESP extends Module {
 
         count = 0;
 
-        for (Entity entity : mc.world.getEntities()) {
-            if (shouldSkip(entity)) continue;
+        for (EntityType<?> type : entities.get()) {
+            EntityIndex.EntityList list = EntityIndex.get(type);
 
-            if (mode.get() == Mode.Box || mode.get() == Mode.Wireframe) drawBoundingBox(event, entity);
-            count++;
+            for (int i = 0; i < list.size(); i++) {
+                Entity entity = list.get(i);
+                if (entity.isRemoved() || shouldSkip(entity)) continue;
+
+                if (mode.get() == Mode.Box || mode.get() == Mode.Wireframe) drawBoundingBox(event, entity);
+                count++;
+            }
         }
     }
 
@@ -227,51 +233,56 @@ public class ESP extends Module {
         Renderer2D.COLOR.begin();
         count = 0;
 
-        for (Entity entity : mc.world.getEntities()) {
-            if (shouldSkip(entity)) continue;
-
-            Box box = entity.getBoundingBox();
-
-            double x = MathHelper.lerp(event.tickDelta, entity.lastRenderX, entity.getX()) - entity.getX();
-            double y = MathHelper.lerp(event.tickDelta, entity.lastRenderY, entity.getY()) - entity.getY();
-            double z = MathHelper.lerp(event.tickDelta, entity.lastRenderZ, entity.getZ()) - entity.getZ();
-
-            // Check corners
-            pos1.set(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-            pos2.set(0, 0, 0);
-
-            //     Bottom
-            if (checkCorner(box.minX + x, box.minY + y, box.minZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.maxX + x, box.minY + y, box.minZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.minX + x, box.minY + y, box.maxZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.maxX + x, box.minY + y, box.maxZ + z, pos1, pos2)) continue;
-
-            //     Top
-            if (checkCorner(box.minX + x, box.maxY + y, box.minZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.maxX + x, box.maxY + y, box.minZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.minX + x, box.maxY + y, box.maxZ + z, pos1, pos2)) continue;
-            if (checkCorner(box.maxX + x, box.maxY + y, box.maxZ + z, pos1, pos2)) continue;
-
-            // Setup color
-            Color color = getColor(entity);
-            if (color != null) {
-                lineColor.set(color);
-                sideColor.set(color).a((int) (sideColor.a * fillOpacity.get()));
-            }
-
-            // Render
-            if (shapeMode.get() != ShapeMode.Lines && sideColor.a > 0) {
-                Renderer2D.COLOR.quad(pos1.x, pos1.y, pos2.x - pos1.x, pos2.y - pos1.y, sideColor);
+        for (EntityType<?> type : entities.get()) {
+            EntityIndex.EntityList list = EntityIndex.get(type);
+
+            for (int i = 0; i < list.size(); i++) {
+                Entity entity = list.get(i);
+                if (entity.isRemoved() || shouldSkip(entity)) continue;
+
+                Box box = entity.getBoundingBox();
+
+                double x = MathHelper.lerp(event.tickDelta, entity.lastRenderX, entity.getX()) - entity.getX();
+                double y = MathHelper.lerp(event.tickDelta, entity.lastRenderY, entity.getY()) - entity.getY();
+                double z = MathHelper.lerp(event.tickDelta, entity.lastRenderZ, entity.getZ()) - entity.getZ();
+
+                // Check corners
+                pos1.set(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+                pos2.set(0, 0, 0);
+
+                //     Bottom
+                if (checkCorner(box.minX + x, box.minY + y, box.minZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.maxX + x, box.minY + y, box.minZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.minX + x, box.minY + y, box.maxZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.maxX + x, box.minY + y, box.maxZ + z, pos1, pos2)) continue;
+
+                //     Top
+                if (checkCorner(box.minX + x, box.maxY + y, box.minZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.maxX + x, box.maxY + y, box.minZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.minX + x, box.maxY + y, box.maxZ + z, pos1, pos2)) continue;
+                if (checkCorner(box.maxX + x, box.maxY + y, box.maxZ + z, pos1, pos2)) continue;
+
+                // Setup color
+                Color color = getColor(entity);
+                if (color != null) {
+                    lineColor.set(color);
+                    sideColor.set(color).a((int) (sideColor.a * fillOpacity.get()));
+                }
+
+                // Render
+                if (shapeMode.get() != ShapeMode.Lines && sideColor.a > 0) {
+                    Renderer2D.COLOR.quad(pos1.x, pos1.y, pos2.x - pos1.x, pos2.y - pos1.y, sideColor);
+                }
+
+                if (shapeMode.get() != ShapeMode.Sides) {
+                    Renderer2D.COLOR.line(pos1.x, pos1.y, pos1.x, pos2.y, lineColor);
+                    Renderer2D.COLOR.line(pos2.x, pos1.y, pos2.x, pos2.y, lineColor);
+                    Renderer2D.COLOR.line(pos1.x, pos1.y, pos2.x, pos1.y, lineColor);
+                    Renderer2D.COLOR.line(pos1.x, pos2.y, pos2.x, pos2.y, lineColor);
+                }
+
+                count++;
             }
-
-            if (shapeMode.get() != ShapeMode.Sides) {
-                Renderer2D.COLOR.line(pos1.x, pos1.y, pos1.x, pos2.y, lineColor);
-                Renderer2D.COLOR.line(pos2.x, pos1.y, pos2.x, pos2.y, lineColor);
-                Renderer2D.COLOR.line(pos1.x, pos1.y, pos2.x, pos1.y, lineColor);
-                Renderer2D.COLOR.line(pos1.x, pos2.y, pos2.x, pos2.y, lineColor);
-            }
-
-            count++;
         }
 
         Renderer2D.COLOR.render(null);
@@ -7,7 +7,6 @@ package meteordevelopment.meteorclient.systems.modules.render;
 
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
-import meteordevelopment.meteorclient.mixin.AbstractBlockAccessor;
 import meteordevelopment.meteorclient.renderer.Renderer3D;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
@@ -17,16 +16,11 @@ import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.utils.misc.Pool;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
 import meteordevelopment.meteorclient.utils.world.Dir;
+import meteordevelopment.meteorclient.utils.world.HoleIndex;
 import meteordevelopment.orbit.EventHandler;
-import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkSectionPos;
-import net.minecraft.util.math.Direction;
-import net.minecraft.world.chunk.WorldChunk;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -161,69 +155,52 @@ public class HoleESP extends Module {
     private final Pool<Hole> holePool = new Pool<>(Hole::new);
     private final List<Hole> holes = new ArrayList<>();
 
+    private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
     private final byte NULL = 0;
 
     public HoleESP() {
         super(Categories.Render, "hole-esp", "Displays holes that you will take less damage in.");
     }
 
+    @Override
+    public void onActivate() {
+        HoleIndex.acquire();
+    }
+
+    @Override
+    public void onDeactivate() {
+        HoleIndex.release();
+
+        for (Hole hole : holes) holePool.free(hole);
+        holes.clear();
+    }
+
     @EventHandler
     private void onTick(TickEvent.Pre event) {
         for (Hole hole : holes) holePool.free(hole);
         holes.clear();
 
-        BlockIterator.register(horizontalRadius.get(), verticalRadius.get(), (blockPos, blockState) -> {
-            if (!validHole(blockPos)) return;
-
-            int bedrock = 0, obsidian = 0;
-            Direction air = null;
-
-            for (Direction direction : Direction.values()) {
-                if (direction == Direction.UP) continue;
-                BlockPos offsetPos = blockPos.offset(direction);
-                BlockState state = mc.world.getBlockState(offsetPos);
+        BlockPos pos = mc.player.getBlockPos();
+        int hRadius = horizontalRadius.get(), vRadius = verticalRadius.get();
 
-                if (state.getBlock() == Blocks.BEDROCK) bedrock++;
-                else if (state.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                else if (direction == Direction.DOWN) return;
-                else if (doubles.get() && air == null && validHole(offsetPos)) {
-                    for (Direction dir : Direction.values()) {
-                        if (dir == direction.getOpposite() || dir == Direction.UP) continue;
+        HoleIndex.forEach(pos.getX() - hRadius, pos.getY() - vRadius, pos.getZ() - hRadius, pos.getX() + hRadius, pos.getY() + vRadius, pos.getZ() + hRadius, (x, y, z, type, partner) -> {
+            if (!validHole(x, y, z)) return;
 
-                        BlockState blockState1 = mc.world.getBlockState(offsetPos.offset(dir));
-
-                        if (blockState1.getBlock() == Blocks.BEDROCK) bedrock++;
-                        else if (blockState1.getBlock() == Blocks.OBSIDIAN) obsidian++;
-                        else return;
-                    }
-
-                    air = direction;
-                }
-            }
-
-            if (obsidian + bedrock == 5 && air == null) {
-                holes.add(holePool.get().set(blockPos, obsidian == 5 ? Hole.Type.Obsidian : (bedrock == 5 ? Hole.Type.Bedrock : Hole.Type.Mixed), NULL));
-            }
-            else if (obsidian + bedrock == 8 && doubles.get() && air != null) {
-                holes.add(holePool.get().set(blockPos, obsidian == 8 ? Hole.Type.Obsidian : (bedrock == 8 ? Hole.Type.Bedrock : Hole.Type.Mixed), Dir.get(air)));
+            if (partner == null) holes.add(holePool.get().set(x, y, z, type, NULL));
+            else if (doubles.get() && validHole(x + partner.getOffsetX(), y, z + partner.getOffsetZ())) {
+                holes.add(holePool.get().set(x, y, z, type, Dir.get(partner)));
             }
         });
     }
 
-    private boolean validHole(BlockPos pos) {
-        if (ignoreOwn.get() && mc.player.getBlockPos().equals(pos)) return false;
+    private boolean validHole(int x, int y, int z) {
+        BlockPos playerPos = mc.player.getBlockPos();
+        if (ignoreOwn.get() && playerPos.getX() == x && playerPos.getY() == y && playerPos.getZ() == z) return false;
 
-        WorldChunk chunk = mc.world.getChunk(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getZ()));
-        Block block = chunk.getBlockState(pos).getBlock();
-        if (!webs.get() && block == Blocks.COBWEB) return false;
+        if (!webs.get() && mc.world.getBlockState(blockPos.set(x, y, z)).getBlock() == Blocks.COBWEB) return false;
 
-        if (((AbstractBlockAccessor) block).isCollidable()) return false;
-
-        for (int i = 0; i < holeHeight.get(); i++) {
-            if (((AbstractBlockAccessor) chunk.getBlockState(pos.up(i)).getBlock()).isCollidable()) return false;
-        }
-
-        return true;
+        return HoleIndex.getOpenHeight(x, y, z, holeHeight.get()) >= holeHeight.get();
     }
 
     @EventHandler
@@ -234,10 +211,10 @@ public class HoleESP extends Module {
     private static class Hole {
         public BlockPos.Mutable blockPos = new BlockPos.Mutable();
         public byte exclude;
-        public Type type;
+        public HoleIndex.Type type;
 
-        public Hole set(BlockPos blockPos, Type type, byte exclude) {
-            this.blockPos.set(blockPos);
+        public Hole set(int x, int y, int z, HoleIndex.Type type, byte exclude) {
+            this.blockPos.set(x, y, z);
             this.exclude = exclude;
             this.type = type;
 
@@ -305,11 +282,5 @@ public class HoleESP extends Module {
                 bottom.a = originalBottompA;
             }
         }
-
-        public enum Type {
-            Bedrock,
-            Obsidian,
-            Mixed
-        }
     }
 }
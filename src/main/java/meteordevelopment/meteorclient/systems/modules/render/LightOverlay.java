@@ -17,9 +17,10 @@ import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.misc.Pool;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
+import meteordevelopment.meteorclient.utils.world.BlockScanner;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
 import meteordevelopment.orbit.EventHandler;
+import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.ArrayList;
@@ -82,26 +83,52 @@ public class LightOverlay extends Module {
 
     private final BlockPos.Mutable bp = new BlockPos.Mutable();
 
+    private BlockScanner.Subscription subscription;
+
     private final Mesh mesh = new ShaderMesh(Shaders.POS_COLOR, DrawMode.Lines, Mesh.Attrib.Vec3, Mesh.Attrib.Color);
 
     public LightOverlay() {
         super(Categories.Render, "light-overlay", "Shows blocks where mobs can spawn.");
     }
 
+    @Override
+    public void onActivate() {
+        // Positions with a floor mobs can spawn on are tracked by the scanner, only their light level is checked every tick
+        subscription = BlockScanner.subscribe("light-overlay", BlockScanner.Predicate.mobSpawns(), new BlockScanner.Listener() {
+            @Override
+            public void onAdded(long pos, BlockState state, int value) {}
+
+            @Override
+            public void onRemoved(long pos) {}
+        });
+    }
+
+    @Override
+    public void onDeactivate() {
+        BlockScanner.unsubscribe(subscription);
+        subscription = null;
+
+        for (Cross cross : crosses) crossPool.free(cross);
+        crosses.clear();
+    }
+
     @EventHandler
     private void onTick(TickEvent.Pre event) {
         for (Cross cross : crosses) crossPool.free(cross);
         crosses.clear();
 
-        BlockIterator.register(horizontalRange.get(), verticalRange.get(), (blockPos, blockState) -> {
-            switch (BlockUtils.isValidMobSpawn(blockPos, newMobSpawnLightLevel.get())) {
+        int px = mc.player.getBlockX(), py = mc.player.getBlockY(), pz = mc.player.getBlockZ();
+        int h = horizontalRange.get(), v = verticalRange.get();
+
+        subscription.forEach(px - h, py - v, pz - h, px + h, py + v, pz + h, pos -> {
+            switch (BlockUtils.getMobSpawnLight(bp.set(pos), newMobSpawnLightLevel.get())) {
                 case Never:
                     break;
                 case Potential:
-                    crosses.add(crossPool.get().set(blockPos, true));
+                    crosses.add(crossPool.get().set(bp, true));
                     break;
                 case Always:
-                    crosses.add((crossPool.get().set(blockPos, false)));
+                    crosses.add((crossPool.get().set(bp, false)));
                     break;
             }
         });
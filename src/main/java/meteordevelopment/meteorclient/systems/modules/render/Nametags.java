@@ -17,6 +17,7 @@ import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.systems.modules.misc.NameProtect;
 import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.meteorclient.utils.entity.EntityIndex;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 import meteordevelopment.meteorclient.utils.render.NametagUtils;
@@ -306,18 +307,22 @@ public class Nametags extends Module {
         boolean notThirdPerson = mc.options.getPerspective().isFirstPerson();
         Vec3d cameraPos = mc.gameRenderer.getCamera().getPos();
 
-        for (Entity entity : mc.world.getEntities()) {
-            EntityType<?> type = entity.getType();
-            if (!entities.get().contains(type)) continue;
+        for (EntityType<?> type : entities.get()) {
+            EntityIndex.EntityList list = EntityIndex.get(type);
 
-            if (type == EntityType.PLAYER) {
-                if ((ignoreSelf.get() || (freecamNotActive && notThirdPerson)) && entity == mc.player) continue;
-                if (EntityUtils.getGameMode((PlayerEntity) entity) == null && ignoreBots.get()) continue;
-                if (Friends.get().isFriend((PlayerEntity) entity) && ignoreFriends.get()) continue;
-            }
+            for (int i = 0; i < list.size(); i++) {
+                Entity entity = list.get(i);
+                if (entity.isRemoved()) continue;
 
-            if (!culling.get() || PlayerUtils.isWithinCamera(entity, maxCullRange.get())) {
-                entityList.add(entity);
+                if (type == EntityType.PLAYER) {
+                    if ((ignoreSelf.get() || (freecamNotActive && notThirdPerson)) && entity == mc.player) continue;
+                    if (EntityUtils.getGameMode((PlayerEntity) entity) == null && ignoreBots.get()) continue;
+                    if (Friends.get().isFriend((PlayerEntity) entity) && ignoreFriends.get()) continue;
+                }
+
+                if (!culling.get() || PlayerUtils.isWithinCamera(entity, maxCullRange.get())) {
+                    entityList.add(entity);
+                }
             }
         }
 
@@ -14,6 +14,7 @@ import meteordevelopment.meteorclient.systems.friends.Friends;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.systems.modules.Modules;
+import meteordevelopment.meteorclient.utils.entity.EntityIndex;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
 import meteordevelopment.meteorclient.utils.entity.Target;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
@@ -251,23 +252,28 @@ public class Tracers extends Module {
         if (mc.options.hudHidden || style.get() == TracerStyle.Offscreen) return;
         count = 0;
 
-        for (Entity entity : mc.world.getEntities()) {
-            if (shouldBeIgnored(entity)) continue;
+        for (EntityType<?> type : entities.get()) {
+            EntityIndex.EntityList list = EntityIndex.get(type);
 
-            Color color = getEntityColor(entity);
+            for (int i = 0; i < list.size(); i++) {
+                Entity entity = list.get(i);
+                if (entity.isRemoved() || shouldBeIgnored(entity)) continue;
 
-            double x = entity.prevX + (entity.getX() - entity.prevX) * event.tickDelta;
-            double y = entity.prevY + (entity.getY() - entity.prevY) * event.tickDelta;
-            double z = entity.prevZ + (entity.getZ() - entity.prevZ) * event.tickDelta;
+                Color color = getEntityColor(entity);
 
-            double height = entity.getBoundingBox().maxY - entity.getBoundingBox().minY;
-            if (target.get() == Target.Head) y += height;
-            else if (target.get() == Target.Body) y += height / 2;
+                double x = entity.prevX + (entity.getX() - entity.prevX) * event.tickDelta;
+                double y = entity.prevY + (entity.getY() - entity.prevY) * event.tickDelta;
+                double z = entity.prevZ + (entity.getZ() - entity.prevZ) * event.tickDelta;
 
-            event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, x, y, z, color);
-            if (stem.get()) event.renderer.line(x, entity.getY(), z, x, entity.getY() + height, z, color);
+                double height = entity.getBoundingBox().maxY - entity.getBoundingBox().minY;
+                if (target.get() == Target.Head) y += height;
+                else if (target.get() == Target.Body) y += height / 2;
 
-            count++;
+                event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, x, y, z, color);
+                if (stem.get()) event.renderer.line(x, entity.getY(), z, x, entity.getY() + height, z, color);
+
+                count++;
+            }
         }
     }
 
@@ -278,45 +284,50 @@ public class Tracers extends Module {
 
         Renderer2D.COLOR.begin();
 
-        for (Entity entity : mc.world.getEntities()) {
-            if (shouldBeIgnored(entity)) continue;
+        for (EntityType<?> type : entities.get()) {
+            EntityIndex.EntityList list = EntityIndex.get(type);
 
-            Color color = getEntityColor(entity);
+            for (int i = 0; i < list.size(); i++) {
+                Entity entity = list.get(i);
+                if (entity.isRemoved() || shouldBeIgnored(entity)) continue;
 
-            if (blinkOffscreen.get())
-                color.a *= getAlpha();
+                Color color = getEntityColor(entity);
 
-            Vec2f screenCenter = new Vec2f(mc.getWindow().getFramebufferWidth() / 2.f, mc.getWindow().getFramebufferHeight() / 2.f);
+                if (blinkOffscreen.get())
+                    color.a *= getAlpha();
 
-            Vector3d projection = new Vector3d(entity.prevX, entity.prevY, entity.prevZ);
-            boolean projSucceeded = NametagUtils.to2D(projection, 1, false, false);
+                Vec2f screenCenter = new Vec2f(mc.getWindow().getFramebufferWidth() / 2.f, mc.getWindow().getFramebufferHeight() / 2.f);
 
-            if (projSucceeded && projection.x > 0.f && projection.x < mc.getWindow().getFramebufferWidth() && projection.y > 0.f && projection.y < mc.getWindow().getFramebufferHeight())
-                continue;
+                Vector3d projection = new Vector3d(entity.prevX, entity.prevY, entity.prevZ);
+                boolean projSucceeded = NametagUtils.to2D(projection, 1, false, false);
 
-            projection = new Vector3d(entity.prevX, entity.prevY, entity.prevZ);
-            NametagUtils.to2D(projection, 1, false, true);
+                if (projSucceeded && projection.x > 0.f && projection.x < mc.getWindow().getFramebufferWidth() && projection.y > 0.f && projection.y < mc.getWindow().getFramebufferHeight())
+                    continue;
 
-            Vector2f angle = vectorAngles(new Vector3d(screenCenter.x - projection.x, screenCenter.y - projection.y, 0));
-            angle.y += 180;
+                projection = new Vector3d(entity.prevX, entity.prevY, entity.prevZ);
+                NametagUtils.to2D(projection, 1, false, true);
 
-            float angleYawRad = (float) Math.toRadians(angle.y);
+                Vector2f angle = vectorAngles(new Vector3d(screenCenter.x - projection.x, screenCenter.y - projection.y, 0));
+                angle.y += 180;
 
-            Vector2f newPoint = new Vector2f(screenCenter.x + distanceOffscreen.get() * (float) Math.cos(angleYawRad),
-                screenCenter.y + distanceOffscreen.get() * (float) Math.sin(angleYawRad));
+                float angleYawRad = (float) Math.toRadians(angle.y);
 
-            Vector2f trianglePoints[] = {
-                new Vector2f(newPoint.x - sizeOffscreen.get(), newPoint.y - sizeOffscreen.get()),
-                new Vector2f(newPoint.x + sizeOffscreen.get() * 0.73205f, newPoint.y),
-                new Vector2f(newPoint.x - sizeOffscreen.get(), newPoint.y + sizeOffscreen.get())
-            };
+                Vector2f newPoint = new Vector2f(screenCenter.x + distanceOffscreen.get() * (float) Math.cos(angleYawRad),
+                    screenCenter.y + distanceOffscreen.get() * (float) Math.sin(angleYawRad));
 
-            rotateTriangle(trianglePoints, angle.y);
+                Vector2f trianglePoints[] = {
+                    new Vector2f(newPoint.x - sizeOffscreen.get(), newPoint.y - sizeOffscreen.get()),
+                    new Vector2f(newPoint.x + sizeOffscreen.get() * 0.73205f, newPoint.y),
+                    new Vector2f(newPoint.x - sizeOffscreen.get(), newPoint.y + sizeOffscreen.get())
+                };
 
-            Renderer2D.COLOR.triangle(trianglePoints[0].x, trianglePoints[0].y, trianglePoints[1].x, trianglePoints[1].y, trianglePoints[2].x,
-                trianglePoints[2].y, color);
+                rotateTriangle(trianglePoints, angle.y);
 
-            count++;
+                Renderer2D.COLOR.triangle(trianglePoints[0].x, trianglePoints[0].y, trianglePoints[1].x, trianglePoints[1].y, trianglePoints[2].x,
+                    trianglePoints[2].y, color);
+
+                count++;
+            }
         }
 
         Renderer2D.COLOR.render(null);
@@ -10,9 +10,7 @@ import meteordevelopment.meteorclient.renderer.ShapeMode;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.modules.Categories;
 import meteordevelopment.meteorclient.systems.modules.Module;
-import meteordevelopment.meteorclient.utils.Utils;
-import meteordevelopment.meteorclient.utils.entity.ProjectileEntitySimulator;
-import meteordevelopment.meteorclient.utils.misc.Pool;
+import meteordevelopment.meteorclient.utils.entity.TrajectoryCache;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.enchantment.EnchantmentHelper;
@@ -27,7 +25,6 @@ import net.minecraft.util.hit.EntityHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
-import org.joml.Vector3d;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -98,13 +95,6 @@ public class Trajectories extends Module {
         .build()
     );
 
-    private final ProjectileEntitySimulator simulator = new ProjectileEntitySimulator();
-
-    private final Pool<Vector3d> vec3s = new Pool<>(Vector3d::new);
-    private final List<Path> paths = new ArrayList<>();
-
-    private static final double MULTISHOT_OFFSET = Math.toRadians(10); // accurate-ish offset of crossbow multishot in radians (10° degrees)
-
     public Trajectories() {
         super(Categories.Render, "trajectories", "Predicts the trajectory of throwable items.");
     }
@@ -123,169 +113,83 @@ public class Trajectories extends Module {
         return items;
     }
 
-    private Path getEmptyPath() {
-        for (Path path : paths) {
-            if (path.points.isEmpty()) return path;
-        }
-
-        Path path = new Path();
-        paths.add(path);
-        return path;
-    }
-
-    private void calculatePath(PlayerEntity player, double tickDelta) {
-        // Clear paths
-        for (Path path : paths) path.clear();
-
-        // Get item
-        ItemStack itemStack = player.getMainHandStack();
-        if (itemStack == null) itemStack = player.getOffHandStack();
-        if (itemStack == null) return;
-        if (!items.get().contains(itemStack.getItem())) return;
-
-        // Calculate paths
-        if (!simulator.set(player, itemStack, 0, accurate.get(), tickDelta)) return;
-        getEmptyPath().calculate();
-
-        if (itemStack.getItem() instanceof CrossbowItem && EnchantmentHelper.getLevel(Enchantments.MULTISHOT, itemStack) > 0) {
-            if (!simulator.set(player, itemStack, MULTISHOT_OFFSET, accurate.get(), tickDelta)) return; // left multishot arrow
-            getEmptyPath().calculate();
-
-            if (!simulator.set(player, itemStack, -MULTISHOT_OFFSET, accurate.get(), tickDelta)) return; // right multishot arrow
-            getEmptyPath().calculate();
-        }
-    }
-
-    private void calculateFiredPath(Entity entity, double tickDelta) {
-        for (Path path : paths) path.clear();
-
-        // Calculate paths
-        if (!simulator.set(entity, accurate.get(), tickDelta)) return;
-        getEmptyPath().calculate();
-    }
-
     @EventHandler
     private void onRender(Render3DEvent event) {
         for (PlayerEntity player : mc.world.getPlayers()) {
             if (!otherPlayers.get() && player != mc.player) continue;
 
-            calculatePath(player, event.tickDelta);
-            for (Path path : paths) path.render(event);
+            // Get item
+            ItemStack itemStack = player.getMainHandStack();
+            if (itemStack == null) itemStack = player.getOffHandStack();
+            if (itemStack == null) continue;
+            if (!items.get().contains(itemStack.getItem())) continue;
+
+            // Crossbows with multishot fire two more arrows to the left and right
+            int shots = itemStack.getItem() instanceof CrossbowItem && EnchantmentHelper.getLevel(Enchantments.MULTISHOT, itemStack) > 0 ? 3 : 1;
+
+            for (int shot = 0; shot < shots; shot++) {
+                TrajectoryCache.Trajectory trajectory = player == mc.player
+                    ? TrajectoryCache.getLocal(itemStack, shot, accurate.get(), simulationSteps.get(), event.tickDelta)
+                    : TrajectoryCache.get(player, itemStack, shot, accurate.get(), simulationSteps.get());
+                if (trajectory == null) break;
+
+                render(event, trajectory);
+            }
         }
 
         if (firedProjectiles.get()) {
             for (Entity entity : mc.world.getEntities()) {
                 if (entity instanceof ProjectileEntity) {
-                    calculateFiredPath(entity, event.tickDelta);
-                    for (Path path : paths) path.render(event);
+                    TrajectoryCache.Trajectory trajectory = TrajectoryCache.get(entity, accurate.get(), simulationSteps.get());
+                    if (trajectory != null) render(event, trajectory);
                 }
             }
         }
     }
 
-    private class Path {
-        private final List<Vector3d> points = new ArrayList<>();
-
-        private boolean hitQuad, hitQuadHorizontal;
-        private double hitQuadX1, hitQuadY1, hitQuadZ1, hitQuadX2, hitQuadY2, hitQuadZ2;
-
-        private Entity entity;
-
-        public void clear() {
-            for (Vector3d point : points) vec3s.free(point);
-            points.clear();
-
-            hitQuad = false;
-            entity = null;
+    private void render(Render3DEvent event, TrajectoryCache.Trajectory trajectory) {
+        double offsetX = trajectory.getRenderOffsetX(event.tickDelta);
+        double offsetY = trajectory.getRenderOffsetY(event.tickDelta);
+        double offsetZ = trajectory.getRenderOffsetZ(event.tickDelta);
+
+        // Render path
+        for (int i = 1; i < trajectory.getPointCount(); i++) {
+            event.renderer.line(
+                trajectory.getX(i - 1) + offsetX, trajectory.getY(i - 1) + offsetY, trajectory.getZ(i - 1) + offsetZ,
+                trajectory.getX(i) + offsetX, trajectory.getY(i) + offsetY, trajectory.getZ(i) + offsetZ,
+                lineColor.get()
+            );
         }
 
-        public void calculate() {
-            addPoint();
-
-            for (int i = 0; i < (simulationSteps.get() > 0 ? simulationSteps.get() : Integer.MAX_VALUE); i++) {
-                HitResult result = simulator.tick();
+        HitResult hit = trajectory.getHit();
 
-                if (result != null) {
-                    processHitResult(result);
-                    break;
-                }
+        // Render hit quad
+        if (hit instanceof BlockHitResult r) {
+            double x = r.getPos().x + offsetX;
+            double y = r.getPos().y + offsetY;
+            double z = r.getPos().z + offsetZ;
 
-                addPoint();
+            if (r.getSide() == Direction.UP || r.getSide() == Direction.DOWN) {
+                event.renderer.sideHorizontal(x - 0.25, y, z - 0.25, x + 0.25, z + 0.25, sideColor.get(), lineColor.get(), shapeMode.get());
             }
-
-        }
-
-        private void addPoint() {
-            points.add(vec3s.get().set(simulator.pos));
-        }
-
-        private void processHitResult(HitResult result) {
-            if (result.getType() == HitResult.Type.BLOCK) {
-                BlockHitResult r = (BlockHitResult) result;
-
-                hitQuad = true;
-                hitQuadX1 = r.getPos().x;
-                hitQuadY1 = r.getPos().y;
-                hitQuadZ1 = r.getPos().z;
-                hitQuadX2 = r.getPos().x;
-                hitQuadY2 = r.getPos().y;
-                hitQuadZ2 = r.getPos().z;
-
-                if (r.getSide() == Direction.UP || r.getSide() == Direction.DOWN) {
-                    hitQuadHorizontal = true;
-                    hitQuadX1 -= 0.25;
-                    hitQuadZ1 -= 0.25;
-                    hitQuadX2 += 0.25;
-                    hitQuadZ2 += 0.25;
-                }
-                else if (r.getSide() == Direction.NORTH || r.getSide() == Direction.SOUTH) {
-                    hitQuadHorizontal = false;
-                    hitQuadX1 -= 0.25;
-                    hitQuadY1 -= 0.25;
-                    hitQuadX2 += 0.25;
-                    hitQuadY2 += 0.25;
-                }
-                else {
-                    hitQuadHorizontal = false;
-                    hitQuadZ1 -= 0.25;
-                    hitQuadY1 -= 0.25;
-                    hitQuadZ2 += 0.25;
-                    hitQuadY2 += 0.25;
-                }
-
-                points.add(Utils.set(vec3s.get(), result.getPos()));
+            else if (r.getSide() == Direction.NORTH || r.getSide() == Direction.SOUTH) {
+                event.renderer.sideVertical(x - 0.25, y - 0.25, z, x + 0.25, y + 0.25, z, sideColor.get(), lineColor.get(), shapeMode.get());
             }
-            else if (result.getType() == HitResult.Type.ENTITY) {
-                entity = ((EntityHitResult) result).getEntity();
-
-                points.add(Utils.set(vec3s.get(), result.getPos()).add(0, entity.getHeight() / 2, 0));
+            else {
+                event.renderer.sideVertical(x, y - 0.25, z - 0.25, x, y + 0.25, z + 0.25, sideColor.get(), lineColor.get(), shapeMode.get());
             }
         }
 
-        public void render(Render3DEvent event) {
-            // Render path
-            Vector3d lastPoint = null;
+        // Render entity
+        else if (hit instanceof EntityHitResult r) {
+            Entity entity = r.getEntity();
 
-            for (Vector3d point : points) {
-                if (lastPoint != null) event.renderer.line(lastPoint.x, lastPoint.y, lastPoint.z, point.x, point.y, point.z, lineColor.get());
-                lastPoint = point;
-            }
-
-            // Render hit quad
-            if (hitQuad) {
-                if (hitQuadHorizontal) event.renderer.sideHorizontal(hitQuadX1, hitQuadY1, hitQuadZ1, hitQuadX1 + 0.5, hitQuadZ1 + 0.5, sideColor.get(), lineColor.get(), shapeMode.get());
-                else event.renderer.sideVertical(hitQuadX1, hitQuadY1, hitQuadZ1, hitQuadX2, hitQuadY2, hitQuadZ2, sideColor.get(), lineColor.get(), shapeMode.get());
-            }
+            double x = (entity.getX() - entity.prevX) * event.tickDelta;
+            double y = (entity.getY() - entity.prevY) * event.tickDelta;
+            double z = (entity.getZ() - entity.prevZ) * event.tickDelta;
 
-            // Render entity
-            if (entity != null) {
-                double x = (entity.getX() - entity.prevX) * event.tickDelta;
-                double y = (entity.getY() - entity.prevY) * event.tickDelta;
-                double z = (entity.getZ() - entity.prevZ) * event.tickDelta;
-
-                Box box = entity.getBoundingBox();
-                event.renderer.box(x + box.minX, y + box.minY, z + box.minZ, x + box.maxX, y + box.maxY, z + box.maxZ, sideColor.get(), lineColor.get(), shapeMode.get(), 0);
-            }
+            Box box = entity.getBoundingBox();
+            event.renderer.box(x + box.minX, y + box.minY, z + box.minZ, x + box.maxX, y + box.maxY, z + box.maxZ, sideColor.get(), lineColor.get(), shapeMode.get(), 0);
         }
     }
 }
@@ -5,13 +5,9 @@
 
 package meteordevelopment.meteorclient.systems.modules.render;
 
-import it.unimi.dsi.fastutil.ints.IntIterator;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import meteordevelopment.meteorclient.MeteorClient;
+import it.unimi.dsi.fastutil.longs.*;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
 import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.renderer.Renderer3D;
 import meteordevelopment.meteorclient.renderer.ShapeMode;
@@ -24,20 +20,43 @@ import meteordevelopment.meteorclient.utils.render.color.SettingColor;
 import meteordevelopment.meteorclient.utils.world.Dir;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.BlockState;
-import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.Heightmap;
-import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkSection;
-import net.minecraft.world.chunk.ChunkStatus;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Blocks are stored as two bit masks per chunk section, one for blocks which can be walked through and one for blocks
+ * which can be walked on. Tunnels are then found with bitwise operations on rows of 16 blocks. Bit {@code y << 8 | z << 4 | x}
+ * of a mask is a block of the section, so each row along the x axis is 16 bits of a long.
+ * <p>
+ * Sections are scanned on {@link MeteorExecutor} when their chunk is loaded and again after a block in them changes.
+ * Tunnels are then classified again from a copy of the masks, for loaded chunks in the whole chunk and its neighbours,
+ * for block changes only in the sections next to the changed blocks. Unloaded blocks are treated as void air.
+ */
 public class TunnelESP extends Module {
-    private static final BlockPos.Mutable BP = new BlockPos.Mutable();
     private static final Direction[] DIRECTIONS = { Direction.EAST, Direction.NORTH, Direction.SOUTH, Direction.WEST };
 
+    private static final long[] EMPTY_THROUGH = new long[64], EMPTY_ON = new long[64];
+
+    // Which sections around a scanned section need to be classified again
+    private static final int BELOW = 1, ABOVE = 2, WEST = 4, EAST = 8, NORTH = 16, SOUTH = 32, SURFACE = 64, ALL = 127;
+
+    // Bits of the border columns in the longs of a tunnel mask, north and south only in every fourth long
+    private static final long WEST_COLUMN = 0x0001000100010001L, EAST_COLUMN = 0x8000800080008000L;
+    private static final long NORTH_ROW = 0x000000000000FFFFL, SOUTH_ROW = 0xFFFF000000000000L;
+
+    static {
+        Arrays.fill(EMPTY_THROUGH, -1);
+    }
+
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
     private final Setting<Double> height = sgGeneral.add(new DoubleSetting.Builder()
@@ -77,6 +96,14 @@ public class TunnelESP extends Module {
     );
 
     private final Long2ObjectMap<TChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final Long2IntMap dirtySections = new Long2IntOpenHashMap();
+    private final Long2IntMap pendingChanges = new Long2IntOpenHashMap();
+    private final MeteorExecutor.TaskQueue scanQueue = new MeteorExecutor.TaskQueue();
+
+    // Guarded by chunks, orders classifications so an older one never replaces the result of a newer one
+    private long classifications;
+
+    private int renderHash;
 
     public TunnelESP() {
         super(Categories.Render, "tunnel-esp", "Highlights tunnels.");
@@ -84,124 +111,250 @@ public class TunnelESP extends Module {
 
     @Override
     public void onDeactivate() {
-        chunks.clear();
-    }
+        scanQueue.cancelAll();
+
+        synchronized (chunks) {
+            for (TChunk chunk : chunks.values()) chunk.destroy();
 
-    private static int pack(int x, int y, int z) {
-        return ((x & 0xFF) << 24) | ((y & 0xFFFF) << 8) | (z & 0xFF);
+            chunks.clear();
+            dirtySections.clear();
+            pendingChanges.clear();
+        }
     }
 
-    private static byte getPackedX(int p) {
-        return (byte) (p >> 24 & 0xFF);
+    /**
+     * @return a hash of the settings the chunk meshes depend on, the meshes are built again when it changes
+     */
+    private int getRenderHash() {
+        int hash = Double.hashCode(height.get());
+        hash = hash * 31 + Boolean.hashCode(connected.get());
+        hash = hash * 31 + shapeMode.get().ordinal();
+        hash = hash * 31 + sideColor.get().getPacked();
+        hash = hash * 31 + lineColor.get().getPacked();
+
+        return hash;
     }
 
-    private static short getPackedY(int p) {
-        return (short) (p >> 8 & 0xFFFF);
+    // Scanning
+
+    private void scan(TChunk chunk, int from, int to, int[] versions, int changes) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        long[][] through = new long[to - from][];
+        long[][] on = new long[to - from][];
+
+        for (int i = from; i < to; i++) scanSection(chunk.chunk, i, through, on, i - from, pos);
+
+        List<Classification> classifications = new ArrayList<>(5);
+
+        synchronized (chunks) {
+            if (chunks.get(chunk.getKey()) != chunk) return;
+
+            // Sections changed since the scan started are scanned again by a later task
+            for (int i = from; i < to; i++) {
+                if (chunk.versions[i] != versions[i - from]) continue;
+
+                chunk.through[i] = through[i - from];
+                chunk.on[i] = on[i - from];
+            }
+
+            chunk.scanned = true;
+
+            // Tunnels depend on the blocks one layer below and two layers above, and on their horizontal neighbours
+            int classifyFrom = from - ((changes & BELOW) != 0 ? 1 : 0);
+            int classifyTo = to + ((changes & ABOVE) != 0 ? 1 : 0);
+
+            // Changes to the surface move the height under which tunnels are shown for the whole column
+            if ((changes & SURFACE) != 0) prepare(chunk, 0, chunk.tunnels.length, classifications);
+            else prepare(chunk, classifyFrom, classifyTo, classifications);
+
+            if ((changes & WEST) != 0) prepare(chunks.get(ChunkPos.toLong(chunk.x - 1, chunk.z)), classifyFrom, classifyTo, classifications);
+            if ((changes & EAST) != 0) prepare(chunks.get(ChunkPos.toLong(chunk.x + 1, chunk.z)), classifyFrom, classifyTo, classifications);
+            if ((changes & NORTH) != 0) prepare(chunks.get(ChunkPos.toLong(chunk.x, chunk.z - 1)), classifyFrom, classifyTo, classifications);
+            if ((changes & SOUTH) != 0) prepare(chunks.get(ChunkPos.toLong(chunk.x, chunk.z + 1)), classifyFrom, classifyTo, classifications);
+        }
+
+        for (Classification classification : classifications) classification.run();
+
+        synchronized (chunks) {
+            for (Classification classification : classifications) classification.apply();
+        }
     }
 
-    private static byte getPackedZ(int p) {
-        return (byte) (p & 0xFF);
+    private int takeChanges(long section) {
+        synchronized (chunks) {
+            return pendingChanges.remove(section);
+        }
     }
 
-    private void searchChunk(Chunk chunk, TChunk tChunk) {
-        // Prepare variables
-        Context ctx = new Context();
-        IntSet set = new IntOpenHashSet();
+    private void scanSection(Chunk chunk, int i, long[][] through, long[][] on, int j, BlockPos.Mutable pos) {
+        ChunkSection section = chunk.getSectionArray()[i];
+
+        if (section == null || section.isEmpty()) {
+            through[j] = EMPTY_THROUGH;
+            on[j] = EMPTY_ON;
+            return;
+        }
+
+        long[] sectionThrough = new long[64];
+        long[] sectionOn = new long[64];
 
         int startX = chunk.getPos().getStartX();
+        int startY = ChunkSectionPos.getBlockCoord(chunk.sectionIndexToCoord(i));
         int startZ = chunk.getPos().getStartZ();
 
-        int endX = chunk.getPos().getEndX();
-        int endZ = chunk.getPos().getEndZ();
+        for (int index = 0; index < 4096; index++) {
+            int x = index & 15;
+            int z = (index >> 4) & 15;
+            int y = index >> 8;
 
-        // Search for first set of tunnels
-        for (int x = startX; x <= endX; x++) {
-            for (int z = startZ; z <= endZ; z++) {
-                int height = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).get(x - startX, z - startZ);
+            BlockState state = section.getBlockState(x, y, z);
 
-                for (short y = (short) mc.world.getBottomY(); y < height; y++) {
-                    if (isTunnel(ctx, x, y, z)) set.add(pack(x - startX, y, z - startZ));
-                }
+            if (state.isAir()) sectionThrough[index >> 6] |= 1L << index;
+            else if (state.getFluidState().isEmpty()) {
+                if (state.getCollisionShape(mc.world, pos.set(startX + x, startY + y, startZ + z)).isEmpty()) sectionThrough[index >> 6] |= 1L << index;
+                else sectionOn[index >> 6] |= 1L << index;
             }
         }
 
-        // Remove tunnels which are 1 block long
-        IntSet positions = new IntOpenHashSet();
+        through[j] = sectionThrough;
+        on[j] = sectionOn;
+    }
 
-        for (IntIterator it = set.iterator(); it.hasNext();) {
-            int packed = it.nextInt();
+    // Classifying
 
-            byte x = getPackedX(packed);
-            short y = getPackedY(packed);
-            byte z = getPackedZ(packed);
+    /**
+     * Copies the masks needed to classify the sections of the chunk, must be called while holding the lock.
+     */
+    private void prepare(TChunk chunk, int from, int to, List<Classification> classifications) {
+        if (chunk == null || !chunk.scanned) return;
 
-            if (x == 0 || x == 15 || z == 0 || z == 15) positions.add(packed);
-            else {
-                boolean has = false;
+        from = Math.max(from, 0);
+        to = Math.min(to, chunk.tunnels.length);
+        if (from >= to) return;
 
-                for (Direction dir : DIRECTIONS) {
-                    if (set.contains(pack(x + dir.getOffsetX(), y, z + dir.getOffsetZ()))) {
-                        has = true;
-                        break;
-                    }
-                }
+        Masks[] around = {
+            Masks.of(chunk),
+            Masks.of(chunks.get(ChunkPos.toLong(chunk.x - 1, chunk.z))),
+            Masks.of(chunks.get(ChunkPos.toLong(chunk.x + 1, chunk.z))),
+            Masks.of(chunks.get(ChunkPos.toLong(chunk.x, chunk.z - 1))),
+            Masks.of(chunks.get(ChunkPos.toLong(chunk.x, chunk.z + 1)))
+        };
 
-                if (has) positions.add(packed);
-            }
+        classifications.add(new Classification(chunk, from, to, around, ++this.classifications));
+    }
+
+    private static long[][] classify(Chunk chunk, Masks[] around, int from, int to) {
+        Heightmap heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+        int[] heights = new int[256];
+        int maxHeight = Integer.MIN_VALUE;
+
+        for (int i = 0; i < 256; i++) {
+            heights[i] = heightmap.get(i & 15, i >> 4);
+            maxHeight = Math.max(maxHeight, heights[i]);
         }
 
-        tChunk.positions = positions;
-    }
+        long[][] result = new long[to - from][];
 
-    private boolean isTunnel(Context ctx, int x, int y, int z) {
-        if (!canWalkIn(ctx, x, y, z)) return false;
+        // Rows of 18 blocks from x = -1 to x = 16, indexed by z + 1
+        int[] walkable = new int[18];
+        int[] blocked = new int[18];
+        int[] layer = new int[16];
 
-        TunnelSide s1 = getTunnelSide(ctx, x + 1, y, z);
-        if (s1 == TunnelSide.PartiallyBlocked) return false;
+        for (int i = from; i < to; i++) {
+            long[] tunnels = null;
+            int startY = around[0].bottomY + (i << 4);
 
-        TunnelSide s2 = getTunnelSide(ctx, x - 1, y, z);
-        if (s2 == TunnelSide.PartiallyBlocked) return false;
+            for (int ly = 0; ly < 16; ly++) {
+                int y = startY + ly;
+                if (y >= maxHeight) break;
 
-        TunnelSide s3 = getTunnelSide(ctx, x, y, z + 1);
-        if (s3 == TunnelSide.PartiallyBlocked) return false;
+                for (int z = -1; z <= 16; z++) {
+                    int on = row(around, false, y - 1, z);
+                    int through = row(around, true, y, z);
+                    int throughAbove = row(around, true, y + 1, z);
+                    int throughAbove2 = row(around, true, y + 2, z);
 
-        TunnelSide s4 = getTunnelSide(ctx, x, y, z - 1);
-        if (s4 == TunnelSide.PartiallyBlocked) return false;
+                    walkable[z + 1] = on & through & throughAbove & ~throughAbove2;
+                    blocked[z + 1] = ~through & ~throughAbove & 0x3FFFF;
+                }
 
-        return (s1 == TunnelSide.Walkable && s2 == TunnelSide.Walkable && s3 == TunnelSide.FullyBlocked && s4 == TunnelSide.FullyBlocked) || (s1 == TunnelSide.FullyBlocked && s2 == TunnelSide.FullyBlocked && s3 == TunnelSide.Walkable && s4 == TunnelSide.Walkable);
-    }
+                boolean any = false;
 
-    private TunnelSide getTunnelSide(Context ctx, int x, int y, int z) {
-        if (canWalkIn(ctx, x, y, z)) return TunnelSide.Walkable;
-        if (!canWalkThrough(ctx, x, y, z) && !canWalkThrough(ctx, x, y + 1, z)) return TunnelSide.FullyBlocked;
-        return TunnelSide.PartiallyBlocked;
-    }
+                for (int z = 0; z < 16; z++) {
+                    int row = walkable[z + 1];
 
-    private boolean canWalkOn(Context ctx, int x, int y, int z) {
-        BlockState state = ctx.get(x, y, z);
+                    int center = row >>> 1;
+                    int east = row >>> 2;
+                    int west = row;
+                    int north = walkable[z] >>> 1;
+                    int south = walkable[z + 2] >>> 1;
 
-        if (state.isAir()) return false;
-        if (!state.getFluidState().isEmpty()) return false;
+                    int alongX = east & west & (blocked[z] >>> 1) & (blocked[z + 2] >>> 1);
+                    int alongZ = (blocked[z + 1] >>> 2) & blocked[z + 1] & north & south;
 
-        return !state.getCollisionShape(mc.world, BP.set(x, y, z)).isEmpty();
-    }
+                    int tunnel = center & (alongX | alongZ) & 0xFFFF;
 
-    private boolean canWalkThrough(Context ctx, int x, int y, int z) {
-        BlockState state = ctx.get(x, y, z);
+                    // Only below the surface
+                    for (int bits = tunnel; bits != 0; bits &= bits - 1) {
+                        int x = Integer.numberOfTrailingZeros(bits);
+                        if (y >= heights[(z << 4) | x]) tunnel &= ~(1 << x);
+                    }
+
+                    layer[z] = tunnel;
+                    if (tunnel != 0) any = true;
+                }
+
+                if (!any) continue;
+
+                // Remove tunnels which are 1 block long
+                for (int z = 0; z < 16; z++) {
+                    int row = layer[z];
+                    if (row == 0) continue;
+
+                    int keep = (z == 0 || z == 15) ? 0xFFFF : 0x8001;
+                    keep |= (row << 1) | (row >>> 1);
+                    if (z > 0) keep |= layer[z - 1];
+                    if (z < 15) keep |= layer[z + 1];
+
+                    row &= keep;
+                    if (row == 0) continue;
+
+                    if (tunnels == null) tunnels = new long[64];
+                    tunnels[(ly << 2) | (z >> 2)] |= (long) row << ((z & 3) << 4);
+                }
+            }
 
-        if (state.isAir()) return true;
-        if (!state.getFluidState().isEmpty()) return false;
+            result[i - from] = tunnels;
+        }
 
-        return state.getCollisionShape(mc.world, BP.set(x, y, z)).isEmpty();
+        return result;
     }
 
-    private boolean canWalkIn(Context ctx, int x, int y, int z) {
-        if (!canWalkOn(ctx, x, y - 1, z)) return false;
-        if (!canWalkThrough(ctx, x, y, z)) return false;
-        if (canWalkThrough(ctx, x, y + 2, z)) return false;
-        return canWalkThrough(ctx, x, y + 1, z);
+    /**
+     * @return 18 bits of the row from x = -1 to x = 16, only the bits inside the chunk are set for z = -1 and z = 16
+     */
+    private static int row(Masks[] around, boolean through, int y, int z) {
+        if (z == -1) return row(around[3], through, y, 15) << 1;
+        if (z == 16) return row(around[4], through, y, 0) << 1;
+
+        return (row(around[1], through, y, z) >>> 15) | (row(around[0], through, y, z) << 1) | ((row(around[2], through, y, z) & 1) << 17);
     }
 
+    private static int row(Masks chunk, boolean through, int y, int z) {
+        long[] masks = null;
+
+        if (chunk != null) {
+            int i = (y - chunk.bottomY) >> 4;
+            if (i >= 0 && i < chunk.through.length) masks = through ? chunk.through[i] : chunk.on[i];
+        }
+
+        if (masks == null) return through ? 0xFFFF : 0;
+        return (int) (masks[((y & 15) << 2) | (z >> 2)] >>> ((z & 3) << 4)) & 0xFFFF;
+    }
+
+    // Events
+
     @EventHandler
     private void onTick(TickEvent.Post event) {
         synchronized (chunks) {
@@ -210,87 +363,237 @@ public class TunnelESP extends Module {
 
             for (Chunk chunk : Utils.chunks(true)) {
                 long key = ChunkPos.toLong(chunk.getPos().x, chunk.getPos().z);
+                TChunk tChunk = chunks.get(key);
 
-                if (chunks.containsKey(key)) chunks.get(key).marked = true;
+                if (tChunk != null && tChunk.chunk == chunk) tChunk.marked = true;
                 else if (added < 48) {
-                    TChunk tChunk = new TChunk(chunk.getPos().x, chunk.getPos().z);
-                    chunks.put(tChunk.getKey(), tChunk);
+                    TChunk newChunk = new TChunk(chunk);
+                    if (tChunk != null) tChunk.destroy();
+                    chunks.put(key, newChunk);
 
-                    MeteorExecutor.execute(() -> searchChunk(chunk, tChunk));
+                    int[] versions = newChunk.versions.clone();
+                    scanQueue.submit(MeteorExecutor.Priority.Normal, () -> scan(newChunk, 0, versions.length, versions, ALL));
                     added++;
                 }
             }
 
-            chunks.values().removeIf(tChunk -> !tChunk.marked);
+            chunks.values().removeIf(tChunk -> {
+                if (tChunk.marked) return false;
+
+                tChunk.destroy();
+                return true;
+            });
+
+            for (Long2IntMap.Entry entry : dirtySections.long2IntEntrySet()) {
+                long section = entry.getLongKey();
+                int changes = entry.getIntValue();
+
+                TChunk tChunk = chunks.get(ChunkPos.toLong(ChunkSectionPos.unpackX(section), ChunkSectionPos.unpackZ(section)));
+                if (tChunk == null) continue;
+
+                int i = ChunkSectionPos.unpackY(section);
+                int[] versions = { tChunk.versions[i] };
+
+                // Rescans replace queued ones of the same section, so the changes are collected until one of them runs
+                pendingChanges.put(section, pendingChanges.get(section) | changes);
+
+                // Rescans of changed sections are small so they skip ahead of newly loaded chunks
+                scanQueue.submit(section, MeteorExecutor.Priority.High, () -> scan(tChunk, i, i + 1, versions, takeChanges(section)));
+            }
+
+            dirtySections.clear();
+        }
+    }
+
+    @EventHandler
+    private void onBlockUpdate(BlockUpdateEvent event) {
+        // The old state is null if the block did not change
+        if (event.oldState == null) return;
+
+        synchronized (chunks) {
+            int cx = event.pos.getX() >> 4;
+            int cz = event.pos.getZ() >> 4;
+
+            TChunk chunk = chunks.get(ChunkPos.toLong(cx, cz));
+            if (chunk == null) return;
+
+            int i = (event.pos.getY() - chunk.bottomY) >> 4;
+            if (i < 0 || i >= chunk.versions.length) return;
+
+            chunk.versions[i]++;
+
+            int x = event.pos.getX() & 15, y = event.pos.getY(), z = event.pos.getZ() & 15;
+            int changes = 0;
+
+            if ((y & 15) <= 1) changes |= BELOW;
+            if ((y & 15) == 15) changes |= ABOVE;
+            if (x == 0) changes |= WEST;
+            if (x == 15) changes |= EAST;
+            if (z == 0) changes |= NORTH;
+            if (z == 15) changes |= SOUTH;
+            if (y >= chunk.chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).get(x, z) - 1) changes |= SURFACE;
+
+            long section = ChunkSectionPos.asLong(cx, i, cz);
+            dirtySections.put(section, dirtySections.get(section) | changes);
         }
     }
 
     @EventHandler
     private void onRender3D(Render3DEvent event) {
         synchronized (chunks) {
-            for (TChunk chunk : chunks.values()) chunk.render(event.renderer);
+            int hash = getRenderHash();
+
+            if (hash != renderHash) {
+                for (TChunk chunk : chunks.values()) chunk.dirty = true;
+                renderHash = hash;
+            }
+
+            for (TChunk chunk : chunks.values()) chunk.render(event);
         }
     }
 
     private boolean chunkContains(TChunk chunk, int x, int y, int z) {
-        int key;
-
         if (x == -1) {
             chunk = chunks.get(ChunkPos.toLong(chunk.x - 1, chunk.z));
-            key = pack(15, y, z);
+            x = 15;
         }
         else if (x == 16) {
             chunk = chunks.get(ChunkPos.toLong(chunk.x + 1, chunk.z));
-            key = pack(0, y, z);
+            x = 0;
         }
         else if (z == -1) {
             chunk = chunks.get(ChunkPos.toLong(chunk.x, chunk.z - 1));
-            key = pack(x, y, 15);
+            z = 15;
         }
         else if (z == 16) {
             chunk = chunks.get(ChunkPos.toLong(chunk.x, chunk.z + 1));
-            key = pack(x, y, 0);
+            z = 0;
         }
-        else key = pack(x, y, z);
 
-        return chunk != null && chunk.positions != null && chunk.positions.contains(key);
+        if (chunk == null) return false;
+
+        int i = (y - chunk.bottomY) >> 4;
+        if (i < 0 || i >= chunk.tunnels.length || chunk.tunnels[i] == null) return false;
+
+        int index = ((y & 15) << 8) | (z << 4) | x;
+        return (chunk.tunnels[i][index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the borders of the section on which tunnels were added or removed, as {@link #WEST}, {@link #EAST},
+     * {@link #NORTH} and {@link #SOUTH} flags
+     */
+    private static int getChangedBorders(long[] before, long[] after) {
+        if (before == after) return 0;
+
+        int borders = 0;
+
+        for (int j = 0; j < 64; j++) {
+            long changed = (before == null ? 0 : before[j]) ^ (after == null ? 0 : after[j]);
+            if (changed == 0) continue;
+
+            if ((changed & WEST_COLUMN) != 0) borders |= WEST;
+            if ((changed & EAST_COLUMN) != 0) borders |= EAST;
+            if ((j & 3) == 0 && (changed & NORTH_ROW) != 0) borders |= NORTH;
+            if ((j & 3) == 3 && (changed & SOUTH_ROW) != 0) borders |= SOUTH;
+        }
+
+        return borders;
+    }
+
+    private void markDirty(int chunkX, int chunkZ) {
+        TChunk chunk = chunks.get(ChunkPos.toLong(chunkX, chunkZ));
+        if (chunk != null) chunk.dirty = true;
     }
 
     private class TChunk {
         private final int x, z;
-        public IntSet positions;
+        private final Chunk chunk;
+        private final int bottomY;
+
+        // Guarded by chunks, the masks of a section are replaced and never modified once set
+        public final long[][] through, on;
+        public final long[][] tunnels;
+        public final long[] classified;
+        public final int[] versions;
+        public boolean scanned;
+
+        // Tunnels are built into retained meshes which are only built again after the chunk was classified again
+        private Renderer3D renderer;
+        public boolean dirty;
 
         public boolean marked;
 
-        public TChunk(int x, int z) {
-            this.x = x;
-            this.z = z;
+        public TChunk(Chunk chunk) {
+            this.x = chunk.getPos().x;
+            this.z = chunk.getPos().z;
+            this.chunk = chunk;
+            this.bottomY = chunk.getBottomY();
+
+            int sections = chunk.countVerticalSections();
+            this.through = new long[sections][];
+            this.on = new long[sections][];
+            this.tunnels = new long[sections][];
+            this.classified = new long[sections];
+            this.versions = new int[sections];
+
             this.marked = true;
         }
 
-        public void render(Renderer3D renderer) {
-            if (positions == null) return;
+        public void render(Render3DEvent event) {
+            if (!scanned) return;
 
-            // Manual iteration to avoid boxing
-            for (IntIterator it = positions.iterator(); it.hasNext();) {
-                int pos = it.nextInt();
+            if (renderer == null) renderer = new Renderer3D();
 
-                int x = getPackedX(pos);
-                int y = getPackedY(pos);
-                int z = getPackedZ(pos);
+            if (dirty) {
+                renderer.begin(x * 16, bottomY, z * 16);
+                build(renderer);
+                renderer.end();
 
-                int excludeDir = 0;
+                dirty = false;
+            }
 
-                if (connected.get()) {
-                    for (Direction dir : DIRECTIONS) {
-                        if (chunkContains(this, x + dir.getOffsetX(), y, z + dir.getOffsetZ())) excludeDir |= Dir.get(dir);
-                    }
-                }
+            renderer.render(event.matrices);
+        }
+
+        public void destroy() {
+            if (renderer != null) {
+                renderer.destroy();
+                renderer = null;
+            }
 
-                x += this.x * 16;
-                z += this.z * 16;
+            dirty = true;
+        }
 
-                renderer.box(x, y, z, x + 1, y + height.get(), z + 1, sideColor.get(), lineColor.get(), shapeMode.get(), excludeDir);
+        private void build(Renderer3D renderer) {
+            for (int i = 0; i < tunnels.length; i++) {
+                long[] masks = tunnels[i];
+                if (masks == null) continue;
+
+                int startY = bottomY + (i << 4);
+
+                for (int j = 0; j < masks.length; j++) {
+                    for (long bits = masks[j]; bits != 0; bits &= bits - 1) {
+                        int index = (j << 6) | Long.numberOfTrailingZeros(bits);
+
+                        int x = index & 15;
+                        int y = startY + (index >> 8);
+                        int z = (index >> 4) & 15;
+
+                        int excludeDir = 0;
+
+                        if (connected.get()) {
+                            for (Direction dir : DIRECTIONS) {
+                                if (chunkContains(this, x + dir.getOffsetX(), y, z + dir.getOffsetZ())) excludeDir |= Dir.get(dir);
+                            }
+                        }
+
+                        int bx = x + this.x * 16;
+                        int bz = z + this.z * 16;
+
+                        renderer.box(bx, y, bz, bx + 1, y + height.get(), bz + 1, sideColor.get(), lineColor.get(), shapeMode.get(), excludeDir);
+                    }
+                }
             }
         }
 
@@ -299,39 +602,59 @@ public class TunnelESP extends Module {
         }
     }
 
-    private static class Context {
-        private final World world;
+    private record Masks(int bottomY, long[][] through, long[][] on) {
+        public static Masks of(TChunk chunk) {
+            return chunk == null ? null : new Masks(chunk.bottomY, chunk.through.clone(), chunk.on.clone());
+        }
+    }
 
-        private Chunk lastChunk;
+    /**
+     * Classifies sections of a chunk without holding the lock, from the masks copied when it was created.
+     */
+    private class Classification {
+        private final TChunk chunk;
+        private final int from, to;
+        private final Masks[] around;
+        private final long order;
+
+        private long[][] tunnels;
+
+        public Classification(TChunk chunk, int from, int to, Masks[] around, long order) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.around = around;
+            this.order = order;
+        }
 
-        public Context() {
-            this.world = MeteorClient.mc.world;
+        public void run() {
+            tunnels = classify(chunk.chunk, around, from, to);
         }
 
-        public BlockState get(int x, int y, int z) {
-            if (world.isOutOfHeightLimit(y)) return Blocks.VOID_AIR.getDefaultState();
+        /**
+         * Stores the result in the chunk, must be called while holding the lock.
+         */
+        public void apply() {
+            if (chunks.get(chunk.getKey()) != chunk) return;
 
-            int cx = x >> 4;
-            int cz = z >> 4;
+            int borders = 0;
 
-            Chunk chunk;
+            for (int i = from; i < to; i++) {
+                if (chunk.classified[i] > order) continue;
 
-            if (lastChunk != null && lastChunk.getPos().x == cx && lastChunk.getPos().z == cz) chunk = lastChunk;
-            else chunk = world.getChunk(cx, cz, ChunkStatus.FULL, false);
+                borders |= getChangedBorders(chunk.tunnels[i], tunnels[i - from]);
 
-            if (chunk == null) return Blocks.VOID_AIR.getDefaultState();
+                chunk.tunnels[i] = tunnels[i - from];
+                chunk.classified[i] = order;
+            }
 
-            ChunkSection section = chunk.getSectionArray()[chunk.getSectionIndex(y)];
-            if (section == null) return Blocks.VOID_AIR.getDefaultState();
+            chunk.dirty = true;
 
-            lastChunk = chunk;
-            return section.getBlockState(x & 15, y & 15, z & 15);
+            // Tunnels of neighbours are connected to the tunnels on the border, so their meshes need to be built again
+            if ((borders & WEST) != 0) markDirty(chunk.x - 1, chunk.z);
+            if ((borders & EAST) != 0) markDirty(chunk.x + 1, chunk.z);
+            if ((borders & NORTH) != 0) markDirty(chunk.x, chunk.z - 1);
+            if ((borders & SOUTH) != 0) markDirty(chunk.x, chunk.z + 1);
         }
     }
-
-    private enum TunnelSide {
-        Walkable,
-        PartiallyBlocked,
-        FullyBlocked
-    }
 }
@@ -28,6 +28,8 @@ public class WallHack extends Module {
         .range(0, 255)
         .sliderMax(255)
         .onChanged(onChanged -> {
+            Xray.invalidate();
+
             if (this.isActive()) {
                 mc.worldRenderer.reload();
             }
@@ -40,6 +42,7 @@ public class WallHack extends Module {
         .description("What blocks should be targeted for Wall Hack.")
         .defaultValue()
         .onChanged(onChanged -> {
+            Xray.invalidate();
             if (isActive()) mc.worldRenderer.reload();
         })
         .build()
@@ -58,11 +61,13 @@ public class WallHack extends Module {
 
     @Override
     public void onActivate() {
+        Xray.invalidate();
         mc.worldRenderer.reload();
     }
 
     @Override
     public void onDeactivate() {
+        Xray.invalidate();
         mc.worldRenderer.reload();
     }
 
@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.systems.modules.render;
 
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import meteordevelopment.meteorclient.MixinPlugin;
 import meteordevelopment.meteorclient.events.render.RenderBlockEntityEvent;
 import meteordevelopment.meteorclient.events.world.AmbientOcclusionEvent;
@@ -27,6 +28,7 @@ import net.minecraft.util.shape.VoxelShapes;
 import net.minecraft.world.BlockView;
 
 import java.util.List;
+import java.util.Set;
 
 public class Xray extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
@@ -38,6 +40,7 @@ public class Xray extends Module {
         .description("Which blocks to show x-rayed.")
         .defaultValue(ORES)
         .onChanged(v -> {
+            invalidate();
             if (isActive()) mc.worldRenderer.reload();
         })
         .build()
@@ -50,6 +53,7 @@ public class Xray extends Module {
         .range(0, 255)
         .sliderMax(255)
         .onChanged(onChanged -> {
+            invalidate();
             if (isActive()) mc.worldRenderer.reload();
         })
         .build()
@@ -60,21 +64,28 @@ public class Xray extends Module {
         .description("Show only exposed ores.")
         .defaultValue(false)
         .onChanged(onChanged -> {
+            invalidate();
             if (isActive()) mc.worldRenderer.reload();
         })
         .build());
 
+    private static final int EXPOSED = -2;
+
+    private static volatile AlphaTable alphaTable;
+
     public Xray() {
         super(Categories.Render, "xray", "Only renders specified blocks. Good for mining.");
     }
 
     @Override
     public void onActivate() {
+        invalidate();
         mc.worldRenderer.reload();
     }
 
     @Override
     public void onDeactivate() {
+        invalidate();
         mc.worldRenderer.reload();
     }
 
@@ -112,27 +123,89 @@ public class Xray extends Module {
     }
 
     public boolean isBlocked(Block block, BlockPos blockPos) {
-        return !(blocks.get().contains(block) && (!exposedOnly.get() || (blockPos == null || BlockUtils.isExposed(blockPos))));
+        return !(getAlphaTable().whitelist.contains(block) && (!exposedOnly.get() || (blockPos == null || BlockUtils.isExposed(blockPos))));
     }
 
+    /**
+     * @return the alpha to render the block with, 0 if it should not be rendered at all or -1 if it should not be
+     * modified. Safe to call from chunk builder threads.
+     */
     public static int getAlpha(BlockState state, BlockPos pos) {
-        WallHack wallHack = Modules.get().get(WallHack.class);
-        Xray xray = Modules.get().get(Xray.class);
+        AlphaTable table = getAlphaTable();
+        if (table.alphas == null) return -1;
+
+        int id = Block.getRawIdFromState(state);
+        if (id < 0 || id >= table.alphas.length) return -1;
+
+        int alpha = table.alphas[id];
+
+        if (alpha == EXPOSED) {
+            if (pos == null || BlockUtils.isExposed(pos)) return -1;
+            alpha = table.opacity;
+        }
 
-        if (wallHack.isActive() && wallHack.blocks.get().contains(state.getBlock())) {
-            if (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) return 0;
+        if (alpha == -1) return -1;
+        return (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) ? 0 : alpha;
+    }
 
-            int alpha;
+    /**
+     * Makes the next call to {@link #getAlpha(BlockState, BlockPos)} rebuild the alpha table, needs to be called
+     * whenever a setting used by it changes.
+     */
+    public static void invalidate() {
+        alphaTable = null;
+    }
 
-            if (xray.isActive()) alpha = xray.opacity.get();
-            else alpha = wallHack.opacity.get();
+    private static AlphaTable getAlphaTable() {
+        AlphaTable table = alphaTable;
+        if (table != null && table.isValid()) return table;
 
-            return alpha;
+        synchronized (Xray.class) {
+            if (alphaTable == null || !alphaTable.isValid()) alphaTable = AlphaTable.create();
+            return alphaTable;
         }
-        else if (xray.isActive() && !wallHack.isActive() && xray.isBlocked(state.getBlock(), pos)) {
-            return (MixinPlugin.isSodiumPresent || (MixinPlugin.isIrisPresent && IrisApi.getInstance().isShaderPackInUse())) ? 0 : xray.opacity.get();
+    }
+
+    /**
+     * Immutable alpha for every block state indexed by raw state id, published as a whole so chunk builder threads can
+     * read it without locking.
+     */
+    private record AlphaTable(Xray xray, boolean xrayActive, WallHack wallHack, boolean wallHackActive, int[] alphas, int opacity, Set<Block> whitelist) {
+        public boolean isValid() {
+            // Modules can be toggled without calling onActivate() or onDeactivate(), for example in the main menu
+            return xray != null && xray.isActive() == xrayActive && wallHack.isActive() == wallHackActive;
         }
 
-        return -1;
+        public static AlphaTable create() {
+            Modules modules = Modules.get();
+            if (modules == null) return new AlphaTable(null, false, null, false, null, 0, Set.of());
+
+            WallHack wallHack = modules.get(WallHack.class);
+            Xray xray = modules.get(Xray.class);
+
+            Set<Block> whitelist = new ReferenceOpenHashSet<>(xray.blocks.get());
+            if (!wallHack.isActive() && !xray.isActive()) return new AlphaTable(xray, false, wallHack, false, null, 0, whitelist);
+
+            Set<Block> wallHackBlocks = new ReferenceOpenHashSet<>(wallHack.blocks.get());
+            int opacity = xray.opacity.get();
+
+            int[] alphas = new int[Block.STATE_IDS.size()];
+
+            for (BlockState state : Block.STATE_IDS) {
+                int alpha = -1;
+
+                if (wallHack.isActive() && wallHackBlocks.contains(state.getBlock())) {
+                    alpha = xray.isActive() ? opacity : wallHack.opacity.get();
+                }
+                else if (xray.isActive() && !wallHack.isActive()) {
+                    if (!whitelist.contains(state.getBlock())) alpha = opacity;
+                    else if (xray.exposedOnly.get()) alpha = EXPOSED;
+                }
+
+                alphas[Block.getRawIdFromState(state)] = alpha;
+            }
+
+            return new AlphaTable(xray, xray.isActive(), wallHack, wallHack.isActive(), alphas, opacity, whitelist);
+        }
     }
 }
@@ -28,11 +28,18 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.chunk.Chunk;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BlockESP extends Module {
+    private static final int SPLIT_DELAY = 10;
+
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
     // General
@@ -41,6 +48,7 @@ public class BlockESP extends Module {
         .name("blocks")
         .description("Blocks to search for.")
         .onChanged(blocks1 -> {
+            states = ESPChunk.getStateIds(blocks1);
             if (isActive() && Utils.canUpdate()) onActivate();
         })
         .build()
@@ -77,8 +85,18 @@ public class BlockESP extends Module {
 
     private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
 
+    private final MeteorExecutor.TaskQueue searchQueue = new MeteorExecutor.TaskQueue();
+
     private final Long2ObjectMap<ESPChunk> chunks = new Long2ObjectOpenHashMap<>();
     private final List<ESPGroup> groups = new UnorderedArrayList<>();
+    private final List<ESPGroup> pendingSplits = new ArrayList<>();
+    private int splitTimer;
+
+    private final Queue<ESPChunk> searchedChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger searchId = new AtomicInteger();
+    private BitSet states;
+
+    private int renderHash;
 
     private Dimension lastDimension;
 
@@ -90,13 +108,18 @@ public class BlockESP extends Module {
 
     @Override
     public void onActivate() {
+        // Invalidates searches that are still queued or running from a previous activation
+        searchId.incrementAndGet();
+        searchQueue.cancelAll();
+        searchedChunks.clear();
+        if (states == null) states = ESPChunk.getStateIds(blocks.get());
+
         synchronized (chunks) {
-            chunks.clear();
-            groups.clear();
+            clearChunks();
         }
 
         for (Chunk chunk : Utils.chunks()) {
-            searchChunk(chunk, null);
+            searchChunk(chunk, null, MeteorExecutor.Priority.Low);
         }
 
         lastDimension = PlayerUtils.getDimension();
@@ -104,12 +127,23 @@ public class BlockESP extends Module {
 
     @Override
     public void onDeactivate() {
+        searchId.incrementAndGet();
+        searchQueue.cancelAll();
+        searchedChunks.clear();
+
         synchronized (chunks) {
-            chunks.clear();
-            groups.clear();
+            clearChunks();
         }
     }
 
+    private void clearChunks() {
+        for (ESPChunk chunk : chunks.values()) chunk.destroy();
+
+        chunks.clear();
+        groups.clear();
+        pendingSplits.clear();
+    }
+
     private void onTickRainbow() {
         if (!isActive()) return;
 
@@ -117,6 +151,28 @@ public class BlockESP extends Module {
         for (ESPBlockData blockData : blockConfigs.get().values()) blockData.tickRainbow();
     }
 
+    /**
+     * @return a hash of everything the chunk meshes depend on besides the blocks, the meshes are built again when it changes
+     */
+    private int getRenderHash() {
+        int hash = getRenderHash(defaultBlockConfig.get());
+
+        for (Map.Entry<Block, ESPBlockData> entry : blockConfigs.get().entrySet()) {
+            hash = hash * 31 + entry.getKey().hashCode();
+            hash = hash * 31 + getRenderHash(entry.getValue());
+        }
+
+        return hash;
+    }
+
+    private static int getRenderHash(ESPBlockData blockData) {
+        int hash = blockData.shapeMode.ordinal();
+        hash = hash * 31 + blockData.lineColor.getPacked();
+        hash = hash * 31 + blockData.sideColor.getPacked();
+
+        return hash;
+    }
+
     ESPBlockData getBlockData(Block block) {
         ESPBlockData blockData = blockConfigs.get().get(block);
         return blockData == null ? defaultBlockConfig.get() : blockData;
@@ -145,39 +201,77 @@ public class BlockESP extends Module {
         }
     }
 
-    public void removeGroup(ESPGroup group) {
+    /**
+     * Queues the group to be split into its connected parts, see {@link #splitGroups()}.
+     */
+    void requestSplit(ESPGroup group) {
         synchronized (chunks) {
-            groups.remove(group);
+            if (group.splitPending) return;
+
+            group.splitPending = true;
+            pendingSplits.add(group);
+        }
+    }
+
+    /**
+     * Splits the groups which lost blocks since the last call and drops empty groups. Done in batches so removing
+     * many blocks from a large group only walks it once.
+     */
+    private void splitGroups() {
+        synchronized (chunks) {
+            for (int i = 0; i < pendingSplits.size(); i++) {
+                ESPGroup group = pendingSplits.get(i);
+                if (group.splitPending) group.split();
+            }
+
+            pendingSplits.clear();
+            groups.removeIf(ESPGroup::isEmpty);
         }
     }
 
     @EventHandler
     private void onChunkData(ChunkDataEvent event) {
-        searchChunk(event.chunk, event);
+        searchChunk(event.chunk, event, MeteorExecutor.Priority.Normal);
     }
 
-    private void searchChunk(Chunk chunk, ChunkDataEvent event) {
-        MeteorExecutor.execute(() -> {
-            if (!isActive()) return;
-            ESPChunk schunk = ESPChunk.searchChunk(chunk, blocks.get());
+    private void searchChunk(Chunk chunk, ChunkDataEvent event, MeteorExecutor.Priority priority) {
+        int id = searchId.get();
+        BitSet states = this.states;
 
-            if (schunk.size() > 0) {
-                synchronized (chunks) {
-                    chunks.put(chunk.getPos().toLong(), schunk);
-                    schunk.update();
-
-                    // Update neighbour chunks
-                    updateChunk(chunk.getPos().x - 1, chunk.getPos().z);
-                    updateChunk(chunk.getPos().x + 1, chunk.getPos().z);
-                    updateChunk(chunk.getPos().x, chunk.getPos().z - 1);
-                    updateChunk(chunk.getPos().x, chunk.getPos().z + 1);
-                }
-            }
+        // A newer search of the same chunk replaces the queued one
+        searchQueue.submit(chunk.getPos().toLong(), priority, () -> {
+            try {
+                if (!isActive() || id != searchId.get()) return;
+                ESPChunk schunk = ESPChunk.searchChunk(chunk, states);
 
-            if (event != null) ChunkDataEvent.returnChunkDataEvent(event);
+                // Finished chunks are handed back to the render thread, see addSearchedChunks()
+                if (schunk.size() > 0 && id == searchId.get()) searchedChunks.add(schunk);
+            }
+            finally {
+                if (event != null) ChunkDataEvent.returnChunkDataEvent(event);
+            }
         });
     }
 
+    private void addSearchedChunks() {
+        ESPChunk schunk;
+
+        while ((schunk = searchedChunks.poll()) != null) {
+            if (schunk.shouldBeDeleted()) continue;
+
+            ESPChunk previous = chunks.put(ChunkPos.toLong(schunk.x, schunk.z), schunk);
+            if (previous != null) previous.destroy();
+
+            schunk.update();
+
+            // Update neighbour chunks
+            updateChunk(schunk.x - 1, schunk.z);
+            updateChunk(schunk.x + 1, schunk.z);
+            updateChunk(schunk.x, schunk.z - 1);
+            updateChunk(schunk.x, schunk.z + 1);
+        }
+    }
+
     @EventHandler
     private void onBlockUpdate(BlockUpdateEvent event) {
         // Minecraft probably reuses the event.pos BlockPos instance because it causes problems when trying to use it inside another thread
@@ -189,11 +283,14 @@ public class BlockESP extends Module {
         int chunkZ = bz >> 4;
         long key = ChunkPos.toLong(chunkX, chunkZ);
 
-        boolean added = blocks.get().contains(event.newState.getBlock()) && !blocks.get().contains(event.oldState.getBlock());
-        boolean removed = !added && !blocks.get().contains(event.newState.getBlock()) && blocks.get().contains(event.oldState.getBlock());
+        boolean isNew = states.get(Block.getRawIdFromState(event.newState));
+        boolean isOld = states.get(Block.getRawIdFromState(event.oldState));
+
+        boolean added = isNew && !isOld;
+        boolean removed = !isNew && isOld;
 
         if (added || removed) {
-            MeteorExecutor.execute(() -> {
+            searchQueue.submit(MeteorExecutor.Priority.High, () -> {
                 synchronized (chunks) {
                     ESPChunk chunk = chunks.get(key);
 
@@ -231,22 +328,41 @@ public class BlockESP extends Module {
         if (lastDimension != dimension) onActivate();
 
         lastDimension = dimension;
+
+        if (++splitTimer >= SPLIT_DELAY) {
+            splitGroups();
+            splitTimer = 0;
+        }
     }
 
     @EventHandler
     private void onRender(Render3DEvent event) {
         synchronized (chunks) {
+            addSearchedChunks();
+
+            int hash = getRenderHash();
+
+            if (hash != renderHash) {
+                for (ESPChunk chunk : chunks.values()) chunk.markDirty();
+                renderHash = hash;
+            }
+
             for (Iterator<ESPChunk> it = chunks.values().iterator(); it.hasNext();) {
                 ESPChunk chunk = it.next();
 
                 if (chunk.shouldBeDeleted()) {
-                    MeteorExecutor.execute(() -> {
-                        for (ESPBlock block : chunk.blocks.values()) {
-                            block.group.remove(block, false);
-                            block.loaded = false;
-                        }
-                    });
+                    if (chunk.blocks != null) {
+                        MeteorExecutor.executeCpu(MeteorExecutor.Priority.Low, () -> {
+                            synchronized (chunks) {
+                                for (ESPBlock block : chunk.blocks.values()) {
+                                    if (block.group != null) block.group.remove(block, false);
+                                    block.loaded = false;
+                                }
+                            }
+                        });
+                    }
 
+                    chunk.destroy();
                     it.remove();
                 }
                 else chunk.render(event);
@@ -256,7 +372,7 @@ public class BlockESP extends Module {
                 for (Iterator<ESPGroup> it = groups.iterator(); it.hasNext();) {
                     ESPGroup group = it.next();
 
-                    if (group.blocks.isEmpty()) it.remove();
+                    if (group.isEmpty()) it.remove();
                     else group.render(event);
                 }
             }
@@ -8,23 +8,31 @@ package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
+import meteordevelopment.meteorclient.renderer.Renderer3D;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.Heightmap;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Predicate;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 import static meteordevelopment.meteorclient.utils.Utils.getRenderDistance;
 
 public class ESPChunk {
 
-    private final int x, z;
+    final int x, z;
     public Long2ObjectMap<ESPBlock> blocks;
 
+    // Blocks are built into retained meshes which are only built again after a block of the chunk changed
+    private Renderer3D renderer;
+    private boolean dirty = true;
+
     public ESPChunk(int x, int z) {
         this.x = x;
         this.z = z;
@@ -39,6 +47,7 @@ public class ESPChunk {
 
         if (blocks == null) blocks = new Long2ObjectOpenHashMap<>(64);
         blocks.put(ESPBlock.getKey(blockPos), block);
+        dirty = true;
 
         if (update) block.update();
     }
@@ -51,19 +60,26 @@ public class ESPChunk {
         if (blocks != null) {
             ESPBlock block = blocks.remove(ESPBlock.getKey(blockPos));
             if (block != null) block.group.remove(block);
+
+            dirty = true;
         }
     }
 
     public void update() {
         if (blocks != null) {
             for (ESPBlock block : blocks.values()) block.update();
+            dirty = true;
         }
     }
 
     public void update(int x, int y, int z) {
         if (blocks != null) {
             ESPBlock block = blocks.get(ESPBlock.getKey(x, y, z));
-            if (block != null) block.update();
+
+            if (block != null) {
+                block.update();
+                dirty = true;
+            }
         }
     }
 
@@ -79,28 +95,93 @@ public class ESPChunk {
         return x > chunkX + viewDist || x < chunkX - viewDist || z > chunkZ + viewDist || z < chunkZ - viewDist;
     }
 
+    public void markDirty() {
+        dirty = true;
+    }
+
     public void render(Render3DEvent event) {
-        if (blocks != null) {
-            for (ESPBlock block : blocks.values()) block.render(event);
+        if (blocks == null) return;
+
+        if (renderer == null) renderer = new Renderer3D();
+
+        if (dirty) {
+            renderer.begin(x * 16, 0, z * 16);
+            for (ESPBlock block : blocks.values()) block.render(renderer);
+            renderer.end();
+
+            dirty = false;
         }
+
+        renderer.render(event.matrices);
+    }
+
+    /**
+     * Frees the meshes of the chunk, must be called on the render thread.
+     */
+    public void destroy() {
+        if (renderer != null) {
+            renderer.destroy();
+            renderer = null;
+        }
+
+        dirty = true;
     }
 
 
-    public static ESPChunk searchChunk(Chunk chunk, List<Block> blocks) {
+    /**
+     * Builds a set of raw block state ids for every state of the given blocks, used by {@link #searchChunk(Chunk, BitSet)}.
+     */
+    public static BitSet getStateIds(List<Block> blocks) {
+        BitSet states = new BitSet();
+
+        for (Block block : blocks) {
+            for (BlockState state : block.getStateManager().getStates()) {
+                states.set(Block.getRawIdFromState(state));
+            }
+        }
+
+        return states;
+    }
+
+    public static ESPChunk searchChunk(Chunk chunk, BitSet states) {
         ESPChunk schunk = new ESPChunk(chunk.getPos().x, chunk.getPos().z);
-        if (schunk.shouldBeDeleted()) return schunk;
+        if (schunk.shouldBeDeleted() || states.isEmpty()) return schunk;
+
+        Predicate<BlockState> isTarget = state -> states.get(Block.getRawIdFromState(state));
+
+        int startX = chunk.getPos().getStartX();
+        int startZ = chunk.getPos().getStartZ();
+
+        Heightmap heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+        int[] heights = null;
 
         BlockPos.Mutable blockPos = new BlockPos.Mutable();
+        ChunkSection[] sections = chunk.getSectionArray();
+
+        for (int i = 0; i < sections.length; i++) {
+            ChunkSection section = sections[i];
+
+            // Skip sections whose palette does not contain any of the searched states
+            if (section == null || section.isEmpty() || !section.getBlockStateContainer().hasAny(isTarget)) continue;
+
+            if (heights == null) {
+                heights = new int[16 * 16];
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) heights[x * 16 + z] = heightmap.get(x, z);
+                }
+            }
+
+            int sectionY = ChunkSectionPos.getBlockCoord(chunk.sectionIndexToCoord(i));
 
-        for (int x = chunk.getPos().getStartX(); x <= chunk.getPos().getEndX(); x++) {
-            for (int z = chunk.getPos().getStartZ(); z <= chunk.getPos().getEndZ(); z++) {
-                int height = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).get(x - chunk.getPos().getStartX(), z - chunk.getPos().getStartZ());
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    int height = heights[x * 16 + z];
 
-                for (int y = mc.world.getBottomY(); y < height; y++) {
-                    blockPos.set(x, y, z);
-                    BlockState bs = chunk.getBlockState(blockPos);
+                    for (int y = 0; y < 16 && sectionY + y < height; y++) {
+                        BlockState bs = section.getBlockState(x, y, z);
 
-                    if (blocks.contains(bs.getBlock())) schunk.add(blockPos, false);
+                        if (states.get(Block.getRawIdFromState(bs))) schunk.add(blockPos.set(startX + x, sectionY + y, startZ + z), false);
+                    }
                 }
             }
         }
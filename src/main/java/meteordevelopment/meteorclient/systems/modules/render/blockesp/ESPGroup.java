@@ -5,53 +5,98 @@
 
 package meteordevelopment.meteorclient.systems.modules.render.blockesp;
 
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.systems.modules.Modules;
-import meteordevelopment.meteorclient.utils.misc.UnorderedArrayList;
 import meteordevelopment.meteorclient.utils.render.RenderUtils;
 import net.minecraft.block.Block;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
-import java.util.Set;
 
+/**
+ * Set of connected blocks of the same type. Groups are merged as a union find, a group merged into another one keeps
+ * its blocks pointing to it and {@link ESPBlock#getGroup()} follows the parents to the root. Removing a block only
+ * updates the statistics, groups which might have been split are checked later in batches by {@link #split()}.
+ */
 public class ESPGroup {
     private static final BlockESP blockEsp = Modules.get().get(BlockESP.class);
 
+    private static int mark;
+
     private final Block block;
 
-    public final UnorderedArrayList<ESPBlock> blocks = new UnorderedArrayList<>();
+    private ESPGroup parent = this;
+
+    // Circular list through ESPBlock.next of the blocks of this group and the groups merged into it, removed blocks
+    // stay in the list until the group is split
+    private ESPBlock head;
+    private int listSize, count;
 
     private double sumX, sumY, sumZ;
 
+    boolean splitPending;
+
     public ESPGroup(Block block) {
         this.block = block;
+        resetStats();
     }
 
-    public void add(ESPBlock block, boolean removeFromOld, boolean splitGroup) {
-        blocks.add(block);
-        sumX += block.x;
-        sumY += block.y;
-        sumZ += block.z;
+    public ESPGroup find() {
+        ESPGroup group = this;
+
+        while (group.parent != group) {
+            // Path halving
+            group.parent = group.parent.parent;
+            group = group.parent;
+        }
 
-        if (block.group != null && removeFromOld) block.group.remove(block, splitGroup);
-        block.group = this;
+        return group;
     }
 
     public void add(ESPBlock block) {
-        add(block, true, true);
+        ESPGroup root = find();
+
+        if (root.head == null) {
+            root.head = block;
+            block.next = block;
+        }
+        else {
+            block.next = root.head.next;
+            root.head.next = block;
+        }
+
+        root.listSize++;
+        root.addStats(block);
+
+        block.removed = false;
+        block.group = root;
     }
 
     public void remove(ESPBlock block, boolean splitGroup) {
-        blocks.remove(block);
-        sumX -= block.x;
-        sumY -= block.y;
-        sumZ -= block.z;
-
-        if (blocks.isEmpty()) blockEsp.removeGroup(block.group);
-        else if (splitGroup) {
-            trySplit(block);
+        if (block.removed) return;
+
+        ESPGroup root = find();
+        block.removed = true;
+
+        root.count--;
+        root.sumX -= block.x;
+        root.sumY -= block.y;
+        root.sumZ -= block.z;
+
+        if (root.count == 0) {
+            // Empty groups are dropped from the group list by BlockESP
+            root.head = null;
+            root.listSize = 0;
+        }
+        else if (splitGroup && Integer.bitCount(block.neighbours & ESPBlock.SIDES_MASK) > 1) {
+            // Only blocks connecting at least two others can split a group
+            blockEsp.requestSplit(root);
+        }
+        else if (root.listSize - root.count > root.count) {
+            // Drop removed blocks from the list once they are the majority
+            blockEsp.requestSplit(root);
         }
     }
 
@@ -59,90 +104,127 @@ public class ESPGroup {
         remove(block, true);
     }
 
-    private void trySplit(ESPBlock block) {
-        Set<ESPBlock> neighbours = new ObjectOpenHashSet<>(6);
+    /**
+     * @return the root group containing both groups
+     */
+    public ESPGroup merge(ESPGroup group) {
+        ESPGroup a = find();
+        ESPGroup b = group.find();
+        if (a == b) return a;
+
+        // Union by size so the parent chains stay short
+        if (a.listSize < b.listSize) {
+            ESPGroup temp = a;
+            a = b;
+            b = temp;
+        }
 
-        for (int side : ESPBlock.SIDES) {
-            if ((block.neighbours & side) == side) {
-                ESPBlock neighbour = block.getSideBlock(side);
-                if (neighbour != null) neighbours.add(neighbour);
+        b.parent = a;
+
+        if (b.head != null) {
+            if (a.head == null) a.head = b.head;
+            else {
+                ESPBlock next = a.head.next;
+                a.head.next = b.head.next;
+                b.head.next = next;
             }
         }
-        if (neighbours.size() <= 1) return;
 
-        Set<ESPBlock> remainingBlocks = new ObjectOpenHashSet<>(blocks);
-        Queue<ESPBlock> blocksToCheck = new ArrayDeque<>();
+        a.listSize += b.listSize;
+        a.count += b.count;
+        a.sumX += b.sumX;
+        a.sumY += b.sumY;
+        a.sumZ += b.sumZ;
 
-        blocksToCheck.offer(blocks.get(0));
-        remainingBlocks.remove(blocks.get(0));
-        neighbours.remove(blocks.get(0));
+        b.head = null;
+        b.listSize = 0;
+        b.count = 0;
 
-        loop: {
-            while (!blocksToCheck.isEmpty()) {
-                ESPBlock b = blocksToCheck.poll();
+        if (b.splitPending) blockEsp.requestSplit(a);
 
-                for (int side : ESPBlock.SIDES) {
-                    if ((b.neighbours & side) != side) continue;
-                    ESPBlock neighbour = b.getSideBlock(side);
+        return a;
+    }
 
-                    if (neighbour != null && remainingBlocks.contains(neighbour)) {
-                        blocksToCheck.offer(neighbour);
-                        remainingBlocks.remove(neighbour);
+    /**
+     * Splits the group into its connected parts and drops removed blocks from the list.
+     */
+    void split() {
+        splitPending = false;
+        if (parent != this || head == null) return;
 
-                        neighbours.remove(neighbour);
-                        if (neighbours.isEmpty()) break loop;
-                    }
-                }
-            }
-        }
+        List<ESPBlock> blocks = new ArrayList<>(count);
+        ESPBlock b = head;
 
-        if (neighbours.size() > 0) {
-            ESPGroup group = blockEsp.newGroup(this.block);
-            group.blocks.ensureCapacity(remainingBlocks.size());
+        do {
+            if (!b.removed) blocks.add(b);
+            b = b.next;
+        } while (b != head);
 
-            blocks.removeIf(remainingBlocks::contains);
+        int member = ++mark;
+        int visited = ++mark;
+        for (ESPBlock espBlock : blocks) espBlock.mark = member;
 
-            for (ESPBlock b : remainingBlocks) {
-                group.add(b, false, false);
+        head = null;
+        listSize = 0;
+        resetStats();
 
-                sumX -= b.x;
-                sumY -= b.y;
-                sumZ -= b.z;
-            }
+        Queue<ESPBlock> queue = new ArrayDeque<>();
+        ESPGroup group = this;
 
-            if (neighbours.size() > 1) {
-                block.neighbours = 0;
+        for (ESPBlock start : blocks) {
+            if (start.mark != member) continue;
 
-                for (ESPBlock b : neighbours) {
-                    int x = b.x - block.x;
-                    if (x == 1) block.neighbours |= ESPBlock.RI;
-                    else if (x == -1) block.neighbours |= ESPBlock.LE;
+            if (group == null) group = blockEsp.newGroup(block);
 
-                    int y = b.y - block.y;
-                    if (y == 1) block.neighbours |= ESPBlock.TO;
-                    else if (y == -1) block.neighbours |= ESPBlock.BO;
+            start.mark = visited;
+            queue.offer(start);
 
-                    int z = b.z - block.z;
-                    if (z == 1) block.neighbours |= ESPBlock.FO;
-                    else if (z == -1) block.neighbours |= ESPBlock.BA;
-                }
+            while (!queue.isEmpty()) {
+                ESPBlock current = queue.poll();
+                group.add(current);
 
-                group.trySplit(block);
+                for (int side : ESPBlock.SIDES) {
+                    if ((current.neighbours & side) != side) continue;
+
+                    ESPBlock neighbour = current.getSideBlock(side);
+                    if (neighbour == null || neighbour.mark != member) continue;
+
+                    neighbour.mark = visited;
+                    queue.offer(neighbour);
+                }
             }
+
+            group = null;
         }
     }
 
-    public void merge(ESPGroup group) {
-        blocks.ensureCapacity(blocks.size() + group.blocks.size());
-        for (ESPBlock block : group.blocks) add(block, false, false);
-        blockEsp.removeGroup(group);
+    private void addStats(ESPBlock block) {
+        count++;
+        sumX += block.x;
+        sumY += block.y;
+        sumZ += block.z;
+    }
+
+    private void resetStats() {
+        count = 0;
+        sumX = sumY = sumZ = 0;
+    }
+
+    // Statistics, only valid for root groups
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
     }
 
     public void render(Render3DEvent event) {
         ESPBlockData blockData = blockEsp.getBlockData(block);
 
         if (blockData.tracer) {
-            event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, sumX / blocks.size() + 0.5, sumY / blocks.size() + 0.5, sumZ / blocks.size() + 0.5, blockData.tracerColor);
+            event.renderer.line(RenderUtils.center.x, RenderUtils.center.y, RenderUtils.center.z, sumX / count + 0.5, sumY / count + 0.5, sumZ / count + 0.5, blockData.tracerColor);
         }
     }
 }
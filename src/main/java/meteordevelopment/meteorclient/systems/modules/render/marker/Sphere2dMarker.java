@@ -208,7 +208,7 @@ public class Sphere2dMarker extends BaseMarker {
         };
 
         if (radius.get() <= 50) action.run();
-        else MeteorExecutor.execute(action);
+        else MeteorExecutor.executeCpu(action);
     }
 
     private void add(int x, int y, int z) {
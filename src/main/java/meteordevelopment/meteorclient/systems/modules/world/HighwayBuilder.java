@@ -19,6 +19,7 @@ import meteordevelopment.meteorclient.utils.misc.HorizontalDirection;
 import meteordevelopment.meteorclient.utils.misc.MBlockPos;
 import meteordevelopment.meteorclient.utils.player.CustomPlayerInput;
 import meteordevelopment.meteorclient.utils.player.InvUtils;
+import meteordevelopment.meteorclient.utils.player.InventoryIndex;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 import meteordevelopment.meteorclient.utils.player.Rotations;
 import meteordevelopment.meteorclient.utils.render.color.Color;
@@ -623,10 +624,7 @@ public class HighwayBuilder extends Module {
                     return;
                 }
 
-                int emptySlots = 0;
-                for (int i = 0; i < b.mc.player.getInventory().main.size(); i++) {
-                    if (b.mc.player.getInventory().getStack(i).isEmpty()) emptySlots++;
-                }
+                int emptySlots = InventoryIndex.countSlots(Items.AIR, 0, b.mc.player.getInventory().main.size() - 1);
 
                 if (emptySlots == 0) {
                     b.error("No empty slots.");
@@ -820,11 +818,7 @@ public class HighwayBuilder extends Module {
         }
 
         private boolean hasItem(HighwayBuilder b, Item item) {
-            for (int i = 0; i < b.mc.player.getInventory().main.size(); i++) {
-                if (b.mc.player.getInventory().getStack(i).getItem() == item) return true;
-            }
-
-            return false;
+            return InventoryIndex.countSlots(item, 0, b.mc.player.getInventory().main.size() - 1) > 0;
         }
 
         protected int findAndMoveToHotbar(HighwayBuilder b, Predicate<ItemStack> predicate, boolean required) {
@@ -12,7 +12,7 @@ import meteordevelopment.meteorclient.systems.modules.Module;
 import meteordevelopment.meteorclient.utils.misc.Pool;
 import meteordevelopment.meteorclient.utils.player.FindItemResult;
 import meteordevelopment.meteorclient.utils.player.InvUtils;
-import meteordevelopment.meteorclient.utils.world.BlockIterator;
+import meteordevelopment.meteorclient.utils.world.BlockScanner;
 import meteordevelopment.meteorclient.utils.world.BlockUtils;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.*;
@@ -72,12 +72,32 @@ public class SpawnProofer extends Module {
 
     private final Pool<BlockPos.Mutable> spawnPool = new Pool<>(BlockPos.Mutable::new);
     private final List<BlockPos.Mutable> spawns = new ArrayList<>();
+    private final BlockPos.Mutable bp = new BlockPos.Mutable();
     private int ticksWaited;
 
+    private BlockScanner.Subscription subscription;
+
     public SpawnProofer() {
         super(Categories.World, "spawn-proofer", "Automatically spawnproofs unlit areas.");
     }
 
+    @Override
+    public void onActivate() {
+        subscription = BlockScanner.subscribe("spawn-proofer", BlockScanner.Predicate.mobSpawns(), new BlockScanner.Listener() {
+            @Override
+            public void onAdded(long pos, BlockState state, int value) {}
+
+            @Override
+            public void onRemoved(long pos) {}
+        });
+    }
+
+    @Override
+    public void onDeactivate() {
+        BlockScanner.unsubscribe(subscription);
+        subscription = null;
+    }
+
     @EventHandler
     private void onTickPre(TickEvent.Pre event) {
         // Delay
@@ -96,13 +116,18 @@ public class SpawnProofer extends Module {
         // Find spawn locations
         for (BlockPos.Mutable blockPos : spawns) spawnPool.free(blockPos);
         spawns.clear();
-        BlockIterator.register(range.get(), range.get(), (blockPos, blockState) -> {
-            BlockUtils.MobSpawn spawn = BlockUtils.isValidMobSpawn(blockPos, newMobSpawnLightLevel.get());
+
+        // Positions mobs can spawn on are tracked by the scanner, only their light level is checked here
+        int px = mc.player.getBlockX(), py = mc.player.getBlockY(), pz = mc.player.getBlockZ();
+        int r = range.get();
+
+        subscription.forEach(px - r, py - r, pz - r, px + r, py + r, pz + r, pos -> {
+            BlockUtils.MobSpawn spawn = BlockUtils.getMobSpawnLight(bp.set(pos), newMobSpawnLightLevel.get());
 
             if ((spawn == BlockUtils.MobSpawn.Always && (mode.get() == Mode.Always || mode.get() == Mode.Both)) ||
                     spawn == BlockUtils.MobSpawn.Potential && (mode.get() == Mode.Potential || mode.get() == Mode.Both)) {
 
-                spawns.add(spawnPool.get().set(blockPos));
+                spawns.add(spawnPool.get().set(bp));
             }
         });
     }
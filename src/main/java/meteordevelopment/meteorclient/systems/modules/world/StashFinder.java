@@ -10,11 +10,16 @@ import baritone.api.pathing.goals.GoalXZ;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
 import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.WWidget;
+import meteordevelopment.meteorclient.gui.widgets.containers.WHorizontalList;
 import meteordevelopment.meteorclient.gui.widgets.containers.WTable;
 import meteordevelopment.meteorclient.gui.widgets.containers.WVerticalList;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
@@ -30,14 +35,28 @@ import net.minecraft.item.Items;
 import net.minecraft.util.math.ChunkPos;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class StashFinder extends Module {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    /** Compacts the journal after this many appended entries. */
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.setName("Meteor-StashFinder");
+        return thread;
+    });
+
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
 
     private final Setting<List<BlockEntityType<?>>> storageBlocks = sgGeneral.add(new StorageBlockListSetting.Builder()
@@ -80,7 +99,9 @@ public class StashFinder extends Module {
         .build()
     );
 
-    public List<Chunk> chunks = new ArrayList<>();
+    public final Long2ObjectMap<Chunk> chunks = new Long2ObjectLinkedOpenHashMap<>();
+    private int journalEntries;
+    private File journalFile;
 
     public StashFinder() {
         super(Categories.World, "stash-finder", "Searches loaded chunks for storage blocks. Saves to <your minecraft folder>/meteor-client");
@@ -88,7 +109,27 @@ public class StashFinder extends Module {
 
     @Override
     public void onActivate() {
-        load();
+        chunks.clear();
+        journalEntries = 0;
+        journalFile = getJournalFile();
+
+        load(journalFile);
+    }
+
+    @Override
+    public void onDeactivate() {
+        compact();
+    }
+
+    @EventHandler
+    private void onGameLeft(GameLeftEvent event) {
+        compact();
+        journalFile = null;
+    }
+
+    @EventHandler
+    private void onGameJoined(GameJoinedEvent event) {
+        onActivate();
     }
 
     @EventHandler
@@ -113,14 +154,10 @@ public class StashFinder extends Module {
         }
 
         if (chunk.getTotal() >= minimumStorageCount.get()) {
-            Chunk prevChunk = null;
-            int i = chunks.indexOf(chunk);
-
-            if (i < 0) chunks.add(chunk);
-            else prevChunk = chunks.set(i, chunk);
+            Chunk prevChunk = chunks.put(chunk.chunkPos.toLong(), chunk);
 
-            saveJson();
-            saveCsv();
+            String entry = chunk.toJournalEntry();
+            if (prevChunk == null || !entry.equals(prevChunk.toJournalEntry())) append(entry);
 
             if (sendNotifications.get() && (!chunk.equals(prevChunk) || !chunk.countsEqual(prevChunk))) {
                 switch (notificationMode.get()) {
@@ -139,13 +176,27 @@ public class StashFinder extends Module {
 
     @Override
     public WWidget getWidget(GuiTheme theme) {
-        // Sort
-        chunks.sort(Comparator.comparingInt(value -> -value.getTotal()));
-
         WVerticalList list = theme.verticalList();
 
+        WHorizontalList buttons = list.add(theme.horizontalList()).widget();
+
         // Clear
-        WButton clear = list.add(theme.button("Clear")).widget();
+        WButton clear = buttons.add(theme.button("Clear")).widget();
+
+        // Export
+        WButton exportJson = buttons.add(theme.button("Export JSON")).widget();
+        exportJson.action = () -> {
+            List<Chunk> snapshot = new ArrayList<>(chunks.values());
+            File file = getJsonFile();
+            writer.execute(() -> saveJson(file, snapshot));
+        };
+
+        WButton exportCsv = buttons.add(theme.button("Export CSV")).widget();
+        exportCsv.action = () -> {
+            List<Chunk> snapshot = new ArrayList<>(chunks.values());
+            File file = getCsvFile();
+            writer.execute(() -> saveCsv(file, snapshot));
+        };
 
         WTable table = new WTable();
         if (chunks.size() > 0) list.add(table);
@@ -153,6 +204,7 @@ public class StashFinder extends Module {
         clear.action = () -> {
             chunks.clear();
             table.clear();
+            compact();
         };
 
         // Chunks
@@ -162,7 +214,10 @@ public class StashFinder extends Module {
     }
 
     private void fillTable(GuiTheme theme, WTable table) {
-        for (Chunk chunk : chunks) {
+        List<Chunk> sorted = new ArrayList<>(chunks.values());
+        sorted.sort(Comparator.comparingInt(value -> -value.getTotal()));
+
+        for (Chunk chunk : sorted) {
             table.add(theme.label("Pos: " + chunk.x + ", " + chunk.z));
             table.add(theme.label("Total: " + chunk.getTotal()));
 
@@ -174,12 +229,11 @@ public class StashFinder extends Module {
 
             WMinus delete = table.add(theme.minus()).widget();
             delete.action = () -> {
-                if (chunks.remove(chunk)) {
+                if (chunks.remove(chunk.chunkPos.toLong()) != null) {
                     table.clear();
                     fillTable(theme, table);
 
-                    saveJson();
-                    saveCsv();
+                    append(chunk.toRemovedJournalEntry());
                 }
             };
 
@@ -187,30 +241,91 @@ public class StashFinder extends Module {
         }
     }
 
-    private void load() {
-        boolean loaded = false;
+    // Storage
+
+    /**
+     * Reads the journal, or the json and csv files written by older versions, on the writer thread and merges the result
+     * on the main thread. Chunks found while loading take priority over the loaded ones.
+     */
+    private void load(File journal) {
+        File jsonFile = getJsonFile();
+        File csvFile = getCsvFile();
+
+        writer.execute(() -> {
+            List<Chunk> loaded = journal.exists() ? readJournal(journal) : readLegacy(jsonFile, csvFile);
+
+            mc.execute(() -> {
+                if (!isActive() || journal != journalFile) return;
+
+                Long2ObjectMap<Chunk> found = new Long2ObjectLinkedOpenHashMap<>(chunks);
+                chunks.clear();
+
+                for (Chunk chunk : loaded) chunks.put(chunk.chunkPos.toLong(), chunk);
+                chunks.putAll(found);
+
+                if (!journal.exists() || !found.isEmpty()) compact();
+            });
+        });
+    }
+
+    private static List<Chunk> readJournal(File file) {
+        Long2ObjectMap<Chunk> chunks = new Long2ObjectLinkedOpenHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(" ");
+
+                try {
+                    if (values[0].equals("remove")) {
+                        chunks.remove(ChunkPos.toLong(Integer.parseInt(values[1]), Integer.parseInt(values[2])));
+                        continue;
+                    }
+
+                    Chunk chunk = new Chunk(new ChunkPos(Integer.parseInt(values[0]), Integer.parseInt(values[1])));
+
+                    chunk.chests = Integer.parseInt(values[2]);
+                    chunk.barrels = Integer.parseInt(values[3]);
+                    chunk.shulkers = Integer.parseInt(values[4]);
+                    chunk.enderChests = Integer.parseInt(values[5]);
+                    chunk.furnaces = Integer.parseInt(values[6]);
+                    chunk.dispensersDroppers = Integer.parseInt(values[7]);
+                    chunk.hoppers = Integer.parseInt(values[8]);
+
+                    chunks.put(chunk.chunkPos.toLong(), chunk);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ignored) {
+                    // Skip entries that were only partially written
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return new ArrayList<>(chunks.values());
+    }
+
+    private static List<Chunk> readLegacy(File jsonFile, File csvFile) {
+        List<Chunk> chunks = null;
 
         // Try to load json
-        File file = getJsonFile();
-        if (file.exists()) {
+        if (jsonFile.exists()) {
             try {
-                FileReader reader = new FileReader(file);
+                FileReader reader = new FileReader(jsonFile);
                 chunks = GSON.fromJson(reader, new TypeToken<List<Chunk>>() {}.getType());
                 reader.close();
 
                 for (Chunk chunk : chunks) chunk.calculatePos();
-
-                loaded = true;
             } catch (Exception ignored) {
-                if (chunks == null) chunks = new ArrayList<>();
+                chunks = null;
             }
         }
 
         // Try to load csv
-        file = getCsvFile();
-        if (!loaded && file.exists()) {
+        if (chunks == null && csvFile.exists()) {
+            chunks = new ArrayList<>();
+
             try {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
+                BufferedReader reader = new BufferedReader(new FileReader(csvFile));
                 reader.readLine();
 
                 String line;
@@ -229,15 +344,59 @@ public class StashFinder extends Module {
                 }
 
                 reader.close();
-            } catch (Exception ignored) {
-                if (chunks == null) chunks = new ArrayList<>();
-            }
+            } catch (Exception ignored) {}
         }
+
+        return chunks == null ? new ArrayList<>() : chunks;
     }
 
-    private void saveCsv() {
+    private void append(String entry) {
+        if (journalFile == null) return;
+        File file = journalFile;
+
+        writer.execute(() -> {
+            try {
+                file.getParentFile().mkdirs();
+
+                try (Writer writer = new FileWriter(file, true)) {
+                    writer.write(entry);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+
+        if (++journalEntries >= COMPACT_THRESHOLD) compact();
+    }
+
+    /**
+     * Rewrites the journal so it only contains the current entries.
+     */
+    private void compact() {
+        if (journalFile == null) return;
+
+        File file = journalFile;
+        List<Chunk> snapshot = new ArrayList<>(chunks.values());
+        journalEntries = 0;
+
+        writer.execute(() -> {
+            try {
+                file.getParentFile().mkdirs();
+                File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+                try (Writer writer = new BufferedWriter(new FileWriter(tempFile))) {
+                    for (Chunk chunk : snapshot) writer.write(chunk.toJournalEntry());
+                }
+
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static void saveCsv(File file, List<Chunk> chunks) {
         try {
-            File file = getCsvFile();
             file.getParentFile().mkdirs();
             Writer writer = new FileWriter(file);
 
@@ -250,9 +409,8 @@ public class StashFinder extends Module {
         }
     }
 
-    private void saveJson() {
+    private static void saveJson(File file, List<Chunk> chunks) {
         try {
-            File file = getJsonFile();
             file.getParentFile().mkdirs();
             Writer writer = new FileWriter(file);
             GSON.toJson(chunks, writer);
@@ -262,6 +420,10 @@ public class StashFinder extends Module {
         }
     }
 
+    private File getJournalFile() {
+        return new File(new File(new File(MeteorClient.FOLDER, "stashes"), Utils.getFileWorldName()), "stashes.journal");
+    }
+
     private File getJsonFile() {
         return new File(new File(new File(MeteorClient.FOLDER, "stashes"), Utils.getFileWorldName()), "stashes.json");
     }
@@ -303,6 +465,14 @@ public class StashFinder extends Module {
             return chests + barrels + shulkers + enderChests + furnaces + dispensersDroppers + hoppers;
         }
 
+        public String toJournalEntry() {
+            return chunkPos.x + " " + chunkPos.z + " " + chests + " " + barrels + " " + shulkers + " " + enderChests + " " + furnaces + " " + dispensersDroppers + " " + hoppers + "\n";
+        }
+
+        public String toRemovedJournalEntry() {
+            return "remove " + chunkPos.x + " " + chunkPos.z + "\n";
+        }
+
         public void write(Writer writer) throws IOException {
             sb.setLength(0);
             sb.append(x).append(',').append(z).append(',');
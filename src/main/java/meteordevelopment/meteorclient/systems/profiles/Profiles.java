@@ -35,12 +35,12 @@ public class Profiles extends System<Profiles> implements Iterable<Profile> {
     public void add(Profile profile) {
         if (!profiles.contains(profile)) profiles.add(profile);
         profile.save();
-        save();
+        markDirty();
     }
 
     public void remove(Profile profile) {
         if (profiles.remove(profile)) profile.delete();
-        save();
+        markDirty();
     }
 
     public Profile get(String name) {
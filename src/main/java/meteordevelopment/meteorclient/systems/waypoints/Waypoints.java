@@ -85,7 +85,7 @@ public class Waypoints extends System<Waypoints> implements Iterable<Waypoint> {
     public boolean add(Waypoint waypoint) {
         Waypoint added = waypoints.put(waypoint.name.get().toLowerCase(Locale.ROOT), waypoint);
         if (added != null) {
-            save();
+            markDirty();
         }
 
         return added != null;
@@ -94,7 +94,7 @@ public class Waypoints extends System<Waypoints> implements Iterable<Waypoint> {
     public boolean remove(Waypoint waypoint) {
         Waypoint removed = waypoints.remove(waypoint.name.get().toLowerCase(Locale.ROOT));
         if (removed != null) {
-            save();
+            markDirty();
         }
 
         return removed != null;
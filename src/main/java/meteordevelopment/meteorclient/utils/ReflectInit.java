@@ -11,65 +11,159 @@ import meteordevelopment.meteorclient.addons.MeteorAddon;
 import org.reflections.Reflections;
 import org.reflections.scanners.Scanners;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Runs {@link PreInit} and {@link PostInit} methods of Meteor and its addons. Methods are read from the index generated
+ * at compile time by the init index processor, packages without an index are scanned with Reflections instead.
+ */
 public class ReflectInit {
-    private static final List<Reflections> reflections = new ArrayList<>();
+    private static final String INDEX = "META-INF/meteor-client/init.index";
+
+    // One entry per addon in registration order, tasks are only ordered within an addon
+    private static final List<AddonTasks> addons = new ArrayList<>();
 
     public static void registerPackages() {
-        add(MeteorClient.ADDON);
+        List<String> packages = new ArrayList<>();
+
+        addPackage(packages, MeteorClient.ADDON);
 
         for (MeteorAddon addon : AddonManager.ADDONS) {
             try {
-                add(addon);
+                addPackage(packages, addon);
             } catch (AbstractMethodError e) {
                 throw new RuntimeException("Addon \"%s\" is too old and cannot be ran.".formatted(addon.name), e);
             }
         }
+
+        Map<String, List<IndexEntry>> index = readIndex();
+        for (String pkg : packages) add(pkg, packages, index);
     }
 
-    private static void add(MeteorAddon addon) {
+    private static void addPackage(List<String> packages, MeteorAddon addon) {
         String pkg = addon.getPackage();
-        if (pkg == null || pkg.isBlank()) return;
-        reflections.add(new Reflections(pkg, Scanners.MethodsAnnotated));
+        if (pkg != null && !pkg.isBlank()) packages.add(pkg);
+    }
+
+    private static void add(String pkg, List<String> packages, Map<String, List<IndexEntry>> index) {
+        // Use the generated index if the addon was compiled with the processor
+        List<IndexEntry> entries = null;
+
+        for (Map.Entry<String, List<IndexEntry>> entry : index.entrySet()) {
+            if (!pkg.equals(getOwner(entry.getKey(), packages))) continue;
+
+            if (entries == null) entries = new ArrayList<>();
+            entries.addAll(entry.getValue());
+        }
+
+        if (entries != null) {
+            addons.add(new AddonTasks(entries, null));
+        }
+        else {
+            MeteorClient.LOG.info("No init index found for package {}, scanning it instead", pkg);
+            addons.add(new AddonTasks(null, new Reflections(pkg, Scanners.MethodsAnnotated)));
+        }
+    }
+
+    /**
+     * @return the longest addon package containing the package, so entries of an addon nested in the package of another
+     * addon only belong to the nested one, or null
+     */
+    private static String getOwner(String classPackage, List<String> packages) {
+        String owner = null;
+
+        for (String pkg : packages) {
+            if (!classPackage.equals(pkg) && !classPackage.startsWith(pkg + ".")) continue;
+            if (owner == null || pkg.length() > owner.length()) owner = pkg;
+        }
+
+        return owner;
     }
 
     public static void init(Class<? extends Annotation> annotation) {
-        for (Reflections reflection : reflections) {
-            Set<Method> initTasks = reflection.getMethodsAnnotatedWith(annotation);
-            if (initTasks == null) return;
+        long totalStart = System.nanoTime();
+        int count = 0;
+
+        for (AddonTasks addon : addons) {
+            List<Method> initTasks = new ArrayList<>();
+            Map<Method, Class<?>[]> dependencies = new HashMap<>();
+
+            if (addon.entries != null) {
+                for (IndexEntry entry : addon.entries) {
+                    if (!entry.annotation.equals(annotation.getSimpleName())) continue;
+
+                    try {
+                        Method method = entry.resolve();
+                        initTasks.add(method);
+                        dependencies.put(method, entry.resolveDependencies());
+                    } catch (ReflectiveOperationException e) {
+                        MeteorClient.LOG.error("Failed to resolve init method {}.{}", entry.className, entry.method, e);
+                    }
+                }
+            }
+            else {
+                Set<Method> methods = addon.reflections.getMethodsAnnotatedWith(annotation);
+                if (methods == null) continue;
+
+                for (Method method : methods) {
+                    initTasks.add(method);
+                    dependencies.put(method, getDependencies(method, annotation));
+                }
+            }
+
+            for (Method task : sort(initTasks, dependencies)) {
+                long start = System.nanoTime();
 
-            Map<Class<?>, List<Method>> byClass = initTasks.stream().collect(Collectors.groupingBy(Method::getDeclaringClass));
-            Set<Method> left = new HashSet<>(initTasks);
+                try {
+                    task.invoke(null);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    e.printStackTrace();
+                } catch (NullPointerException e) {
+                    throw new RuntimeException("Method \"%s\" using Init annotations from non-static context".formatted(task.getName()), e);
+                }
 
-            for (Method m; (m = left.stream().findAny().orElse(null)) != null;) {
-                reflectInit(m, annotation, left, byClass);
+                MeteorClient.LOG.debug("{} {}.{} took {} ms", annotation.getSimpleName(), task.getDeclaringClass().getSimpleName(), task.getName(), (System.nanoTime() - start) / 1_000_000.0);
             }
+
+            count += initTasks.size();
         }
+
+        MeteorClient.LOG.info("Ran {} {} tasks in {} ms", count, annotation.getSimpleName(), (System.nanoTime() - totalStart) / 1_000_000);
+    }
+
+    /**
+     * Orders the tasks of one addon so every task runs after all init methods declared in its dependency classes,
+     * keeping the original order otherwise.
+     */
+    private static List<Method> sort(List<Method> tasks, Map<Method, Class<?>[]> dependencies) {
+        Map<Class<?>, List<Method>> byClass = new HashMap<>();
+        for (Method task : tasks) byClass.computeIfAbsent(task.getDeclaringClass(), clazz -> new ArrayList<>()).add(task);
+
+        List<Method> sorted = new ArrayList<>(tasks.size());
+        Set<Method> visited = new HashSet<>();
+
+        for (Method task : tasks) visit(task, dependencies, byClass, visited, sorted);
+        return sorted;
     }
 
-    private static <T extends Annotation> void reflectInit(Method task, Class<T> annotation, Set<Method> left, Map<Class<?>, List<Method>> byClass) {
-        left.remove(task);
+    private static void visit(Method task, Map<Method, Class<?>[]> dependencies, Map<Class<?>, List<Method>> byClass, Set<Method> visited, List<Method> sorted) {
+        if (!visited.add(task)) return;
 
-        for (Class<?> clazz : getDependencies(task, annotation)) {
+        for (Class<?> clazz : dependencies.get(task)) {
             for (Method m : byClass.getOrDefault(clazz, Collections.emptyList())) {
-                if (left.contains(m)) {
-                    reflectInit(m, annotation, left, byClass);
-                }
+                visit(m, dependencies, byClass, visited, sorted);
             }
         }
 
-        try {
-            task.invoke(null);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            throw new RuntimeException("Method \"%s\" using Init annotations from non-static context".formatted(task.getName()), e);
-        }
+        sorted.add(task);
     }
 
     private static <T extends Annotation> Class<?>[] getDependencies(Method task, Class<T> annotation) {
@@ -84,4 +178,58 @@ public class ReflectInit {
 
         return new Class<?>[]{};
     }
+
+    // Index
+
+    private static Map<String, List<IndexEntry>> readIndex() {
+        Map<String, List<IndexEntry>> index = new HashMap<>();
+
+        try {
+            Enumeration<URL> urls = ReflectInit.class.getClassLoader().getResources(INDEX);
+
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        String[] values = line.split(" ");
+
+                        if (values.length >= 3) {
+                            String[] dependencies = values.length > 3 ? values[3].split(",") : new String[0];
+                            IndexEntry entry = new IndexEntry(values[0], values[1], values[2], dependencies);
+
+                            int i = values[1].lastIndexOf('.');
+                            index.computeIfAbsent(i == -1 ? "" : values[1].substring(0, i), pkg -> new ArrayList<>()).add(entry);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to read init index", e);
+        }
+
+        return index;
+    }
+
+    private record AddonTasks(List<IndexEntry> entries, Reflections reflections) {}
+
+    private record IndexEntry(String annotation, String className, String method, String[] dependencies) {
+        public Method resolve() throws ReflectiveOperationException {
+            Method method = Class.forName(className, false, ReflectInit.class.getClassLoader()).getDeclaredMethod(this.method);
+            method.setAccessible(true);
+            return method;
+        }
+
+        public Class<?>[] resolveDependencies() throws ClassNotFoundException {
+            Class<?>[] classes = new Class<?>[dependencies.length];
+
+            for (int i = 0; i < dependencies.length; i++) {
+                classes[i] = Class.forName(dependencies[i], false, ReflectInit.class.getClassLoader());
+            }
+
+            return classes;
+        }
+    }
 }
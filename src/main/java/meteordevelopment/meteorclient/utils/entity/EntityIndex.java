@@ -0,0 +1,296 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.entity;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.entity.EntityAddedEvent;
+import meteordevelopment.meteorclient.events.entity.EntityRemovedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.entity.decoration.EndCrystalEntity;
+import net.minecraft.entity.mob.Monster;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Snapshot of all entities in the world shared between modules so they do not all have to iterate
+ * {@code mc.world.getEntities()} themselves. The snapshot is rebuilt at the start of every tick and whenever an entity
+ * is removed, added entities are inserted into the current snapshot. Entities are bucketed by {@link Group}, by
+ * {@link EntityType} and by their position in a grid of 16 block cells, spatial queries are expanded by the largest
+ * bounding box in the snapshot so big entities are found from every cell they overlap.
+ * <p>
+ * Only use from the render thread.
+ */
+public class EntityIndex {
+    private static final int CELL_SHIFT = 4;
+
+    /** Entities are bucketed by their position at the time of the snapshot, spatial queries are expanded by this much. */
+    private static final double MARGIN = 4;
+
+    /** How far the bounding boxes of the entities in the snapshot reach from their position. */
+    private static double extentXZ, extentDown, extentUp;
+
+    private static final EntityList ALL = new EntityList();
+    private static final EntityList[] GROUPS = new EntityList[Group.values().length];
+    private static final Reference2ObjectMap<EntityType<?>, EntityList> TYPES = new Reference2ObjectOpenHashMap<>();
+    private static final EntityList EMPTY = new EntityList();
+
+    private static final Long2ObjectMap<EntityList> cells = new Long2ObjectOpenHashMap<>();
+    private static final List<EntityList> cellPool = new ArrayList<>();
+
+    private static boolean dirty = true;
+    private static long lastBuildTime;
+
+    static {
+        for (int i = 0; i < GROUPS.length; i++) GROUPS[i] = new EntityList();
+    }
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(EntityIndex.class);
+    }
+
+    // Events
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onTick(TickEvent.Pre event) {
+        dirty = true;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onEntityAdded(EntityAddedEvent event) {
+        // Entities replacing one with the same id are preceded by a removal which already marks the snapshot dirty
+        if (!dirty) add(event.entity);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onEntityRemoved(EntityRemovedEvent event) {
+        dirty = true;
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        clear();
+        dirty = true;
+    }
+
+    // Queries
+
+    public static EntityList getAll() {
+        update();
+        return ALL;
+    }
+
+    public static EntityList get(Group group) {
+        update();
+        return GROUPS[group.ordinal()];
+    }
+
+    public static EntityList get(EntityType<?> type) {
+        update();
+        return TYPES.getOrDefault(type, EMPTY);
+    }
+
+    /**
+     * Calls the action for all entities whose bounding box intersects the box.
+     */
+    public static void forEachInBox(Box box, Consumer<Entity> action) {
+        update();
+
+        // An entity can only intersect the box if its position is within the extent of its bounding box from it
+        int minX = MathHelper.floor(box.minX - extentXZ - MARGIN) >> CELL_SHIFT, maxX = MathHelper.floor(box.maxX + extentXZ + MARGIN) >> CELL_SHIFT;
+        int minY = MathHelper.floor(box.minY - extentUp - MARGIN) >> CELL_SHIFT, maxY = MathHelper.floor(box.maxY + extentDown + MARGIN) >> CELL_SHIFT;
+        int minZ = MathHelper.floor(box.minZ - extentXZ - MARGIN) >> CELL_SHIFT, maxZ = MathHelper.floor(box.maxZ + extentXZ + MARGIN) >> CELL_SHIFT;
+
+        // Large boxes cover more cells than there are entities
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1) > cells.size()) {
+            for (int i = 0; i < ALL.size; i++) {
+                Entity entity = ALL.entities[i];
+                if (!entity.isRemoved() && entity.getBoundingBox().intersects(box)) action.accept(entity);
+            }
+
+            return;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    EntityList cell = cells.get(ChunkSectionPos.asLong(x, y, z));
+                    if (cell == null) continue;
+
+                    for (int i = 0; i < cell.size; i++) {
+                        Entity entity = cell.entities[i];
+                        if (!entity.isRemoved() && entity.getBoundingBox().intersects(box)) action.accept(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the action for all entities whose position is within range of the point.
+     */
+    public static void forEachInRange(double x, double y, double z, double range, Consumer<Entity> action) {
+        double rangeSq = range * range;
+
+        forEachInBox(new Box(x - range, y - range, z - range, x + range, y + range, z + range), entity -> {
+            if (entity.squaredDistanceTo(x, y, z) <= rangeSq) action.accept(entity);
+        });
+    }
+
+    /**
+     * @return the first entity matching the predicate, or null
+     */
+    public static Entity find(Predicate<Entity> predicate) {
+        update();
+
+        for (int i = 0; i < ALL.size; i++) {
+            Entity entity = ALL.entities[i];
+            if (!entity.isRemoved() && predicate.test(entity)) return entity;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return how long the last snapshot took to build in nanoseconds
+     */
+    public static long getLastBuildTime() {
+        return lastBuildTime;
+    }
+
+    // Building
+
+    private static void update() {
+        if (!dirty) return;
+        dirty = false;
+
+        long start = System.nanoTime();
+        clear();
+
+        if (mc.world == null) return;
+
+        for (Entity entity : mc.world.getEntities()) {
+            if (entity != null) add(entity);
+        }
+
+        lastBuildTime = System.nanoTime() - start;
+    }
+
+    private static void add(Entity entity) {
+        ALL.add(entity);
+
+        Group group = Group.of(entity);
+        if (group != null) GROUPS[group.ordinal()].add(entity);
+
+        TYPES.computeIfAbsent(entity.getType(), type -> new EntityList()).add(entity);
+
+        long key = ChunkSectionPos.asLong(entity.getBlockX() >> CELL_SHIFT, entity.getBlockY() >> CELL_SHIFT, entity.getBlockZ() >> CELL_SHIFT);
+        EntityList cell = cells.get(key);
+
+        if (cell == null) {
+            cell = cellPool.isEmpty() ? new EntityList() : cellPool.remove(cellPool.size() - 1);
+            cells.put(key, cell);
+        }
+
+        cell.add(entity);
+
+        Box box = entity.getBoundingBox();
+        extentXZ = Math.max(extentXZ, Math.max(Math.max(entity.getX() - box.minX, box.maxX - entity.getX()), Math.max(entity.getZ() - box.minZ, box.maxZ - entity.getZ())));
+        extentDown = Math.max(extentDown, entity.getY() - box.minY);
+        extentUp = Math.max(extentUp, box.maxY - entity.getY());
+    }
+
+    private static void clear() {
+        ALL.clear();
+        for (EntityList list : GROUPS) list.clear();
+        for (EntityList list : TYPES.values()) list.clear();
+
+        for (EntityList cell : cells.values()) {
+            cell.clear();
+            cellPool.add(cell);
+        }
+
+        cells.clear();
+
+        extentXZ = 0;
+        extentDown = 0;
+        extentUp = 0;
+    }
+
+    public enum Group {
+        Player,
+        Crystal,
+        Item,
+        Hostile;
+
+        public static Group of(Entity entity) {
+            if (entity instanceof PlayerEntity) return Player;
+            if (entity instanceof EndCrystalEntity) return Crystal;
+            if (entity instanceof ItemEntity) return Item;
+            if (entity instanceof Monster) return Hostile;
+            return null;
+        }
+    }
+
+    /**
+     * Read only list of entities, iterate it with an index to avoid allocating an iterator. Entities removed from the
+     * world since the snapshot was built are skipped by {@link #forEach(Consumer)} but not by {@link #get(int)}.
+     */
+    public static class EntityList {
+        private Entity[] entities = new Entity[16];
+        private int size;
+
+        private void add(Entity entity) {
+            if (size >= entities.length) entities = Arrays.copyOf(entities, entities.length * 2);
+            entities[size++] = entity;
+        }
+
+        private void clear() {
+            Arrays.fill(entities, 0, size, null);
+            size = 0;
+        }
+
+        public Entity get(int i) {
+            return entities[i];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(Consumer<? super Entity> action) {
+            for (int i = 0; i < size; i++) {
+                Entity entity = entities[i];
+                if (!entity.isRemoved()) action.accept(entity);
+            }
+        }
+    }
+}
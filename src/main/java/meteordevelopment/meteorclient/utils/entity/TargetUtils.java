@@ -38,8 +38,10 @@ public class TargetUtils {
     public static void getList(List<Entity> targetList, Predicate<Entity> isGood, SortPriority sortPriority, int maxCount) {
         targetList.clear();
 
-        for (Entity entity : mc.world.getEntities()) {
-            if (entity != null && isGood.test(entity)) targetList.add(entity);
+        EntityIndex.EntityList entities = EntityIndex.getAll();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (!entity.isRemoved() && isGood.test(entity)) targetList.add(entity);
         }
 
         FakePlayerManager.forEach(fp -> {
@@ -0,0 +1,435 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.entity;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.entity.Entity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.hit.EntityHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import org.joml.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Projectile paths shared between modules. Paths are simulated with {@link ProjectileEntitySimulator} at most once per
+ * tick and are translated by the movement of their entity when rendered between ticks. All simulations of a tick share
+ * a budget of simulation steps, paths which were used during the last tick are simulated again at the start of the
+ * next one with threatening and close paths first. A path is only simulated again if the budget left covers its whole
+ * step limit, paths which don't fit keep their previous result instead of being cut short.
+ * <p>
+ * Paths of items held by the local player follow the camera, so they are not cached between ticks and are simulated
+ * again by {@link #getLocal(ItemStack, int, boolean, int, double)} whenever the player moved or turned.
+ * <p>
+ * Only use from the render thread.
+ */
+public class TrajectoryCache {
+    private static final int STEP_BUDGET = 20_000;
+
+    /** Step limit of a single path, also used for paths without a limit so one path can't use up the budget. */
+    private static final int MAX_PATH_STEPS = 5_000;
+
+    /** Paths passing this close to the player are simulated first. */
+    private static final double THREAT_DISTANCE = 3;
+
+    private static final double MULTISHOT_OFFSET = Math.toRadians(10); // accurate-ish offset of crossbow multishot in radians (10° degrees)
+    private static final int SHOT_PROJECTILE = 3;
+
+    private static final ProjectileEntitySimulator simulator = new ProjectileEntitySimulator();
+
+    private static final Long2ObjectMap<Trajectory> trajectories = new Long2ObjectOpenHashMap<>();
+    private static final List<Trajectory> queue = new ArrayList<>();
+
+    private static final Trajectory[] local = new Trajectory[SHOT_PROJECTILE];
+
+    private static int tick;
+    private static int stepsLeft = STEP_BUDGET;
+    private static int skipped;
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(TrajectoryCache.class);
+    }
+
+    // Events
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onTick(TickEvent.Pre event) {
+        tick++;
+        stepsLeft = STEP_BUDGET;
+        skipped = 0;
+
+        if (trajectories.isEmpty()) return;
+
+        for (Iterator<Trajectory> it = trajectories.values().iterator(); it.hasNext(); ) {
+            Trajectory trajectory = it.next();
+
+            if (trajectory.lastUsed < tick - 1 || trajectory.entity.isRemoved()) {
+                it.remove();
+                continue;
+            }
+
+            // Only keep simulating as many steps as were asked for during the last tick
+            trajectory.steps = trajectory.requestedSteps;
+            trajectory.requestedSteps = -1;
+
+            trajectory.threat = trajectory.entity != mc.player && trajectory.passesWithin(mc.player.getX(), mc.player.getY(), mc.player.getZ(), THREAT_DISTANCE);
+            trajectory.distance = mc.player.squaredDistanceTo(trajectory.entity);
+            queue.add(trajectory);
+        }
+
+        queue.sort((t1, t2) -> {
+            if (t1.threat != t2.threat) return t1.threat ? -1 : 1;
+            return Double.compare(t1.distance, t2.distance);
+        });
+
+        for (Trajectory trajectory : queue) {
+            if (fitsBudget(trajectory)) simulate(trajectory);
+            else skipped++;
+        }
+
+        queue.clear();
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        trajectories.clear();
+        Arrays.fill(local, null);
+    }
+
+    // Queries
+
+    /**
+     * @param steps maximum amount of steps to simulate, zero for {@link #MAX_PATH_STEPS}
+     * @return the path of the projectile or null if it can't be simulated
+     */
+    public static Trajectory get(Entity projectile, boolean accurate, int steps) {
+        return get(projectile, accurate, steps, 1);
+    }
+
+    /**
+     * @param steps maximum amount of steps to simulate, zero for {@link #MAX_PATH_STEPS}
+     * @param tickDelta how far between its last and current position the projectile starts, paths simulated from
+     *                  different positions are cached separately
+     * @return the path of the projectile or null if it can't be simulated
+     */
+    public static Trajectory get(Entity projectile, boolean accurate, int steps, double tickDelta) {
+        return get(projectile, null, SHOT_PROJECTILE, accurate, steps, tickDelta);
+    }
+
+    /**
+     * Use {@link #getLocal(ItemStack, int, boolean, int, double)} for the local player.
+     *
+     * @param shot 0 for the center projectile, 1 and 2 for the left and right projectiles of a crossbow with multishot
+     * @param steps maximum amount of steps to simulate, zero for {@link #MAX_PATH_STEPS}
+     * @return the path of a projectile thrown by the user with the item or null if it can't be simulated
+     */
+    public static Trajectory get(Entity user, ItemStack itemStack, int shot, boolean accurate, int steps) {
+        return get(user, itemStack, shot, accurate, steps, 1);
+    }
+
+    /**
+     * Simulates the path of a projectile thrown by the local player again if the player moved or turned since the last
+     * call, the path is not shared with other modules and does not count towards the budget.
+     *
+     * @param shot 0 for the center projectile, 1 and 2 for the left and right projectiles of a crossbow with multishot
+     * @param steps maximum amount of steps to simulate, zero for {@link #MAX_PATH_STEPS}
+     * @return the path of a projectile thrown by the local player with the item or null if it can't be simulated
+     */
+    public static Trajectory getLocal(ItemStack itemStack, int shot, boolean accurate, int steps, double tickDelta) {
+        Trajectory trajectory = local[shot];
+
+        if (trajectory == null || trajectory.entity != mc.player || trajectory.accurate != accurate) {
+            trajectory = new Trajectory(mc.player, shot, accurate, tickDelta);
+            local[shot] = trajectory;
+        }
+
+        float yaw = MathHelper.lerp((float) tickDelta, mc.player.prevYaw, mc.player.getYaw());
+        float pitch = MathHelper.lerp((float) tickDelta, mc.player.prevPitch, mc.player.getPitch());
+        double x = MathHelper.lerp(tickDelta, mc.player.prevX, mc.player.getX());
+        double y = MathHelper.lerp(tickDelta, mc.player.prevY, mc.player.getY());
+        double z = MathHelper.lerp(tickDelta, mc.player.prevZ, mc.player.getZ());
+
+        if (trajectory.tick == -1 || trajectory.itemStack != itemStack || trajectory.steps != steps || trajectory.yaw != yaw || trajectory.pitch != pitch
+            || trajectory.originX != x || trajectory.originY != y || trajectory.originZ != z) {
+
+            trajectory.itemStack = itemStack;
+            trajectory.steps = steps;
+            trajectory.tickDelta = tickDelta;
+            trajectory.yaw = yaw;
+            trajectory.pitch = pitch;
+
+            int stepsLeft = TrajectoryCache.stepsLeft;
+            TrajectoryCache.stepsLeft = STEP_BUDGET;
+            simulate(trajectory);
+            TrajectoryCache.stepsLeft = stepsLeft;
+        }
+
+        return trajectory.valid ? trajectory : null;
+    }
+
+    private static Trajectory get(Entity user, ItemStack itemStack, int shot, boolean accurate, int steps, double tickDelta) {
+        // Tick deltas are only told apart up to 3 decimals
+        long key = ((long) user.getId() << 32) | (Math.round(tickDelta * 1000) << 3) | ((long) shot << 1) | (accurate ? 1 : 0);
+        Trajectory trajectory = trajectories.get(key);
+
+        if (trajectory == null) {
+            trajectory = new Trajectory(user, shot, accurate, tickDelta);
+            trajectories.put(key, trajectory);
+        }
+
+        // Modules asking for the same path with a different amount of steps share the longest one
+        trajectory.requestedSteps = maxSteps(trajectory.requestedSteps, steps);
+
+        if (maxSteps(trajectory.steps, steps) != trajectory.steps) {
+            trajectory.steps = maxSteps(trajectory.steps, steps);
+            trajectory.tick = -1;
+        }
+
+        if (trajectory.itemStack != itemStack) {
+            trajectory.itemStack = itemStack;
+            trajectory.tick = -1;
+        }
+
+        trajectory.lastUsed = tick;
+        if (trajectory.tick != tick && fitsBudget(trajectory)) simulate(trajectory);
+
+        return trajectory.valid ? trajectory : null;
+    }
+
+    // Metrics
+
+    public static int size() {
+        return trajectories.size();
+    }
+
+    /**
+     * @return the amount of paths which were not simulated again during this tick because the budget was used up
+     */
+    public static int getSkipped() {
+        return skipped;
+    }
+
+    public static int getStepsUsed() {
+        return STEP_BUDGET - stepsLeft;
+    }
+
+    // Simulation
+
+    /**
+     * @return the larger of two step limits where zero means {@link #MAX_PATH_STEPS} and -1 means no request
+     */
+    private static int maxSteps(int steps1, int steps2) {
+        if (steps1 == 0 || steps2 == 0) return 0;
+        return Math.max(steps1, steps2);
+    }
+
+    private static int getStepLimit(Trajectory trajectory) {
+        return trajectory.steps > 0 ? Math.min(trajectory.steps, MAX_PATH_STEPS) : MAX_PATH_STEPS;
+    }
+
+    /**
+     * Paths are only simulated when all of their steps fit in the budget, a path cut short by the budget would look
+     * like it was simulated this tick while ending early.
+     */
+    private static boolean fitsBudget(Trajectory trajectory) {
+        return stepsLeft >= getStepLimit(trajectory);
+    }
+
+    private static void simulate(Trajectory trajectory) {
+        Entity entity = trajectory.entity;
+        double tickDelta = trajectory.tickDelta;
+
+        trajectory.clear();
+        trajectory.tick = tick;
+        trajectory.originX = MathHelper.lerp(tickDelta, entity.prevX, entity.getX());
+        trajectory.originY = MathHelper.lerp(tickDelta, entity.prevY, entity.getY());
+        trajectory.originZ = MathHelper.lerp(tickDelta, entity.prevZ, entity.getZ());
+
+        boolean set;
+        if (trajectory.shot == SHOT_PROJECTILE) set = simulator.set(entity, trajectory.accurate, tickDelta);
+        else set = simulator.set(entity, trajectory.itemStack, getOffset(trajectory.shot), trajectory.accurate, tickDelta);
+
+        trajectory.valid = set;
+        if (!set) return;
+
+        trajectory.addPoint(simulator.pos);
+        int steps = getStepLimit(trajectory);
+
+        for (int i = 0; i < steps; i++) {
+            HitResult result = simulator.tick();
+            stepsLeft--;
+
+            if (result != null) {
+                trajectory.setHit(result);
+                break;
+            }
+
+            trajectory.addPoint(simulator.pos);
+        }
+
+        trajectory.trim();
+    }
+
+    private static double getOffset(int shot) {
+        return switch (shot) {
+            case 1 -> MULTISHOT_OFFSET;
+            case 2 -> -MULTISHOT_OFFSET;
+            default -> 0;
+        };
+    }
+
+    public static class Trajectory {
+        private static final int INITIAL_POINTS = 64;
+
+        private final Entity entity;
+        private final int shot;
+        private final boolean accurate;
+
+        private ItemStack itemStack;
+        private double tickDelta;
+        private int steps = -1, requestedSteps = -1;
+        private float yaw, pitch;
+
+        private double[] points = new double[3 * INITIAL_POINTS];
+        private int size;
+
+        private HitResult hit;
+        private double originX, originY, originZ;
+
+        private boolean valid, threat;
+        private double distance;
+        private int tick = -1, lastUsed;
+
+        private Trajectory(Entity entity, int shot, boolean accurate, double tickDelta) {
+            this.entity = entity;
+            this.shot = shot;
+            this.accurate = accurate;
+            this.tickDelta = tickDelta;
+        }
+
+        private void clear() {
+            size = 0;
+            hit = null;
+        }
+
+        /**
+         * Shrinks the points after a path got much shorter, e.g. when the amount of simulated steps was lowered.
+         */
+        private void trim() {
+            int capacity = Math.max(size * 2, INITIAL_POINTS) * 3;
+            if (points.length > capacity * 2) points = Arrays.copyOf(points, capacity);
+        }
+
+        private void addPoint(double x, double y, double z) {
+            if (size * 3 >= points.length) points = Arrays.copyOf(points, points.length * 2);
+
+            points[size * 3] = x;
+            points[size * 3 + 1] = y;
+            points[size * 3 + 2] = z;
+            size++;
+        }
+
+        private void addPoint(Vector3d pos) {
+            addPoint(pos.x, pos.y, pos.z);
+        }
+
+        private void setHit(HitResult result) {
+            if (result.getType() == HitResult.Type.BLOCK) {
+                hit = result;
+                addPoint(result.getPos().x, result.getPos().y, result.getPos().z);
+            }
+            else if (result.getType() == HitResult.Type.ENTITY) {
+                hit = result;
+                addPoint(result.getPos().x, result.getPos().y + ((EntityHitResult) result).getEntity().getHeight() / 2, result.getPos().z);
+            }
+        }
+
+        private boolean passesWithin(double x, double y, double z, double range) {
+            double rangeSq = range * range;
+
+            for (int i = 0; i < size; i++) {
+                double dx = points[i * 3] - x, dy = points[i * 3 + 1] - y, dz = points[i * 3 + 2] - z;
+                if (dx * dx + dy * dy + dz * dz <= rangeSq) return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * @return the projectile, or the entity throwing it for paths of held items
+         */
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public int getPointCount() {
+            return size;
+        }
+
+        public double getX(int i) {
+            return points[i * 3];
+        }
+
+        public double getY(int i) {
+            return points[i * 3 + 1];
+        }
+
+        public double getZ(int i) {
+            return points[i * 3 + 2];
+        }
+
+        /**
+         * @return the block or entity hit at the end of the path, or null if the path ends without hitting anything
+         */
+        public HitResult getHit() {
+            return hit;
+        }
+
+        /**
+         * @return the predicted impact point, or null if the path ends without hitting anything
+         */
+        public Vec3d getImpact() {
+            return hit == null ? null : hit.getPos();
+        }
+
+        /**
+         * @return if the path is from a previous tick because the simulation budget was used up
+         */
+        public boolean isOutdated() {
+            return tick != TrajectoryCache.tick;
+        }
+
+        // Paths are simulated from the interpolated position of the entity at the start of the tick, render offsets
+        // move them along with the interpolated position of the entity
+
+        public double getRenderOffsetX(double tickDelta) {
+            return MathHelper.lerp(tickDelta, entity.prevX, entity.getX()) - originX;
+        }
+
+        public double getRenderOffsetY(double tickDelta) {
+            return MathHelper.lerp(tickDelta, entity.prevY, entity.getY()) - originY;
+        }
+
+        public double getRenderOffsetZ(double tickDelta) {
+            return MathHelper.lerp(tickDelta, entity.prevZ, entity.getZ()) - originZ;
+        }
+    }
+}
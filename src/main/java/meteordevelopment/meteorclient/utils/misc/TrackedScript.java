@@ -0,0 +1,215 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.misc;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import meteordevelopment.starscript.Script;
+import meteordevelopment.starscript.Section;
+import meteordevelopment.starscript.Starscript;
+import meteordevelopment.starscript.utils.StarscriptError;
+import meteordevelopment.starscript.value.Value;
+import meteordevelopment.starscript.value.ValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A compiled script which remembers which variables it read during its last run and is only run again after one of them
+ * changed. Tracked scripts run in their own {@link Starscript} whose variables mirror the ones of
+ * {@link MeteorStarscript#ss} without modifying them. Every variable is evaluated at most once per tick and keeps a
+ * version which is incremented whenever its value changes, maps only count as changed when members were added or
+ * removed since their members are tracked as variables of their own.
+ * <p>
+ * Scripts calling functions which are not known to be pure are run every time. Only use from the render thread.
+ */
+public class TrackedScript {
+    private static final Set<String> PURE_FUNCTIONS = Set.of("round", "roundToString", "floor", "ceil", "abs");
+
+    private static final Starscript scope = new Starscript();
+
+    private static TrackedScript recording;
+    private static int tick, syncedTick = -1;
+
+    private final Script script;
+
+    private final List<Variable> dependencies = new ArrayList<>();
+    private final IntList versions = new IntArrayList();
+    private boolean dirty = true, alwaysRun;
+
+    private Section section;
+
+    public TrackedScript(Script script) {
+        this.script = script;
+    }
+
+    @PreInit(dependencies = MeteorStarscript.class)
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(TrackedScript.class);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onTick(TickEvent.Pre event) {
+        tick++;
+    }
+
+    /**
+     * @return true if the next call to {@link #run()} will run the script
+     */
+    public boolean isChanged() {
+        if (dirty || alwaysRun) return true;
+
+        for (int i = 0; i < dependencies.size(); i++) {
+            if (dependencies.get(i).poll() != versions.getInt(i)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Runs the script if any of the variables it read during the last run changed.
+     * @return the same section as the last call if the script was not run
+     * @throws StarscriptError if the script fails, it will be run again on the next call
+     */
+    public Section run() {
+        if (!isChanged()) return section;
+
+        // Picks up variables added to the shared instance since the last tick
+        if (syncedTick != tick) {
+            sync(MeteorStarscript.ss.getGlobals(), scope.getGlobals(), "");
+            syncedTick = tick;
+        }
+
+        dependencies.clear();
+        versions.clear();
+        dirty = true;
+        alwaysRun = false;
+
+        TrackedScript previous = recording;
+        recording = this;
+
+        try {
+            section = scope.run(script);
+            dirty = false;
+        }
+        finally {
+            recording = previous;
+        }
+
+        return section;
+    }
+
+    private void record(Variable variable) {
+        if (dependencies.contains(variable)) return;
+
+        dependencies.add(variable);
+        versions.add(variable.version);
+
+        if (variable.value.isFunction() && !PURE_FUNCTIONS.contains(variable.name)) alwaysRun = true;
+    }
+
+    /**
+     * Mirrors the variables of the source map as tracked variables in the target map, the source map is not modified.
+     * @return true if variables were added or removed
+     */
+    private static boolean sync(ValueMap source, ValueMap target, String prefix) {
+        boolean changed = false;
+
+        for (String key : source.keys()) {
+            Supplier<Value> supplier = source.getRaw(key);
+
+            if (target.getRaw(key) instanceof Variable variable) {
+                if (variable.supplier != supplier) {
+                    variable.supplier = supplier;
+                    variable.tick = -1;
+                }
+            }
+            else {
+                target.set(key, new Variable(prefix + key, supplier));
+                changed = true;
+            }
+        }
+
+        if (target.keys().size() != source.keys().size()) {
+            for (String key : new ArrayList<>(target.keys())) {
+                if (source.getRaw(key) == null) target.remove(key);
+            }
+
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private static boolean equals(Value a, Value b) {
+        if (a.isNull()) return b.isNull();
+        if (a.isBool()) return b.isBool() && a.getBool() == b.getBool();
+        if (a.isNumber()) return b.isNumber() && Double.compare(a.getNumber(), b.getNumber()) == 0;
+        if (a.isString()) return b.isString() && a.getString().equals(b.getString());
+        if (a.isFunction()) return b.isFunction() && a.getFunction() == b.getFunction();
+        return false;
+    }
+
+    private static class Variable implements Supplier<Value> {
+        private final String name;
+        private Supplier<Value> supplier;
+
+        private Value value;
+        private int version, tick = -1;
+
+        // Tracked copies of the members when the value is a map
+        private ValueMap members;
+        private Value membersValue;
+
+        public Variable(String name, Supplier<Value> supplier) {
+            this.name = name;
+            this.supplier = supplier;
+        }
+
+        @Override
+        public Value get() {
+            poll();
+            if (recording != null) recording.record(this);
+
+            return value;
+        }
+
+        /**
+         * Evaluates the variable if it was not evaluated yet this tick.
+         * @return the current version
+         */
+        public int poll() {
+            if (tick != TrackedScript.tick) {
+                Value value = supplier.get();
+                tick = TrackedScript.tick;
+
+                if (value.isMap()) {
+                    // Maps are often created again on every call, the interpreter reads the tracked copy instead
+                    if (members == null) {
+                        members = new ValueMap();
+                        membersValue = Value.map(members);
+                    }
+
+                    if (sync(value.getMap(), members, name + ".") || this.value != membersValue) version++;
+                    this.value = membersValue;
+                }
+                else {
+                    if (this.value == null || !TrackedScript.equals(this.value, value)) version++;
+                    this.value = value;
+                }
+            }
+
+            return version;
+        }
+    }
+}
@@ -5,28 +5,296 @@
 
 package meteordevelopment.meteorclient.utils.network;
 
+import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.utils.PreInit;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Background tasks run on one of two lanes. The io lane is for tasks which block, like http requests or file access,
+ * and the cpu lane for computations like chunk scans. The cpu lane has a thread per core and runs tasks by
+ * {@link Priority}, tasks of a {@link TaskQueue} can be replaced by newer tasks or cancelled before they start.
+ */
 public class MeteorExecutor {
+    private static final int IO_THREADS = 16;
+    private static final int CPU_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** Cancelled tasks are removed from the cpu lane once there are at least this many and they are half of it. */
+    private static final int COMPACT_THRESHOLD = 64;
+
+    /** Executor of the io lane. */
     public static ExecutorService executor;
+    private static ThreadPoolExecutor cpuExecutor;
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final AtomicInteger cancelledTasks = new AtomicInteger();
+    private static final Stats ioStats = new Stats(), cpuStats = new Stats();
 
     @PreInit
     public static void init() {
+        ThreadPoolExecutor ioExecutor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory("Meteor-Executor-"));
+        ioExecutor.allowCoreThreadTimeOut(true);
+        executor = ioExecutor;
+
+        cpuExecutor = new ThreadPoolExecutor(CPU_THREADS, CPU_THREADS, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), threadFactory("Meteor-Worker-"));
+        cpuExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static ThreadFactory threadFactory(String name) {
         AtomicInteger threadNumber = new AtomicInteger(1);
 
-        executor = Executors.newCachedThreadPool((task) -> {
+        return task -> {
             Thread thread = new Thread(task);
             thread.setDaemon(true);
-            thread.setName("Meteor-Executor-" + threadNumber.getAndIncrement());
+            thread.setName(name + threadNumber.getAndIncrement());
             return thread;
-        });
+        };
     }
 
+    /**
+     * Runs the task on the io lane.
+     */
     public static void execute(Runnable task) {
-        executor.execute(task);
+        long submitTime = System.nanoTime();
+        executor.execute(() -> ioStats.run(task, submitTime));
+    }
+
+    /**
+     * Runs the task on the cpu lane with {@link Priority#Normal}.
+     */
+    public static void executeCpu(Runnable task) {
+        executeCpu(Priority.Normal, task);
+    }
+
+    /**
+     * Runs the task on the cpu lane, tasks with a higher priority are started first.
+     */
+    public static void executeCpu(Priority priority, Runnable task) {
+        cpuExecutor.execute(new Task(null, null, priority, task));
+    }
+
+    /**
+     * Removes cancelled tasks from the cpu lane when they make up most of it, so replaced tasks don't pile up in the
+     * queue until a worker reaches them.
+     */
+    private static void compact() {
+        int cancelled = cancelledTasks.get();
+        if (cancelled < COMPACT_THRESHOLD || cancelled < cpuExecutor.getQueue().size() / 2) return;
+
+        cpuExecutor.getQueue().removeIf(runnable -> runnable instanceof Task task && task.removeIfCancelled());
+    }
+
+    // Metrics
+
+    /**
+     * @return the amount of tasks waiting to be started on the io lane
+     */
+    public static int getIoQueueSize() {
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    /**
+     * @return the amount of tasks waiting to be started on the cpu lane, including cancelled tasks which were not removed yet
+     */
+    public static int getCpuQueueSize() {
+        return cpuExecutor.getQueue().size();
+    }
+
+    public static Stats getIoStats() {
+        return ioStats;
+    }
+
+    public static Stats getCpuStats() {
+        return cpuStats;
+    }
+
+    public enum Priority {
+        High,
+        Normal,
+        Low
+    }
+
+    /**
+     * Tasks submitted by a single owner to the cpu lane. A task submitted with the same key as a task which has not
+     * started yet replaces it and {@link #cancelAll()} drops all tasks which have not started yet.
+     */
+    public static class TaskQueue {
+        private final Map<Object, Task> pending = new HashMap<>();
+
+        // Guarded by pending
+        private int size;
+
+        public void submit(Priority priority, Runnable task) {
+            submit(null, priority, task);
+        }
+
+        /**
+         * @param key tasks with the same key are coalesced, can be null
+         */
+        public void submit(Object key, Priority priority, Runnable runnable) {
+            Task task = new Task(this, key, priority, runnable);
+            boolean replaced = false;
+
+            synchronized (pending) {
+                if (key != null) {
+                    Task previous = pending.put(key, task);
+
+                    if (previous != null && previous.cancel()) {
+                        size--;
+                        replaced = true;
+                    }
+                }
+
+                size++;
+                cpuExecutor.execute(task);
+            }
+
+            if (replaced) compact();
+        }
+
+        /**
+         * Cancels all tasks which have not started yet, running tasks are not interrupted.
+         */
+        public void cancelAll() {
+            synchronized (pending) {
+                for (Task task : pending.values()) {
+                    if (task.cancel()) size--;
+                }
+
+                pending.clear();
+
+                // Unkeyed tasks are not tracked individually so they are cancelled while removing them from the queue
+                cpuExecutor.getQueue().removeIf(runnable -> {
+                    if (!(runnable instanceof Task task) || task.queue != this) return false;
+
+                    if (task.cancel()) size--;
+                    return task.removeIfCancelled();
+                });
+            }
+        }
+
+        /**
+         * @return the amount of tasks of this queue which have not started yet
+         */
+        public int size() {
+            synchronized (pending) {
+                return size;
+            }
+        }
+
+        private void started(Task task) {
+            synchronized (pending) {
+                size--;
+                if (task.key != null) pending.remove(task.key, task);
+            }
+        }
+    }
+
+    private static class Task implements Runnable, Comparable<Task> {
+        private final TaskQueue queue;
+        private final Object key;
+        private final Priority priority;
+        private final Runnable runnable;
+
+        private final long sequence = MeteorExecutor.sequence.getAndIncrement();
+        private final long submitTime = System.nanoTime();
+
+        // 0 = waiting, 1 = started, 2 = cancelled
+        private final AtomicInteger state = new AtomicInteger();
+
+        public Task(TaskQueue queue, Object key, Priority priority, Runnable runnable) {
+            this.queue = queue;
+            this.key = key;
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+
+        public boolean cancel() {
+            if (!state.compareAndSet(0, 2)) return false;
+
+            cancelledTasks.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * Called when removing the task from the queue of the cpu lane.
+         * @return true if the task was cancelled and can be removed
+         */
+        private boolean removeIfCancelled() {
+            if (state.get() != 2) return false;
+
+            cancelledTasks.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(0, 1)) {
+                // Cancelled tasks which were not removed from the queue are only dropped when a worker reaches them
+                cancelledTasks.decrementAndGet();
+                return;
+            }
+
+            if (queue != null) queue.started(this);
+
+            cpuStats.run(runnable, submitTime);
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (priority != o.priority) return priority.compareTo(o.priority);
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Latency of the tasks of a lane, times are in nanoseconds.
+     */
+    public static class Stats {
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong waitTime = new AtomicLong(), runTime = new AtomicLong();
+        private volatile long maxWaitTime;
+
+        private void run(Runnable task, long submitTime) {
+            long start = System.nanoTime();
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                MeteorClient.LOG.error("Error running task on {}", Thread.currentThread().getName(), e);
+            } finally {
+                long wait = start - submitTime;
+
+                completed.incrementAndGet();
+                waitTime.addAndGet(wait);
+                runTime.addAndGet(System.nanoTime() - start);
+                if (wait > maxWaitTime) maxWaitTime = wait;
+            }
+        }
+
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * @return average time tasks waited in the queue before they started
+         */
+        public double getAverageWaitTime() {
+            long completed = this.completed.get();
+            return completed == 0 ? 0 : (double) waitTime.get() / completed;
+        }
+
+        public double getAverageRunTime() {
+            long completed = this.completed.get();
+            return completed == 0 ? 0 : (double) runTime.get() / completed;
+        }
+
+        public long getMaxWaitTime() {
+            return maxWaitTime;
+        }
     }
 }
@@ -0,0 +1,323 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.network;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.Cancellable;
+import meteordevelopment.meteorclient.events.packets.PacketEvent;
+import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.orbit.listeners.ConsumerListener;
+import meteordevelopment.orbit.listeners.IListener;
+import net.minecraft.network.packet.Packet;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Dispatches packet events to listeners subscribed to a specific packet class. Listeners are also called for subclasses
+ * of their packet class.
+ * <p>
+ * Listeners with the same priority are grouped and every group is subscribed to the event bus with that priority, so
+ * listeners and {@link meteordevelopment.orbit.EventHandler} methods run in a single priority order and cancelling the
+ * event stops both. The event bus itself does not filter by packet class, every group is called for every packet of
+ * its event type. A group then looks up its listeners for the packet through an array indexed by the id of the packet
+ * class in {@link PacketUtils#REGISTRY}, so a packet costs one bus call and one array lookup per priority in use and
+ * only the handlers of listeners for its class run.
+ * <p>
+ * Handlers run on the thread the packet is processed on, which is not always the render thread.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class PacketDispatcher {
+    private static final Object2IntMap<Class<?>> IDS = new Object2IntOpenHashMap<>();
+    private static final Class<?>[] CLASSES;
+
+    private static final Table RECEIVE, SEND, SENT;
+
+    static {
+        IDS.defaultReturnValue(-1);
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<? extends Packet<?>> packetClass : PacketUtils.REGISTRY) {
+            IDS.put(packetClass, classes.size());
+            classes.add(packetClass);
+        }
+
+        CLASSES = classes.toArray(new Class<?>[0]);
+
+        RECEIVE = new Table(PacketEvent.Receive.class, event -> ((PacketEvent.Receive) event).packet);
+        SEND = new Table(PacketEvent.Send.class, event -> ((PacketEvent.Send) event).packet);
+        SENT = new Table(PacketEvent.Sent.class, event -> ((PacketEvent.Sent) event).packet);
+    }
+
+    // Ids
+
+    /**
+     * @return the index of the packet class in {@link PacketUtils#REGISTRY} or -1 if it is not registered
+     */
+    public static int getId(Class<?> packetClass) {
+        return IDS.getInt(packetClass);
+    }
+
+    public static int getPacketCount() {
+        return CLASSES.length;
+    }
+
+    /**
+     * Compiles a set of packet classes to a bitset of their ids, see {@link #getId(Class)}.
+     */
+    public static BitSet getIds(Collection<Class<? extends Packet<?>>> packetClasses) {
+        BitSet ids = new BitSet(CLASSES.length);
+
+        for (Class<? extends Packet<?>> packetClass : packetClasses) {
+            int id = getId(packetClass);
+            if (id != -1) ids.set(id);
+        }
+
+        return ids;
+    }
+
+    // Subscribing
+
+    public static <P extends Packet<?>> Listener<PacketEvent.Receive, P> onReceive(Module module, Class<P> packetClass, int priority, Handler<PacketEvent.Receive, P> handler) {
+        return RECEIVE.add(new Listener<>(module, packetClass, priority, handler));
+    }
+
+    public static <P extends Packet<?>> Listener<PacketEvent.Send, P> onSend(Module module, Class<P> packetClass, int priority, Handler<PacketEvent.Send, P> handler) {
+        return SEND.add(new Listener<>(module, packetClass, priority, handler));
+    }
+
+    public static <P extends Packet<?>> Listener<PacketEvent.Sent, P> onSent(Module module, Class<P> packetClass, int priority, Handler<PacketEvent.Sent, P> handler) {
+        return SENT.add(new Listener<>(module, packetClass, priority, handler));
+    }
+
+    public static void unsubscribe(Listener<?, ?> listener) {
+        RECEIVE.remove(listener);
+        SEND.remove(listener);
+        SENT.remove(listener);
+    }
+
+    // Dispatching
+
+    /**
+     * Posts the packet to the event bus and the listeners of its class.
+     * @return true if the packet was cancelled
+     */
+    public static boolean receive(Packet<?> packet) {
+        return RECEIVE.dispatch(PacketEvent.Receive.get(packet), packet).isCancelled();
+    }
+
+    /**
+     * Posts the packet to the event bus and the listeners of its class.
+     * @return true if the packet was cancelled
+     */
+    public static boolean send(Packet<?> packet) {
+        return SEND.dispatch(PacketEvent.Send.get(packet), packet).isCancelled();
+    }
+
+    public static void sent(Packet<?> packet) {
+        SENT.dispatch(PacketEvent.Sent.get(packet), packet);
+    }
+
+    // Timings
+
+    /**
+     * @return the total time in nanoseconds spent handling received packets of this class
+     */
+    public static long getReceiveTime(Class<?> packetClass) {
+        return RECEIVE.getTime(packetClass);
+    }
+
+    public static long getReceiveCount(Class<?> packetClass) {
+        return RECEIVE.getCount(packetClass);
+    }
+
+    /**
+     * @return the total time in nanoseconds spent handling sent packets of this class
+     */
+    public static long getSendTime(Class<?> packetClass) {
+        return SEND.getTime(packetClass) + SENT.getTime(packetClass);
+    }
+
+    public static long getSendCount(Class<?> packetClass) {
+        return SEND.getCount(packetClass);
+    }
+
+    public static void resetTimings() {
+        RECEIVE.resetTimings();
+        SEND.resetTimings();
+        SENT.resetTimings();
+    }
+
+    @FunctionalInterface
+    public interface Handler<E, P extends Packet<?>> {
+        void handle(E event, P packet);
+    }
+
+    public static class Listener<E, P extends Packet<?>> {
+        private final Module module;
+        private final Class<P> packetClass;
+        private final int priority;
+        private final Handler<E, P> handler;
+
+        private Listener(Module module, Class<P> packetClass, int priority, Handler<E, P> handler) {
+            this.module = module;
+            this.packetClass = packetClass;
+            this.priority = priority;
+            this.handler = handler;
+        }
+
+        public Class<P> getPacketClass() {
+            return packetClass;
+        }
+    }
+
+    private static class Table {
+        private static final Listener[] EMPTY = new Listener[0];
+
+        private final Class<?> eventClass;
+        private final Function<Object, Packet<?>> packetGetter;
+
+        private final Int2ObjectMap<Group> groups = new Int2ObjectOpenHashMap<>();
+
+        private final AtomicLongArray times = new AtomicLongArray(CLASSES.length + 1);
+        private final AtomicLongArray counts = new AtomicLongArray(CLASSES.length + 1);
+
+        public Table(Class<?> eventClass, Function<Object, Packet<?>> packetGetter) {
+            this.eventClass = eventClass;
+            this.packetGetter = packetGetter;
+        }
+
+        public synchronized <T extends Listener> T add(T listener) {
+            Group group = groups.get(listener.priority);
+
+            if (group == null) {
+                group = new Group(listener.priority);
+                groups.put(listener.priority, group);
+                MeteorClient.EVENT_BUS.subscribe(group.busListener);
+            }
+
+            group.add(listener);
+            return listener;
+        }
+
+        public synchronized void remove(Listener listener) {
+            Group group = groups.get(listener.priority);
+            if (group == null || !group.remove(listener)) return;
+
+            if (group.isEmpty()) {
+                MeteorClient.EVENT_BUS.unsubscribe(group.busListener);
+                groups.remove(listener.priority);
+            }
+        }
+
+        private static Listener[] append(Listener[] array, Listener listener) {
+            Listener[] newArray = Arrays.copyOf(array, array.length + 1);
+            newArray[array.length] = listener;
+            return newArray;
+        }
+
+        public <E> E dispatch(E event, Packet<?> packet) {
+            long start = System.nanoTime();
+
+            int id = getId(packet.getClass());
+            int slot = id == -1 ? CLASSES.length : id;
+
+            // Only the cancellable overload stops at cancelled events
+            if (event instanceof Cancellable cancellable) MeteorClient.EVENT_BUS.post(cancellable);
+            else MeteorClient.EVENT_BUS.post(event);
+
+            times.addAndGet(slot, System.nanoTime() - start);
+            counts.incrementAndGet(slot);
+
+            return event;
+        }
+
+        private class Group {
+            private final IListener busListener;
+
+            // Copy on write, listeners[id] holds the listeners of the packet class and listeners[CLASSES.length] holds all
+            // listeners of the group
+            private volatile Listener[][] listeners;
+
+            public Group(int priority) {
+                busListener = new ConsumerListener<>(eventClass, priority, this::call);
+
+                listeners = new Listener[CLASSES.length + 1][];
+                Arrays.fill(listeners, EMPTY);
+            }
+
+            public void add(Listener listener) {
+                Listener[][] listeners = this.listeners.clone();
+
+                for (int i = 0; i < CLASSES.length; i++) {
+                    if (listener.packetClass.isAssignableFrom(CLASSES[i])) listeners[i] = append(listeners[i], listener);
+                }
+                listeners[CLASSES.length] = append(listeners[CLASSES.length], listener);
+
+                this.listeners = listeners;
+            }
+
+            public boolean remove(Listener listener) {
+                Listener[][] listeners = this.listeners.clone();
+                boolean removed = false;
+
+                for (int i = 0; i < listeners.length; i++) {
+                    int index = Arrays.asList(listeners[i]).indexOf(listener);
+                    if (index == -1) continue;
+
+                    Listener[] newArray = new Listener[listeners[i].length - 1];
+                    System.arraycopy(listeners[i], 0, newArray, 0, index);
+                    System.arraycopy(listeners[i], index + 1, newArray, index, newArray.length - index);
+
+                    listeners[i] = newArray;
+                    removed = true;
+                }
+
+                if (removed) this.listeners = listeners;
+                return removed;
+            }
+
+            public boolean isEmpty() {
+                return listeners[CLASSES.length].length == 0;
+            }
+
+            private void call(Object event) {
+                Packet<?> packet = packetGetter.apply(event);
+                int id = getId(packet.getClass());
+
+                for (Listener listener : listeners[id == -1 ? CLASSES.length : id]) {
+                    if (id == -1 && !listener.packetClass.isInstance(packet)) continue;
+                    if (listener.module != null && !listener.module.isActive()) continue;
+
+                    listener.handler.handle(event, packet);
+                    if (event instanceof Cancellable cancellable && cancellable.isCancelled()) break;
+                }
+            }
+        }
+
+        public long getTime(Class<?> packetClass) {
+            int id = getId(packetClass);
+            return times.get(id == -1 ? CLASSES.length : id);
+        }
+
+        public long getCount(Class<?> packetClass) {
+            int id = getId(packetClass);
+            return counts.get(id == -1 ? CLASSES.length : id);
+        }
+
+        public void resetTimings() {
+            for (int i = 0; i < times.length(); i++) {
+                times.set(i, 0);
+                counts.set(i, 0);
+            }
+        }
+    }
+}
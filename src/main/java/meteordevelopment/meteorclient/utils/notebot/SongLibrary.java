@@ -0,0 +1,244 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.notebot;
+
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+import meteordevelopment.meteorclient.utils.notebot.decoder.SongDecoders;
+import meteordevelopment.meteorclient.utils.notebot.song.Song;
+import net.minecraft.block.enums.Instrument;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Index of the songs in the notebot folder with their title, author, length and the instruments they need. The index
+ * is saved to disk and refreshed in the background, only songs which changed since the last refresh are decoded again.
+ * Refreshes build a new list and publish it at once, readers never wait for a refresh. Cached songs of entries which
+ * were removed or changed are deleted after every refresh, songs decoded from outside the library keep their cache.
+ */
+public class SongLibrary {
+    public static final File FOLDER = new File(MeteorClient.FOLDER, "notebot");
+    private static final File FILE = new File(SongDecoders.CACHE_FOLDER, "library");
+    private static final int VERSION = 2;
+
+    private static volatile List<Entry> entries;
+    private static volatile boolean refreshing;
+
+    // Callbacks of the running refresh, guarded by itself
+    private static final List<Runnable> callbacks = new ArrayList<>();
+
+    /**
+     * @param cacheName name of the decoded song in {@link SongDecoders#CACHE_FOLDER}
+     * @param instruments bit set of the {@link Instrument} ordinals used by the song before it is adapted to the
+     *                    notebot settings
+     */
+    public record Entry(File file, long size, long lastModified, String cacheName, String title, String author, int lastTick, int requirements, int instruments) {
+        public boolean matches(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+
+        public String getName() {
+            return FilenameUtils.getBaseName(file.getName());
+        }
+
+        public boolean usesInstrument(Instrument instrument) {
+            return (instruments & (1 << instrument.ordinal())) != 0;
+        }
+    }
+
+    /**
+     * @return the songs of the last refresh, the saved index if the folder was not refreshed yet or an empty list while
+     *         the saved index is being loaded
+     */
+    public static List<Entry> getEntries() {
+        List<Entry> entries = SongLibrary.entries;
+
+        if (entries == null) {
+            if (!refreshing) refresh(null);
+            return Collections.emptyList();
+        }
+
+        return entries;
+    }
+
+    public static boolean isRefreshing() {
+        return refreshing;
+    }
+
+    /**
+     * Rescans the notebot folder in the background, if a refresh is already running the callback runs once it finishes.
+     * @param callback run on the render thread once the refresh has finished, can be null
+     */
+    public static void refresh(Runnable callback) {
+        synchronized (callbacks) {
+            if (callback != null) callbacks.add(callback);
+            if (refreshing) return;
+
+            refreshing = true;
+        }
+
+        MeteorExecutor.execute(() -> {
+            List<Runnable> finished;
+
+            try {
+                scan();
+            } finally {
+                synchronized (callbacks) {
+                    finished = new ArrayList<>(callbacks);
+                    callbacks.clear();
+
+                    refreshing = false;
+                }
+            }
+
+            for (Runnable runnable : finished) mc.execute(runnable);
+        });
+    }
+
+    private static void scan() {
+        // Publish the saved index first so it can be used while the folder is scanned
+        if (entries == null) entries = Collections.unmodifiableList(new ArrayList<>(load().values()));
+
+        List<Entry> previousEntries = entries;
+
+        Map<String, Entry> previous = new HashMap<>();
+        for (Entry entry : previousEntries) previous.put(entry.file().getPath(), entry);
+
+        File[] files = FOLDER.listFiles();
+        if (files == null) files = new File[0];
+        Arrays.sort(files);
+
+        List<Entry> scanned = new ArrayList<>(files.length);
+        boolean changed = false;
+
+        for (File file : files) {
+            if (!file.isFile() || !SongDecoders.hasDecoder(file)) continue;
+
+            Entry entry = previous.get(file.getPath());
+
+            if (entry == null || !entry.matches(file)) {
+                entry = index(file);
+                changed = true;
+            }
+
+            if (entry != null) scanned.add(entry);
+        }
+
+        if (scanned.size() != previous.size()) changed = true;
+
+        if (changed) {
+            entries = Collections.unmodifiableList(scanned);
+            save(scanned);
+        }
+
+        prune(previousEntries, scanned);
+    }
+
+    /**
+     * Deletes the cached songs of previous entries which don't belong to any song in the library anymore. Only cache
+     * files created for the library are touched.
+     */
+    private static void prune(List<Entry> previous, List<Entry> entries) {
+        Set<String> used = new HashSet<>();
+        for (Entry entry : entries) used.add(entry.cacheName());
+
+        for (Entry entry : previous) {
+            String name = entry.cacheName();
+            if (!used.add(name)) continue;
+
+            File file = new File(SongDecoders.CACHE_FOLDER, name);
+            if (file.exists() && !file.delete()) MeteorClient.LOG.warn("Failed to delete cached song {}", name);
+        }
+    }
+
+    private static Entry index(File file) {
+        long size = file.length(), lastModified = file.lastModified();
+
+        try {
+            String cacheName = SongDecoders.getCacheName(file);
+            Song song = SongDecoders.decode(file, cacheName);
+
+            int[] lastTick = { Integer.MIN_VALUE };
+            int[] instruments = { 0 };
+            Set<Long> requirements = new HashSet<>();
+
+            song.forEachNote((tick, note) -> {
+                lastTick[0] = Math.max(lastTick[0], tick);
+
+                int instrument = note.getInstrument() != null ? note.getInstrument().ordinal() : -1;
+                if (instrument != -1) instruments[0] |= 1 << instrument;
+
+                requirements.add(((long) instrument << 32) | (note.getNoteLevel() & 0xFFFFFFFFL));
+            });
+
+            if (song.getNoteCount() == 0) return null;
+            return new Entry(file, size, lastModified, cacheName, song.getTitle(), song.getAuthor(), lastTick[0], requirements.size(), instruments[0]);
+        } catch (Exception e) {
+            MeteorClient.LOG.error("Failed to index song {}", file.getName(), e);
+            return null;
+        }
+    }
+
+    // Saving
+
+    private static Map<String, Entry> load() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!FILE.exists()) return entries;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(FILE), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.equals("version " + VERSION)) return entries;
+
+            while ((line = reader.readLine()) != null) {
+                // path \t size \t last modified \t last tick \t requirements \t instruments \t cache name \t title \t author
+                String[] values = line.split("\t", 9);
+                if (values.length != 9) continue;
+
+                File file = new File(values[0]);
+                entries.put(file.getPath(), new Entry(file, Long.parseLong(values[1]), Long.parseLong(values[2]), values[6], values[7], values[8], Integer.parseInt(values[3]), Integer.parseInt(values[4]), Integer.parseInt(values[5])));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            MeteorClient.LOG.error("Failed to read notebot song library", e);
+            entries.clear();
+        }
+
+        return entries;
+    }
+
+    private static void save(Collection<Entry> entries) {
+        File tempFile = new File(SongDecoders.CACHE_FOLDER, "library.tmp");
+        SongDecoders.CACHE_FOLDER.mkdirs();
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            writer.write("version " + VERSION + "\n");
+
+            for (Entry entry : entries) {
+                writer.write(entry.file().getPath() + "\t" + entry.size() + "\t" + entry.lastModified() + "\t" + entry.lastTick() + "\t" + entry.requirements() + "\t" + entry.instruments());
+                writer.write("\t" + entry.cacheName() + "\t" + clean(entry.title()) + "\t" + clean(entry.author()) + "\n");
+            }
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to write notebot song library", e);
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to write notebot song library", e);
+        }
+    }
+
+    private static String clean(String text) {
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
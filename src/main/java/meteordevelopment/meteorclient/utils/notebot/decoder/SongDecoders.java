@@ -5,6 +5,7 @@
 
 package meteordevelopment.meteorclient.utils.notebot.decoder;
 
+import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.systems.modules.Modules;
 import meteordevelopment.meteorclient.systems.modules.misc.Notebot;
 import meteordevelopment.meteorclient.utils.notebot.NotebotUtils;
@@ -14,12 +15,20 @@ import net.minecraft.block.enums.Instrument;
 import org.apache.commons.io.FilenameUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
+import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 
 public class SongDecoders {
+    public static final File CACHE_FOLDER = new File(MeteorClient.FOLDER, "notebot-cache");
+    private static final int CACHE_VERSION = 1;
+
     private static final Map<String, SongDecoder> decoders = new HashMap<>(); // file extension -> song decoder
 
     static {
@@ -52,9 +61,7 @@ public class SongDecoders {
      */
     @NotNull
     public static Song parse(File file) throws Exception {
-        if (!hasDecoder(file)) throw new IllegalStateException("Decoder for this file does not exists!");
-        SongDecoder decoder = getDecoder(file);
-        Song song = decoder.parse(file);
+        Song song = decode(file);
 
         fixSong(song);
 
@@ -63,6 +70,109 @@ public class SongDecoders {
         return song;
     }
 
+    /**
+     * Decodes the file without adapting it to the settings of the Notebot module. Decoded songs are cached by the hash
+     * of the file so they only have to be decoded again when the file changes.
+     *
+     * @param file A song file
+     * @return A {@link Song} object which has not finished loading yet
+     */
+    @NotNull
+    public static Song decode(File file) throws Exception {
+        if (!hasDecoder(file)) throw new IllegalStateException("Decoder for this file does not exists!");
+
+        return decode(file, getCacheName(file));
+    }
+
+    /**
+     * @param cacheName the result of {@link #getCacheName(File)} for callers which already hashed the file
+     */
+    public static Song decode(File file, String cacheName) throws Exception {
+        if (!hasDecoder(file)) throw new IllegalStateException("Decoder for this file does not exists!");
+
+        File cacheFile = new File(CACHE_FOLDER, cacheName);
+
+        Song song = readCache(cacheFile);
+        if (song != null) return song;
+
+        song = getDecoder(file).parse(file);
+        writeCache(cacheFile, song);
+
+        return song;
+    }
+
+    // Cache
+
+    /**
+     * @return the name of the file in {@link #CACHE_FOLDER} holding the decoded song, based on the hash of the file
+     */
+    public static String getCacheName(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(Files.readAllBytes(file.toPath()));
+
+        return HexFormat.of().formatHex(digest.digest()) + "." + FilenameUtils.getExtension(file.getName());
+    }
+
+    private static Song readCache(File file) {
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Instrument[] instruments = Instrument.values();
+            if (in.readInt() != CACHE_VERSION || in.readInt() != instruments.length) return null;
+
+            Song song = new Song(in.readUTF(), in.readUTF());
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                int tick = in.readInt();
+                int instrument = in.readByte();
+                int noteLevel = in.readInt();
+
+                song.addNote(tick, new Note(instrument == -1 ? null : instruments[instrument], noteLevel));
+            }
+
+            return song;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            MeteorClient.LOG.error("Failed to read cached song {}", file.getName(), e);
+            return null;
+        }
+    }
+
+    private static void writeCache(File file, Song song) {
+        // Songs can be decoded on multiple threads at once
+        File tempFile = new File(CACHE_FOLDER, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        CACHE_FOLDER.mkdirs();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(CACHE_VERSION);
+            out.writeInt(Instrument.values().length);
+
+            out.writeUTF(song.getTitle());
+            out.writeUTF(song.getAuthor());
+            out.writeInt(song.getNoteCount());
+
+            song.forEachNote((tick, note) -> {
+                try {
+                    out.writeInt(tick);
+                    out.writeByte(note.getInstrument() != null ? note.getInstrument().ordinal() : -1);
+                    out.writeInt(note.getNoteLevel());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            MeteorClient.LOG.error("Failed to cache song {}", file.getName(), e);
+            tempFile.delete();
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to cache song {}", file.getName(), e);
+        }
+    }
+
     /**
      * This method adapts {@link Song} to settings in Notebot module
      *
@@ -71,20 +181,14 @@ public class SongDecoders {
     private static void fixSong(Song song) {
         Notebot notebot = Modules.get().get(Notebot.class);
 
-        var iterator = song.getNotesMap().entries().iterator();
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            int tick = entry.getKey();
-            Note note = entry.getValue();
-
+        song.removeNotes((tick, note) -> {
             int n = note.getNoteLevel();
             if (n < 0 || n > 24) {
                 if (notebot.roundOutOfRange.get()) {
                     note.setNoteLevel(n < 0 ? 0 : 24);
                 } else {
                     notebot.warning("Note at tick %d out of range.", tick);
-                    iterator.remove();
-                    continue;
+                    return true;
                 }
             }
 
@@ -96,6 +200,8 @@ public class SongDecoders {
             } else {
                 note.setInstrument(null);
             }
-        }
+
+            return false;
+        });
     }
 }
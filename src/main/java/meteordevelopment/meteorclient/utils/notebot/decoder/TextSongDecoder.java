@@ -5,8 +5,8 @@
 
 package meteordevelopment.meteorclient.utils.notebot.decoder;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import meteordevelopment.meteorclient.utils.notebot.song.Note;
 import meteordevelopment.meteorclient.utils.notebot.song.Song;
 import net.minecraft.block.enums.Instrument;
@@ -14,6 +14,7 @@ import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 public class TextSongDecoder extends SongDecoder {
@@ -22,7 +23,8 @@ public class TextSongDecoder extends SongDecoder {
     public Song parse(File file) throws Exception {
         List<String> data = Files.readAllLines(file.toPath());
 
-        Multimap<Integer, Note> notesMap = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+        IntList ticks = new IntArrayList();
+        List<Note> notes = new ArrayList<>();
         String title = FilenameUtils.getBaseName(file.getName());
         String author = "Unknown";
 
@@ -58,8 +60,14 @@ public class TextSongDecoder extends SongDecoder {
             }
 
             Note note = new Note(Instrument.values()[type], val);
-            notesMap.put(key, note);
+            ticks.add(key);
+            notes.add(note);
         }
-        return new Song(notesMap, title, author);
+
+        // The title and author can be anywhere in the file
+        Song song = new Song(title, author);
+        for (int i = 0; i < notes.size(); i++) song.addNote(ticks.getInt(i), notes.get(i));
+
+        return song;
     }
 }
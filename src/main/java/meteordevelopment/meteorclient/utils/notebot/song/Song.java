@@ -5,40 +5,122 @@
 
 package meteordevelopment.meteorclient.utils.notebot.song;
 
-import com.google.common.collect.Multimap;
-
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 public class Song {
-    private final Multimap<Integer, Note> notesMap;
-    private int lastTick;
     private final String title;
     private final String author;
 
+    // Notes in the order they were added, sorted by tick once the song has finished loading
+    private int[] ticks = new int[64];
+    private Note[] notes = new Note[64];
+    private int size;
+
+    // The notes of a tick are stored from tickStarts[tick] until tickStarts[tick + 1]
+    private int[] tickStarts;
+    private List<Note> noteList;
+    private int lastTick;
+
     private final Set<Note> requirements = new HashSet<>();
 
     private boolean finishedLoading = false;
 
-    public Song(Multimap<Integer, Note> notesMap,
-                String title, String author) {
-        this.notesMap = notesMap;
+    public Song(String title, String author) {
         this.title = title;
         this.author = author;
     }
 
+    public void addNote(int tick, Note note) {
+        if (finishedLoading) throw new IllegalStateException("Song has already finished loading!");
+
+        if (size >= notes.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            notes = Arrays.copyOf(notes, size * 2);
+        }
+
+        ticks[size] = tick;
+        notes[size] = note;
+        size++;
+    }
+
+    public void removeNotes(NotePredicate predicate) {
+        if (finishedLoading) throw new IllegalStateException("Song has already finished loading!");
+
+        int newSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (predicate.test(ticks[i], notes[i])) continue;
+
+            ticks[newSize] = ticks[i];
+            notes[newSize] = notes[i];
+            newSize++;
+        }
+
+        Arrays.fill(notes, newSize, size, null);
+        size = newSize;
+    }
+
+    public void forEachNote(NoteConsumer consumer) {
+        for (int i = 0; i < size; i++) consumer.accept(ticks[i], notes[i]);
+    }
+
+    public int getNoteCount() {
+        return size;
+    }
+
     public void finishLoading() {
         if (finishedLoading) throw new IllegalStateException("Song has already finished loading!");
+        if (size == 0) throw new IllegalStateException("Song does not contain any notes!");
+
+        lastTick = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            lastTick = Math.max(lastTick, ticks[i]);
+            requirements.add(notes[i]);
+        }
+
+        // Counting sort by tick which keeps the order of notes on the same tick, notes before tick 0 are never played
+        tickStarts = new int[Math.max(lastTick, -1) + 2];
+        for (int i = 0; i < size; i++) {
+            if (ticks[i] >= 0) tickStarts[ticks[i] + 1]++;
+        }
+        for (int tick = 1; tick < tickStarts.length; tick++) tickStarts[tick] += tickStarts[tick - 1];
+
+        int count = tickStarts[tickStarts.length - 1];
+        int[] next = Arrays.copyOf(tickStarts, tickStarts.length);
+
+        int[] sortedTicks = new int[count];
+        Note[] sortedNotes = new Note[count];
+
+        for (int i = 0; i < size; i++) {
+            int tick = ticks[i];
+            if (tick < 0) continue;
+
+            int j = next[tick]++;
+            sortedTicks[j] = tick;
+            sortedNotes[j] = notes[i];
+        }
 
-        this.lastTick = Collections.max(notesMap.keySet());
-        this.notesMap.values().stream().distinct().forEach(requirements::add);
+        ticks = sortedTicks;
+        notes = sortedNotes;
+        size = count;
+        noteList = Collections.unmodifiableList(Arrays.asList(notes));
 
         finishedLoading = true;
     }
 
-    public Multimap<Integer, Note> getNotesMap() {
-        return notesMap;
+    public boolean hasNotes(int tick) {
+        if (!finishedLoading) throw new IllegalStateException("Song is still loading!");
+        return tick >= 0 && tick <= lastTick && tickStarts[tick] != tickStarts[tick + 1];
+    }
+
+    /**
+     * @return the notes played at this tick in the order they were added
+     */
+    public List<Note> getNotes(int tick) {
+        if (!finishedLoading) throw new IllegalStateException("Song is still loading!");
+        if (tick < 0 || tick > lastTick) return Collections.emptyList();
+
+        return noteList.subList(tickStarts[tick], tickStarts[tick + 1]);
     }
 
     public Set<Note> getRequirements() {
@@ -58,4 +140,14 @@ public class Song {
     public String getAuthor() {
         return author;
     }
+
+    @FunctionalInterface
+    public interface NotePredicate {
+        boolean test(int tick, Note note);
+    }
+
+    @FunctionalInterface
+    public interface NoteConsumer {
+        void accept(int tick, Note note);
+    }
 }
@@ -7,6 +7,8 @@ package meteordevelopment.meteorclient.utils.player;
 
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.mixininterface.IExplosion;
 import meteordevelopment.meteorclient.mixininterface.IRaycastContext;
 import meteordevelopment.meteorclient.mixininterface.IVec3d;
@@ -14,6 +16,7 @@ import meteordevelopment.meteorclient.utils.PreInit;
 import meteordevelopment.meteorclient.utils.entity.EntityUtils;
 import meteordevelopment.meteorclient.utils.entity.fakeplayer.FakePlayerEntity;
 import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.enchantment.EnchantmentHelper;
@@ -35,14 +38,19 @@ import net.minecraft.world.GameMode;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.explosion.Explosion;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class DamageUtils {
-    private static final Vec3d vec3d = new Vec3d(0, 0, 0);
-    private static Explosion explosion;
-    private static RaycastContext raycastContext;
+    // Exposure results are cached for the current tick, the cache is safe to use from multiple threads
+    private static final Map<ExposureKey, Double> exposureCache = new ConcurrentHashMap<>();
+
+    // Created lazily for each thread using them, both are bound to the current world and entity again whenever they are set
+    private static final ThreadLocal<Explosion> explosion = ThreadLocal.withInitial(() -> new Explosion(mc.world, null, 0, 0, 0, 6, false, Explosion.DestructionType.DESTROY));
+    private static final ThreadLocal<RaycastContext> raycastContext = ThreadLocal.withInitial(() -> new RaycastContext(null, null, RaycastContext.ShapeType.COLLIDER, RaycastContext.FluidHandling.ANY, mc.player));
 
     @PreInit
     public static void init() {
@@ -51,8 +59,17 @@ public class DamageUtils {
 
     @EventHandler
     private static void onGameJoined(GameJoinedEvent event) {
-        explosion = new Explosion(mc.world, null, 0, 0, 0, 6, false, Explosion.DestructionType.DESTROY);
-        raycastContext = new RaycastContext(null, null, RaycastContext.ShapeType.COLLIDER, RaycastContext.FluidHandling.ANY, mc.player);
+        exposureCache.clear();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    private static void onTick(TickEvent.Pre event) {
+        exposureCache.clear();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    private static void onBlockUpdate(BlockUpdateEvent event) {
+        exposureCache.clear();
     }
 
     // Crystal damage
@@ -61,13 +78,13 @@ public class DamageUtils {
         if (player == null) return 0;
         if (EntityUtils.getGameMode(player) == GameMode.CREATIVE && !(player instanceof FakePlayerEntity)) return 0;
 
-        ((IVec3d) vec3d).set(player.getPos().x, player.getPos().y, player.getPos().z);
-        if (predictMovement) ((IVec3d) vec3d).set(vec3d.x + player.getVelocity().x, vec3d.y + player.getVelocity().y, vec3d.z + player.getVelocity().z);
+        Vec3d pos = player.getPos();
+        if (predictMovement) pos = pos.add(player.getVelocity());
 
-        double modDistance = Math.sqrt(vec3d.squaredDistanceTo(crystal));
+        double modDistance = Math.sqrt(pos.squaredDistanceTo(crystal));
         if (modDistance > 12) return 0;
 
-        double exposure = getExposure(crystal, player, predictMovement, raycastContext, obsidianPos, ignoreTerrain);
+        double exposure = getExposure(crystal, player, predictMovement, obsidianPos, ignoreTerrain);
         double impact = (1 - (modDistance / 12)) * exposure;
         double damage = ((impact * impact + impact) / 2 * 7 * (6 * 2) + 1);
 
@@ -75,8 +92,7 @@ public class DamageUtils {
         damage = DamageUtil.getDamageLeft((float) damage, (float) player.getArmor(), (float) player.getAttributeInstance(EntityAttributes.GENERIC_ARMOR_TOUGHNESS).getValue());
         damage = resistanceReduction(player, damage);
 
-        ((IExplosion) explosion).set(crystal, 6, false);
-        damage = blastProtReduction(player, damage, explosion);
+        damage = blastProtReduction(player, damage, getExplosion(crystal, 6, false));
 
         return damage < 0 ? 0 : damage;
     }
@@ -153,8 +169,7 @@ public class DamageUtils {
         damage = DamageUtil.getDamageLeft((float) damage, (float) player.getArmor(), (float) player.getAttributeInstance(EntityAttributes.GENERIC_ARMOR_TOUGHNESS).getValue());
 
         // Reduce by enchants
-        ((IExplosion) explosion).set(bed, 5, true);
-        damage = blastProtReduction(player, damage, explosion);
+        damage = blastProtReduction(player, damage, getExplosion(bed, 5, true));
 
         if (damage < 0) damage = 0;
         return damage;
@@ -188,6 +203,16 @@ public class DamageUtils {
         return damage < 0 ? 0 : damage;
     }
 
+    /**
+     * @return the explosion of the current thread moved to the position, {@link IExplosion#set(Vec3d, float, boolean)}
+     * also binds it to {@code mc.world} so it never refers to a world which was left
+     */
+    private static Explosion getExplosion(Vec3d pos, float power, boolean createFire) {
+        Explosion explosion = DamageUtils.explosion.get();
+        ((IExplosion) explosion).set(pos, power, createFire);
+        return explosion;
+    }
+
     private static double blastProtReduction(Entity player, double damage, Explosion explosion) {
         int protLevel = EnchantmentHelper.getProtectionAmount(player.getArmorItems(), mc.world.getDamageSources().explosion(explosion));
         if (protLevel > 20) protLevel = 20;
@@ -205,13 +230,29 @@ public class DamageUtils {
         return damage < 0 ? 0 : damage;
     }
 
-    private static double getExposure(Vec3d source, Entity entity, boolean predictMovement, RaycastContext raycastContext, BlockPos obsidianPos, boolean ignoreTerrain) {
+    private static double getExposure(Vec3d source, Entity entity, boolean predictMovement, BlockPos obsidianPos, boolean ignoreTerrain) {
         Box box = entity.getBoundingBox();
         if (predictMovement) {
             Vec3d v = entity.getVelocity();
             box = box.offset(v.x, v.y, v.z);
         }
 
+        // Callers usually pass mutable positions so the key has to hold its own copies
+        ExposureKey key = new ExposureKey(source.x, source.y, source.z, entity.getId(), box, obsidianPos == null ? null : obsidianPos.toImmutable(), ignoreTerrain);
+
+        Double exposure = exposureCache.get(key);
+        if (exposure == null) {
+            exposure = getExposure(source, entity, box, obsidianPos, ignoreTerrain);
+            exposureCache.put(key, exposure);
+        }
+
+        return exposure;
+    }
+
+    private static double getExposure(Vec3d source, Entity entity, Box box, BlockPos obsidianPos, boolean ignoreTerrain) {
+        RaycastContext raycastContext = DamageUtils.raycastContext.get();
+        Vec3d vec3d = new Vec3d(0, 0, 0);
+
         double d = 1 / ((box.maxX - box.minX) * 2 + 1);
         double e = 1 / ((box.maxY - box.minY) * 2 + 1);
         double f = 1 / ((box.maxZ - box.minZ) * 2 + 1);
@@ -271,4 +312,6 @@ public class DamageUtils {
             return BlockHitResult.createMissed(raycastContext.getEnd(), Direction.getFacing(vec3d.x, vec3d.y, vec3d.z), BlockPos.ofFloored(raycastContext.getEnd()));
         });
     }
+
+    private record ExposureKey(double x, double y, double z, int entity, Box box, BlockPos obsidianPos, boolean ignoreTerrain) {}
 }
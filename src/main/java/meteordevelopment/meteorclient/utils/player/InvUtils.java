@@ -9,6 +9,7 @@ import meteordevelopment.meteorclient.mixininterface.IClientPlayerInteractionMan
 import net.minecraft.block.BlockState;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.slot.SlotActionType;
 
@@ -73,16 +74,19 @@ public class InvUtils {
     // Finding items
 
     public static FindItemResult findEmpty() {
-        return find(ItemStack::isEmpty);
+        return find(Items.AIR);
     }
 
     public static FindItemResult findInHotbar(Item... items) {
-        return findInHotbar(itemStack -> {
-            for (Item item : items) {
-                if (itemStack.getItem() == item) return true;
-            }
-            return false;
-        });
+        if (testInOffHand(items)) {
+            return new FindItemResult(SlotUtils.OFFHAND, mc.player.getOffHandStack().getCount());
+        }
+
+        if (testInMainHand(items)) {
+            return new FindItemResult(mc.player.getInventory().selectedSlot, mc.player.getMainHandStack().getCount());
+        }
+
+        return InventoryIndex.find(items, 0, 8);
     }
 
     public static FindItemResult findInHotbar(Predicate<ItemStack> isGood) {
@@ -98,12 +102,8 @@ public class InvUtils {
     }
 
     public static FindItemResult find(Item... items) {
-        return find(itemStack -> {
-            for (Item item : items) {
-                if (itemStack.getItem() == item) return true;
-            }
-            return false;
-        });
+        if (mc.player == null) return new FindItemResult(0, 0);
+        return InventoryIndex.find(items, 0, mc.player.getInventory().size());
     }
 
     public static FindItemResult find(Predicate<ItemStack> isGood) {
@@ -129,21 +129,7 @@ public class InvUtils {
     }
 
     public static FindItemResult findFastestTool(BlockState state) {
-        float bestScore = 1;
-        int slot = -1;
-
-        for (int i = 0; i < 9; i++) {
-            ItemStack stack = mc.player.getInventory().getStack(i);
-            if (!stack.isSuitableFor(state)) continue;
-
-            float score = stack.getMiningSpeedMultiplier(state);
-            if (score > bestScore) {
-                bestScore = score;
-                slot = i;
-            }
-        }
-
-        return new FindItemResult(slot, 1);
+        return new FindItemResult(InventoryIndex.getFastestTool(state), 1);
     }
 
     // Interactions
@@ -0,0 +1,230 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.player;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.packets.ContainerSlotUpdateEvent;
+import meteordevelopment.meteorclient.events.packets.InventoryEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.util.Arrays;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Index of the slots of the player's inventory by item, used by the item based queries of {@link InvUtils}. Every item
+ * is mapped to a bit mask of the slots holding it, empty slots are stored under {@link net.minecraft.item.Items#AIR}.
+ * The index is rebuilt lazily after slot updates from the server, after every slot click and at the start of every tick
+ * for changes made in other ways. Masks are checked against the inventory when they are read so a stale index never
+ * returns a slot which no longer holds the item. The fastest tools are cached by block state until the hotbar changes.
+ * <p>
+ * The index is only used on the render thread, queries from other threads read the inventory directly.
+ */
+public class InventoryIndex {
+    /** Main inventory, armor and offhand, one bit per slot. */
+    private static final int SLOTS = 41;
+
+    private static final Reference2LongMap<Item> slots = new Reference2LongOpenHashMap<>();
+    private static final Reference2IntMap<BlockState> fastestTools = new Reference2IntOpenHashMap<>();
+    private static final Item[] hotbar = new Item[9];
+
+    private static boolean dirty = true;
+
+    static {
+        fastestTools.defaultReturnValue(-2);
+    }
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(InventoryIndex.class);
+    }
+
+    // Events
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onTick(TickEvent.Pre event) {
+        dirty = true;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onContainerSlotUpdate(ContainerSlotUpdateEvent event) {
+        dirty = true;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 100)
+    private static void onInventory(InventoryEvent event) {
+        dirty = true;
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        slots.clear();
+        fastestTools.clear();
+        Arrays.fill(hotbar, null);
+        dirty = true;
+    }
+
+    /**
+     * Marks the index as outdated, call after changing the inventory on the client.
+     */
+    public static void markDirty() {
+        dirty = true;
+    }
+
+    // Queries
+
+    /**
+     * @return bit mask of the inventory slots holding the item
+     */
+    public static long getSlots(Item item) {
+        if (mc.player == null) return 0;
+        if (!mc.isOnThread()) return scan(item);
+
+        update();
+
+        long mask = slots.getLong(item);
+        if (!matches(item, mask)) {
+            dirty = true;
+            update();
+            mask = slots.getLong(item);
+        }
+
+        return mask;
+    }
+
+    /**
+     * @return the first slot between start and end, both inclusive, holding one of the items and the total count of the
+     *         items in that range
+     */
+    public static FindItemResult find(Item[] items, int start, int end) {
+        if (mc.player == null) return new FindItemResult(0, 0);
+
+        long mask = 0;
+        for (Item item : items) mask |= getSlots(item);
+        mask &= range(start, end);
+
+        if (mask == 0) return new FindItemResult(-1, 0);
+
+        PlayerInventory inventory = mc.player.getInventory();
+        int count = 0;
+
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            count += inventory.getStack(Long.numberOfTrailingZeros(bits)).getCount();
+        }
+
+        return new FindItemResult(Long.numberOfTrailingZeros(mask), count);
+    }
+
+    /**
+     * @return the amount of slots between start and end, both inclusive, holding the item
+     */
+    public static int countSlots(Item item, int start, int end) {
+        return Long.bitCount(getSlots(item) & range(start, end));
+    }
+
+    /**
+     * @return the hotbar slot with the best mining speed for the block state, or -1 if no hotbar item is suitable
+     */
+    public static int getFastestTool(BlockState state) {
+        if (mc.player == null) return -1;
+        if (!mc.isOnThread()) return findFastestTool(state);
+
+        update();
+
+        int slot = fastestTools.getInt(state);
+
+        if (slot == -2) {
+            slot = findFastestTool(state);
+            fastestTools.put(state, slot);
+        }
+
+        return slot;
+    }
+
+    // Building
+
+    private static void update() {
+        if (!dirty || mc.player == null) return;
+        dirty = false;
+
+        slots.clear();
+
+        PlayerInventory inventory = mc.player.getInventory();
+        boolean hotbarChanged = false;
+
+        for (int i = 0; i < SLOTS; i++) {
+            Item item = inventory.getStack(i).getItem();
+            slots.put(item, slots.getLong(item) | (1L << i));
+
+            if (i < hotbar.length && hotbar[i] != item) {
+                hotbar[i] = item;
+                hotbarChanged = true;
+            }
+        }
+
+        // Mining speed only depends on the items so the fastest tools stay valid while the hotbar holds the same ones
+        if (hotbarChanged) fastestTools.clear();
+    }
+
+    private static long scan(Item item) {
+        PlayerInventory inventory = mc.player.getInventory();
+        long mask = 0;
+
+        for (int i = 0; i < SLOTS; i++) {
+            if (inventory.getStack(i).isOf(item)) mask |= 1L << i;
+        }
+
+        return mask;
+    }
+
+    private static boolean matches(Item item, long mask) {
+        PlayerInventory inventory = mc.player.getInventory();
+
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            if (!inventory.getStack(Long.numberOfTrailingZeros(bits)).isOf(item)) return false;
+        }
+
+        return true;
+    }
+
+    private static int findFastestTool(BlockState state) {
+        float bestScore = 1;
+        int slot = -1;
+
+        for (int i = 0; i < 9; i++) {
+            ItemStack stack = mc.player.getInventory().getStack(i);
+            if (!stack.isSuitableFor(state)) continue;
+
+            float score = stack.getMiningSpeedMultiplier(state);
+            if (score > bestScore) {
+                bestScore = score;
+                slot = i;
+            }
+        }
+
+        return slot;
+    }
+
+    private static long range(int start, int end) {
+        start = Math.max(start, 0);
+        end = Math.min(end, SLOTS - 1);
+        if (start > end) return 0;
+
+        return (-1L >>> (63 - end)) & (-1L << start);
+    }
+}
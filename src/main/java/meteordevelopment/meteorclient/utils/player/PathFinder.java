@@ -5,8 +5,12 @@
 
 package meteordevelopment.meteorclient.utils.player;
 
+import it.unimi.dsi.fastutil.longs.LongList;
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.entity.player.PlayerMoveEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import meteordevelopment.orbit.EventHandler;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
@@ -20,14 +24,47 @@ import java.util.ArrayList;
 
 import static meteordevelopment.meteorclient.MeteorClient.mc;
 
+/**
+ * Walks to an entity along paths found by a {@link PathPlanner}. Paths are planned on {@link MeteorExecutor} over a
+ * snapshot of the world with a limited amount of nodes per tick and planned again when the target moves away from the
+ * end of the path or when a block along the path changes.
+ * <p>
+ * Replanning starts a new search instead of repairing the previous one incrementally. Every search reads its own copy
+ * of the world on another thread, so the results of the previous search are not valid for the new snapshot, and
+ * searches are limited to {@link #MAX_NODES} nodes so planning again takes at most a few ticks.
+ */
 public class PathFinder {
     private final static int PATH_AHEAD = 3;
     private final static int QUAD_1 = 1, QUAD_2 = 2, SOUTH = 0, NORTH = 180;
+
+    private final static int NODES_PER_TICK = 2000, MAX_NODES = 20000;
+    private final static int SNAPSHOT_MARGIN = 16, MAX_DISTANCE = 128;
+    private final static int REPLAN_DISTANCE = 3, REPLAN_DELAY = 10;
+
     private final ArrayList<PathBlock> path = new ArrayList<>(PATH_AHEAD);
     private Entity target;
     private PathBlock currentPathBlock;
 
+    private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
+    private PathPlanner planner;
+    private PathPlanner.Snapshot snapshot;
+    private volatile boolean planning;
+    private boolean invalidated;
+    private int ticksSincePlan;
+
+    private LongList plannedPath;
+    private int pathIndex;
+    private long plannedGoal;
+
     public PathBlock getNextPathBlock() {
+        if (plannedPath != null) {
+            // Skip the nodes the player has already reached
+            while (pathIndex < plannedPath.size() - 1 && isReached(plannedPath.getLong(pathIndex))) pathIndex++;
+
+            if (pathIndex < plannedPath.size()) return new PathBlock(BlockPos.fromLong(plannedPath.getLong(pathIndex)));
+        }
+
         PathBlock nextBlock = new PathBlock(BlockPos.ofFloored(getNextStraightPos()));
         if (isSolidFloor(nextBlock.blockPos) && isAirAbove(nextBlock.blockPos)) {
             return nextBlock;
@@ -41,11 +78,21 @@ public class PathFinder {
         return nextBlock;
     }
 
+    private boolean isReached(long pos) {
+        double dx = BlockPos.unpackLongX(pos) + 0.5 - mc.player.getX();
+        double dz = BlockPos.unpackLongZ(pos) + 0.5 - mc.player.getZ();
+        double dy = BlockPos.unpackLongY(pos) - mc.player.getY();
+
+        return dx * dx + dz * dz < 0.35 * 0.35 && Math.abs(dy) < 1;
+    }
+
     public int getDrop(BlockPos pos) {
         int drop = 0;
-        while (!isSolidFloor(pos) && drop < 3) {
+        blockPos.set(pos);
+
+        while (!isSolidFloor(blockPos) && drop < 3) {
             drop++;
-            pos = new BlockPos(pos.getX(), pos.getY() - 1, pos.getZ());
+            blockPos.move(0, -1, 0);
         }
         return drop;
     }
@@ -128,23 +175,122 @@ public class PathFinder {
 
     public void lookAtDestination(PathBlock pathBlock) {
         if (mc.player != null) {
-            mc.player.lookAt(EntityAnchorArgumentType.EntityAnchor.EYES, new Vec3d(pathBlock.blockPos.getX(), pathBlock.blockPos.getY() + mc.player.getStandingEyeHeight(), pathBlock.blockPos.getZ()));
+            mc.player.lookAt(EntityAnchorArgumentType.EntityAnchor.EYES, new Vec3d(pathBlock.blockPos.getX() + 0.5, pathBlock.blockPos.getY() + mc.player.getStandingEyeHeight(), pathBlock.blockPos.getZ() + 0.5));
         }
     }
 
+    // Planning
+
+    @EventHandler
+    private void onTick(TickEvent.Pre event) {
+        if (target == null || mc.player == null || mc.world == null) return;
+        ticksSincePlan++;
+
+        // Wait for the current step to finish before touching the planner
+        if (planning) return;
+
+        if (planner != null) {
+            if (planner.isFinished()) {
+                MeteorClient.LOG.debug("Planned path with {} nodes in {} ms ({} nodes per second)", planner.getExpandedNodes(), planner.getTime() / 1_000_000.0, (int) planner.getNodesPerSecond());
+
+                plannedPath = planner.getPath();
+                plannedGoal = planner.getGoal();
+                pathIndex = 0;
+                currentPathBlock = null;
+                planner = null;
+                snapshot = null;
+            }
+            else {
+                PathPlanner planner = this.planner;
+                planning = true;
+
+                MeteorExecutor.executeCpu(() -> {
+                    try {
+                        planner.step(NODES_PER_TICK);
+                    } finally {
+                        planning = false;
+                    }
+                });
+
+                return;
+            }
+        }
+
+        if (shouldReplan() && ticksSincePlan >= REPLAN_DELAY) plan();
+    }
+
+    private boolean shouldReplan() {
+        if (plannedPath == null || invalidated) return true;
+        if (PlayerUtils.isWithin(target, 3)) return false;
+
+        BlockPos goal = BlockPos.fromLong(plannedGoal);
+        if (!target.getBlockPos().isWithinDistance(goal, REPLAN_DISTANCE)) return true;
+
+        // The path ended before reaching the target
+        return pathIndex >= plannedPath.size() - 1 && (plannedPath.isEmpty() || isReached(plannedPath.getLong(plannedPath.size() - 1)));
+    }
+
+    private void plan() {
+        BlockPos start = mc.player.getBlockPos();
+        BlockPos goal = target.getBlockPos();
+
+        if (!start.isWithinDistance(goal, MAX_DISTANCE)) {
+            double scale = MAX_DISTANCE / Math.sqrt(start.getSquaredDistance(goal));
+            goal = BlockPos.ofFloored(start.getX() + (goal.getX() - start.getX()) * scale, goal.getY(), start.getZ() + (goal.getZ() - start.getZ()) * scale);
+        }
+
+        snapshot = new PathPlanner.Snapshot(mc.world, start, goal, SNAPSHOT_MARGIN);
+        planner = new PathPlanner(snapshot, start, goal, 1, MAX_NODES);
+
+        invalidated = false;
+        ticksSincePlan = 0;
+    }
+
+    @EventHandler
+    private void onBlockUpdate(BlockUpdateEvent event) {
+        int x = event.pos.getX();
+        int y = event.pos.getY();
+        int z = event.pos.getZ();
+
+        if (planner != null) {
+            // The snapshot of the running search is outdated, plan again once it finishes
+            if (snapshot.contains(x, y, z)) invalidated = true;
+            return;
+        }
+
+        if (plannedPath == null) return;
+
+        // A node depends on the floor below it and the two blocks the player is in
+        for (int i = pathIndex; i < plannedPath.size(); i++) {
+            long pos = plannedPath.getLong(i);
+            int dy = y - BlockPos.unpackLongY(pos);
+
+            if (BlockPos.unpackLongX(pos) == x && BlockPos.unpackLongZ(pos) == z && dy >= -1 && dy <= 2) {
+                invalidated = true;
+                break;
+            }
+        }
+    }
+
+    // Walking
+
     @EventHandler
     private void moveEventListener(PlayerMoveEvent event) {
         if (target != null && mc.player != null) {
             if (!PlayerUtils.isWithin(target, 3)) {
-                if (currentPathBlock == null) currentPathBlock = getNextPathBlock();
-                if (mc.player.getPos().distanceTo(new Vec3d(currentPathBlock.blockPos.getX(), currentPathBlock.blockPos.getY(), currentPathBlock.blockPos.getZ())) < .1)
-                    currentPathBlock = getNextPathBlock();
+                // Only advance once the current waypoint is reached, a new plan resets it in onTick
+                if (currentPathBlock == null || isReached(currentPathBlock.blockPos.asLong())) currentPathBlock = getNextPathBlock();
                 lookAtDestination(currentPathBlock);
                 if (!mc.options.forwardKey.isPressed())
                     mc.options.forwardKey.setPressed(true);
+
+                boolean jump = mc.player.isOnGround() && currentPathBlock.blockPos.getY() > mc.player.getY() + 0.5;
+                if (mc.options.jumpKey.isPressed() != jump) mc.options.jumpKey.setPressed(jump);
             } else {
                 if (mc.options.forwardKey.isPressed())
                     mc.options.forwardKey.setPressed(false);
+                if (mc.options.jumpKey.isPressed())
+                    mc.options.jumpKey.setPressed(false);
                 path.clear();
                 currentPathBlock = null;
             }
@@ -153,6 +299,7 @@ public class PathFinder {
 
     public void initiate(Entity entity) {
         target = entity;
+        clearPath();
         if (target != null) currentPathBlock = getNextPathBlock();
         MeteorClient.EVENT_BUS.subscribe(this);
     }
@@ -160,10 +307,20 @@ public class PathFinder {
     public void disable() {
         target = null;
         path.clear();
+        clearPath();
         if (mc.options.forwardKey.isPressed()) mc.options.forwardKey.setPressed(false);
+        if (mc.options.jumpKey.isPressed()) mc.options.jumpKey.setPressed(false);
         MeteorClient.EVENT_BUS.unsubscribe(this);
     }
 
+    private void clearPath() {
+        planner = null;
+        snapshot = null;
+        plannedPath = null;
+        invalidated = false;
+        ticksSincePlan = REPLAN_DELAY;
+    }
+
     public class PathBlock {
         public final Block block;
         public final BlockPos blockPos;
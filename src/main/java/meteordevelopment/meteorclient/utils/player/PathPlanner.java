@@ -0,0 +1,444 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.player;
+
+import it.unimi.dsi.fastutil.longs.*;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.Arrays;
+
+/**
+ * A* search for a walking path over a {@link Snapshot} of the world. Positions are the blocks the feet are in, packed
+ * with {@link BlockPos#asLong(int, int, int)}. Moves are walking to one of the 8 surrounding blocks, stepping up one
+ * block and dropping down at most {@link #MAX_DROP} blocks.
+ * <p>
+ * The search does not touch the world, so it can be stepped on any thread with {@link #step(int)}. When the goal can't
+ * be reached within the node limit the path to the node closest to the goal is returned instead.
+ */
+public class PathPlanner {
+    public static final int MAX_DROP = 3;
+
+    private static final float SQRT_2 = (float) Math.sqrt(2);
+    private static final float WALK_COST = 1, DIAGONAL_COST = SQRT_2, STEP_UP_COST = 2, DROP_COST = 0.5f;
+
+    private static final byte UNKNOWN = 0, PASSABLE = 1, FLOOR = 2, BLOCKED = 3;
+
+    private final Snapshot snapshot;
+    private final long goal;
+    private final int goalX, goalY, goalZ;
+    private final int goalRange;
+    private final int maxNodes;
+
+    private final Long2ByteMap blocks = new Long2ByteOpenHashMap();
+    private final Long2IntMap nodeIds = new Long2IntOpenHashMap();
+
+    // Nodes
+    private long[] positions = new long[256];
+    private float[] costs = new float[256];
+    private float[] estimates = new float[256];
+    private int[] parents = new int[256];
+    private int[] heapIndices = new int[256];
+    private int nodeCount;
+
+    // Binary min heap of node ids ordered by cost + estimate
+    private int[] heap = new int[256];
+    private int heapSize;
+
+    private int closestNode;
+    private boolean finished, reachedGoal;
+    private LongList path;
+
+    private int expandedNodes;
+    private long time;
+
+    /**
+     * @param goalRange how far away horizontally and vertically from the goal a node can be to count as reaching it
+     * @param maxNodes  maximum amount of nodes expanded before the search gives up
+     */
+    public PathPlanner(Snapshot snapshot, BlockPos start, BlockPos goal, int goalRange, int maxNodes) {
+        this.snapshot = snapshot;
+        this.goal = goal.asLong();
+        this.goalX = goal.getX();
+        this.goalY = goal.getY();
+        this.goalZ = goal.getZ();
+        this.goalRange = goalRange;
+        this.maxNodes = maxNodes;
+
+        nodeIds.defaultReturnValue(-1);
+        blocks.defaultReturnValue(UNKNOWN);
+
+        closestNode = addNode(start.asLong(), 0, -1);
+    }
+
+    // Searching
+
+    /**
+     * Expands at most the given amount of nodes.
+     * @return true if the search has finished
+     */
+    public boolean step(int budget) {
+        if (finished) return true;
+        long start = System.nanoTime();
+
+        while (budget-- > 0) {
+            if (heapSize == 0 || expandedNodes >= maxNodes) {
+                finish(closestNode);
+                break;
+            }
+
+            int node = poll();
+            long pos = positions[node];
+
+            int x = BlockPos.unpackLongX(pos);
+            int y = BlockPos.unpackLongY(pos);
+            int z = BlockPos.unpackLongZ(pos);
+
+            if (Math.abs(x - goalX) <= goalRange && Math.abs(y - goalY) <= goalRange && Math.abs(z - goalZ) <= goalRange) {
+                reachedGoal = true;
+                finish(node);
+                break;
+            }
+
+            expandedNodes++;
+            if (estimates[node] < estimates[closestNode]) closestNode = node;
+
+            expand(node, x, y, z);
+        }
+
+        time += System.nanoTime() - start;
+        return finished;
+    }
+
+    private void expand(int node, int x, int y, int z) {
+        float cost = costs[node];
+
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx == 0 && dz == 0) continue;
+
+                int nx = x + dx;
+                int nz = z + dz;
+
+                if (dx != 0 && dz != 0) {
+                    // Diagonal moves can't cut corners
+                    if (!isOpen(x + dx, y, z) || !isOpen(x, y, z + dz)) continue;
+                    if (canStand(nx, y, nz)) open(BlockPos.asLong(nx, y, nz), cost + DIAGONAL_COST, node);
+
+                    continue;
+                }
+
+                if (canStand(nx, y, nz)) {
+                    open(BlockPos.asLong(nx, y, nz), cost + WALK_COST, node);
+                    continue;
+                }
+
+                // Step up
+                if (get(x, y + 2, z) == PASSABLE && canStand(nx, y + 1, nz)) {
+                    open(BlockPos.asLong(nx, y + 1, nz), cost + STEP_UP_COST, node);
+                    continue;
+                }
+
+                // Drop down
+                if (!isOpen(nx, y, nz)) continue;
+
+                for (int drop = 1; drop <= MAX_DROP; drop++) {
+                    if (get(nx, y - drop, nz) != PASSABLE) break;
+
+                    if (get(nx, y - drop - 1, nz) == FLOOR) {
+                        open(BlockPos.asLong(nx, y - drop, nz), cost + WALK_COST + drop * DROP_COST, node);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void open(long pos, float cost, int parent) {
+        int node = nodeIds.get(pos);
+
+        if (node == -1) {
+            addNode(pos, cost, parent);
+            return;
+        }
+
+        // Closed nodes have a heap index of -1, the heuristic is consistent so they never have to be opened again
+        if (heapIndices[node] == -1 || cost >= costs[node]) return;
+
+        costs[node] = cost;
+        parents[node] = parent;
+        siftUp(heapIndices[node]);
+    }
+
+    private int addNode(long pos, float cost, int parent) {
+        if (nodeCount >= positions.length) {
+            int size = nodeCount * 2;
+
+            positions = Arrays.copyOf(positions, size);
+            costs = Arrays.copyOf(costs, size);
+            estimates = Arrays.copyOf(estimates, size);
+            parents = Arrays.copyOf(parents, size);
+            heapIndices = Arrays.copyOf(heapIndices, size);
+        }
+
+        int node = nodeCount++;
+
+        positions[node] = pos;
+        costs[node] = cost;
+        estimates[node] = estimate(pos);
+        parents[node] = parent;
+        nodeIds.put(pos, node);
+
+        if (heapSize >= heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+
+        heap[heapSize] = node;
+        heapIndices[node] = heapSize;
+        siftUp(heapSize++);
+
+        return node;
+    }
+
+    /**
+     * Octile distance on the horizontal plane plus the cheapest vertical cost, never overestimates the real cost.
+     */
+    private float estimate(long pos) {
+        int dx = Math.abs(BlockPos.unpackLongX(pos) - goalX);
+        int dy = Math.abs(BlockPos.unpackLongY(pos) - goalY);
+        int dz = Math.abs(BlockPos.unpackLongZ(pos) - goalZ);
+
+        int min = Math.min(dx, dz);
+        int max = Math.max(dx, dz);
+
+        return (max - min) * WALK_COST + min * DIAGONAL_COST + dy * DROP_COST;
+    }
+
+    private void finish(int node) {
+        LongArrayList path = new LongArrayList();
+
+        for (int i = node; i != -1; i = parents[i]) path.add(positions[i]);
+
+        // Reverse so the path starts with the first node after the start
+        path.removeLong(path.size() - 1);
+        for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+            long temp = path.getLong(i);
+            path.set(i, path.getLong(j));
+            path.set(j, temp);
+        }
+
+        this.path = path;
+        finished = true;
+    }
+
+    // Blocks
+
+    private boolean canStand(int x, int y, int z) {
+        return get(x, y - 1, z) == FLOOR && get(x, y, z) == PASSABLE && get(x, y + 1, z) == PASSABLE;
+    }
+
+    private boolean isOpen(int x, int y, int z) {
+        return get(x, y, z) == PASSABLE && get(x, y + 1, z) == PASSABLE;
+    }
+
+    private byte get(int x, int y, int z) {
+        long pos = BlockPos.asLong(x, y, z);
+        byte type = blocks.get(pos);
+
+        if (type == UNKNOWN) {
+            type = getType(snapshot.get(x, y, z));
+            blocks.put(pos, type);
+        }
+
+        return type;
+    }
+
+    private static byte getType(BlockState state) {
+        // Blocks outside of the snapshot are never walked through
+        if (state == null) return BLOCKED;
+        if (state.isOf(Blocks.FIRE) || state.isOf(Blocks.SOUL_FIRE) || state.isOf(Blocks.COBWEB) || state.isOf(Blocks.SWEET_BERRY_BUSH) || state.isOf(Blocks.POWDER_SNOW)) return BLOCKED;
+
+        FluidState fluid = state.getFluidState();
+        if (fluid.isIn(FluidTags.LAVA)) return BLOCKED;
+
+        VoxelShape shape = state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+        if (shape.isEmpty()) return PASSABLE;
+
+        // Fences and walls can't be stepped on
+        if (shape.getMax(Direction.Axis.Y) > 1 || !fluid.isEmpty()) return BLOCKED;
+        if (state.isOf(Blocks.MAGMA_BLOCK) || state.isOf(Blocks.CACTUS)) return BLOCKED;
+
+        return FLOOR;
+    }
+
+    // Heap
+
+    private int poll() {
+        int node = heap[0];
+        heapIndices[node] = -1;
+
+        heapSize--;
+
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndices[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        return node;
+    }
+
+    private float priority(int node) {
+        return costs[node] + estimates[node];
+    }
+
+    private void siftUp(int i) {
+        int node = heap[i];
+        float priority = priority(node);
+
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (priority(heap[parent]) <= priority) break;
+
+            heap[i] = heap[parent];
+            heapIndices[heap[i]] = i;
+            i = parent;
+        }
+
+        heap[i] = node;
+        heapIndices[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = heap[i];
+        float priority = priority(node);
+
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= heapSize) break;
+
+            if (child + 1 < heapSize && priority(heap[child + 1]) < priority(heap[child])) child++;
+            if (priority <= priority(heap[child])) break;
+
+            heap[i] = heap[child];
+            heapIndices[heap[i]] = i;
+            i = child;
+        }
+
+        heap[i] = node;
+        heapIndices[node] = i;
+    }
+
+    // Results
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if the path leads to the goal and not just to the closest node found
+     */
+    public boolean hasReachedGoal() {
+        return reachedGoal;
+    }
+
+    /**
+     * @return the packed positions from the first node after the start up to the last node, null until finished
+     */
+    public LongList getPath() {
+        return path;
+    }
+
+    public long getGoal() {
+        return goal;
+    }
+
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * @return nanoseconds spent searching
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public double getNodesPerSecond() {
+        return time == 0 ? 0 : expandedNodes / (time / 1_000_000_000.0);
+    }
+
+    /**
+     * Copy of the block states of the sections in a box, taken on the main thread and read by the search on any thread.
+     */
+    public static class Snapshot {
+        private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        private final int minX, minY, minZ, maxX, maxY, maxZ;
+
+        private long lastKey = Long.MIN_VALUE;
+        private PalettedContainer<BlockState> lastSection;
+
+        /**
+         * Copies all loaded sections around the two positions, expanded by the margin.
+         */
+        public Snapshot(World world, BlockPos from, BlockPos to, int margin) {
+            minX = (Math.min(from.getX(), to.getX()) - margin) >> 4;
+            minY = Math.max(Math.min(from.getY(), to.getY()) - margin, world.getBottomY()) >> 4;
+            minZ = (Math.min(from.getZ(), to.getZ()) - margin) >> 4;
+
+            maxX = (Math.max(from.getX(), to.getX()) + margin) >> 4;
+            maxY = Math.min(Math.max(from.getY(), to.getY()) + margin, world.getTopY() - 1) >> 4;
+            maxZ = (Math.max(from.getZ(), to.getZ()) + margin) >> 4;
+
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    Chunk chunk = world.getChunk(cx, cz, ChunkStatus.FULL, false);
+                    if (chunk == null) continue;
+
+                    for (int cy = minY; cy <= maxY; cy++) {
+                        ChunkSection section = chunk.getSection(chunk.sectionCoordToIndex(cy));
+                        sections.put(ChunkSectionPos.asLong(cx, cy, cz), section.getBlockStateContainer().copy());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return if the position is inside the box of sections copied by the snapshot, safe to call from any thread
+         */
+        public boolean contains(int x, int y, int z) {
+            x >>= 4;
+            y >>= 4;
+            z >>= 4;
+
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        /**
+         * @return the block state or null if the position is outside of the snapshot
+         */
+        public BlockState get(int x, int y, int z) {
+            long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+
+            if (key != lastKey) {
+                lastSection = sections.get(key);
+                lastKey = key;
+            }
+
+            return lastSection == null ? null : lastSection.get(x & 15, y & 15, z & 15);
+        }
+    }
+}
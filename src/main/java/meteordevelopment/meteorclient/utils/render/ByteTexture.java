@@ -60,6 +60,23 @@ public class ByteTexture extends AbstractTexture {
         glTexImage2D(GL_TEXTURE_2D, 0, format.toOpenGL(), width, height, 0, format.toOpenGL(), GL_UNSIGNED_BYTE, buffer);
     }
 
+    /**
+     * Replaces a region of the texture, the buffer has to contain exactly {@code width * height} pixels.
+     */
+    public void upload(int x, int y, int width, int height, ByteBuffer buffer, Format format) {
+        bindTexture();
+
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, 0);
+        glPixelStorei(GL_UNPACK_SKIP_ROWS, 0);
+        glPixelStorei(GL_UNPACK_SKIP_PIXELS, 0);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        ((Buffer) buffer).rewind();
+        glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, width, height, format.toOpenGL(), GL_UNSIGNED_BYTE, buffer);
+
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
     @Override
     public void load(ResourceManager manager) throws IOException {}
 
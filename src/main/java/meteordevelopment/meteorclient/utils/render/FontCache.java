@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.render;
+
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.renderer.text.FontInfo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the {@link FontInfo} of every system font file by its path, size and last modified time so fonts only have
+ * to be parsed again when they change.
+ */
+public class FontCache {
+    private static final File FILE = new File(MeteorClient.FOLDER, "fonts.cache");
+    private static final int VERSION = 1;
+
+    /**
+     * @param info {@code null} if the file is not a valid font
+     */
+    public record Entry(String path, long size, long lastModified, FontInfo info) {
+        public boolean matches(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+
+    public static Map<String, Entry> load() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!FILE.exists()) return entries;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(FILE), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.equals("version " + VERSION)) return entries;
+
+            while ((line = reader.readLine()) != null) {
+                // path \t size \t last modified [\t family \t type]
+                String[] values = line.split("\t");
+                if (values.length != 3 && values.length != 5) continue;
+
+                FontInfo info = values.length == 5 ? new FontInfo(values[3], FontInfo.Type.valueOf(values[4])) : null;
+                entries.put(values[0], new Entry(values[0], Long.parseLong(values[1]), Long.parseLong(values[2]), info));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            MeteorClient.LOG.error("Failed to read font cache", e);
+            entries.clear();
+        }
+
+        return entries;
+    }
+
+    public static void save(Collection<Entry> entries) {
+        File tempFile = new File(MeteorClient.FOLDER, "fonts.cache.tmp");
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            writer.write("version " + VERSION + "\n");
+
+            for (Entry entry : entries) {
+                writer.write(entry.path() + "\t" + entry.size() + "\t" + entry.lastModified());
+                if (entry.info() != null) writer.write("\t" + entry.info().family() + "\t" + entry.info().type().name());
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to write font cache", e);
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            MeteorClient.LOG.error("Failed to write font cache", e);
+        }
+    }
+}
@@ -20,9 +20,8 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.*;
 
 public class FontUtils {
 
@@ -103,19 +102,38 @@ public class FontUtils {
         }
     }
 
-    public static void loadSystem(List<FontFamily> fontList, File dir) {
+    /**
+     * Collects all font files in the search paths, only files that are not in the cache or changed since are parsed.
+     */
+    public static List<FontCache.Entry> scanSystem(Map<String, FontCache.Entry> cache) {
+        List<File> files = new ArrayList<>();
+        for (String fontPath : getSearchPaths()) collectFiles(new File(fontPath), files);
+
+        return files.parallelStream().map(file -> {
+            String path = file.getAbsolutePath();
+
+            FontCache.Entry entry = cache.get(path);
+            if (entry != null && entry.matches(file)) return entry;
+
+            return new FontCache.Entry(path, file.length(), file.lastModified(), getSysFontInfo(file));
+        }).toList();
+    }
+
+    private static void collectFiles(File dir, List<File> files) {
         if (!dir.exists() || !dir.isDirectory()) return;
 
-        File[] files = dir.listFiles((file) -> (file.isFile() && file.getName().endsWith(".ttf") || file.isDirectory()));
-        if (files == null) return;
+        File[] children = dir.listFiles((file) -> (file.isFile() && file.getName().endsWith(".ttf") || file.isDirectory()));
+        if (children == null) return;
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                loadSystem(fontList, file);
-                continue;
-            }
+        for (File file : children) {
+            if (file.isDirectory()) collectFiles(file, files);
+            else files.add(file);
+        }
+    }
 
-            FontInfo fontInfo = FontUtils.getSysFontInfo(file);
+    public static void loadSystem(List<FontFamily> fontList, Collection<FontCache.Entry> entries) {
+        for (FontCache.Entry entry : entries) {
+            FontInfo fontInfo = entry.info();
             if (fontInfo == null) continue;
 
             boolean isBuiltin = false;
@@ -127,7 +145,7 @@ public class FontUtils {
             }
             if (isBuiltin) continue;
 
-            FontFace fontFace = new SystemFontFace(fontInfo, file.toPath());
+            FontFace fontFace = new SystemFontFace(fontInfo, Path.of(entry.path()));
             if (!addFont(fontList, fontFace)) {
                 MeteorClient.LOG.warn("Failed to load system font {}", fontFace);
             }
@@ -139,7 +157,14 @@ public class FontUtils {
 
         FontInfo info = font.info;
 
-        FontFamily family = Fonts.getFamily(info.family());
+        FontFamily family = null;
+        for (FontFamily fontFamily : fontList) {
+            if (fontFamily.getName().equalsIgnoreCase(info.family())) {
+                family = fontFamily;
+                break;
+            }
+        }
+
         if (family == null) {
             family = new FontFamily(info.family());
             fontList.add(family);
@@ -0,0 +1,551 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.world;
+
+import it.unimi.dsi.fastutil.longs.*;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.utils.PreInit;
+import meteordevelopment.meteorclient.utils.Utils;
+import meteordevelopment.orbit.EventHandler;
+import meteordevelopment.orbit.EventPriority;
+import net.minecraft.block.AirBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Keeps track of which loaded blocks match a set of subscribed predicates. Instead of sweeping the area around the
+ * player every tick like {@link BlockIterator}, chunks are scanned once when they are received and positions are
+ * re-tested only when a {@link BlockUpdateEvent} touches them. Subscribers are notified about added and removed
+ * positions on the main thread.
+ */
+public class BlockScanner {
+    private static final List<Subscription> subscriptions = new ArrayList<>();
+
+    private static final LongSet pendingChunks = new LongLinkedOpenHashSet();
+    /** Scanned chunks mapped to their bottom and top section coordinates, packed with {@link #packSections(int, int)}. */
+    private static final Long2LongMap scannedChunks = new Long2LongOpenHashMap();
+
+    private static final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+    private static final BlockState AIR_STATE = Blocks.AIR.getDefaultState();
+    private static final int AIR = Block.getRawIdFromState(AIR_STATE);
+
+    /** Maximum amount of time spent scanning newly received chunks each tick. */
+    private static final long SCAN_BUDGET_NS = 4_000_000;
+
+    private static ClientWorld world;
+
+    private static long lastTickTime;
+    private static int ticks;
+
+    @PreInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(BlockScanner.class);
+    }
+
+    // Subscriptions
+
+    /**
+     * Subscribes to all loaded positions matching the predicate. All currently loaded chunks are (re)scanned over the
+     * next ticks, so the listener will receive additions for already existing matches.
+     */
+    public static Subscription subscribe(String name, Predicate predicate, Listener listener) {
+        Subscription subscription = new Subscription(name, predicate, listener);
+        subscriptions.add(subscription);
+
+        if (Utils.canUpdate()) {
+            for (Chunk chunk : Utils.chunks()) pendingChunks.add(chunk.getPos().toLong());
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Removes the subscription. The listener is not notified about the removal of its matches.
+     */
+    public static void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        subscription.sections.clear();
+        subscription.size = 0;
+    }
+
+    public static List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    // Metrics
+
+    /** Time in nanoseconds spent by the scanner during the last tick, including listener callbacks. */
+    public static long getLastTickTime() {
+        return lastTickTime;
+    }
+
+    public static int getPendingChunks() {
+        return pendingChunks.size();
+    }
+
+    // Events
+
+    @EventHandler
+    private static void onChunkData(ChunkDataEvent event) {
+        if (subscriptions.isEmpty()) return;
+        checkWorld();
+
+        pendingChunks.add(event.chunk.getPos().toLong());
+    }
+
+    @EventHandler(priority = EventPriority.HIGH)
+    private static void onBlockUpdate(BlockUpdateEvent event) {
+        if (subscriptions.isEmpty()) return;
+        checkWorld();
+
+        int x = event.pos.getX();
+        int y = event.pos.getY();
+        int z = event.pos.getZ();
+        if (!scannedChunks.containsKey(ChunkPos.toLong(x >> 4, z >> 4))) return;
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < subscriptions.size(); i++) {
+            Subscription subscription = subscriptions.get(i);
+            long subscriptionStart = System.nanoTime();
+
+            int r = subscription.predicate.range();
+            if (r == 0) subscription.test(x, y, z, event.newState);
+            else subscription.scan(x - r, y - r, z - r, x + r, y + r, z + r);
+
+            subscription.lastTickTime += System.nanoTime() - subscriptionStart;
+        }
+
+        lastTickTime += System.nanoTime() - start;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST + 1)
+    private static void onTickPre(TickEvent.Pre event) {
+        lastTickTime = 0;
+        for (Subscription subscription : subscriptions) {
+            subscription.totalTime += subscription.lastTickTime;
+            subscription.lastTickTime = 0;
+        }
+    }
+
+    @EventHandler
+    private static void onTickPost(TickEvent.Post event) {
+        if (!Utils.canUpdate() || subscriptions.isEmpty()) return;
+        checkWorld();
+
+        long start = System.nanoTime();
+
+        // Drop chunks that got unloaded, using the sections they had when they were scanned
+        if (ticks++ % 20 == 0) {
+            for (ObjectIterator<Long2LongMap.Entry> it = scannedChunks.long2LongEntrySet().iterator(); it.hasNext(); ) {
+                Long2LongMap.Entry entry = it.next();
+                int cx = ChunkPos.getPackedX(entry.getLongKey());
+                int cz = ChunkPos.getPackedZ(entry.getLongKey());
+
+                if (!mc.world.getChunkManager().isChunkLoaded(cx, cz)) {
+                    for (Subscription subscription : subscriptions) subscription.removeChunk(cx, cz, entry.getLongValue());
+                    it.remove();
+                }
+            }
+        }
+
+        // Scan received chunks
+        while (!pendingChunks.isEmpty() && System.nanoTime() - start < SCAN_BUDGET_NS) {
+            LongIterator it = pendingChunks.iterator();
+            long chunkPos = it.nextLong();
+            it.remove();
+
+            int cx = ChunkPos.getPackedX(chunkPos);
+            int cz = ChunkPos.getPackedZ(chunkPos);
+            if (!mc.world.getChunkManager().isChunkLoaded(cx, cz)) continue;
+
+            Chunk chunk = mc.world.getChunk(cx, cz);
+            scannedChunks.put(chunkPos, packSections(chunk.getBottomSectionCoord(), chunk.getTopSectionCoord() - 1));
+
+            for (Subscription subscription : subscriptions) {
+                long subscriptionStart = System.nanoTime();
+                subscription.scanChunk(chunk);
+
+                // Positions on the edge of already scanned neighbours might depend on blocks in this chunk
+                int r = subscription.predicate.range();
+                if (r > 0) {
+                    int minY = mc.world.getBottomY();
+                    int maxY = mc.world.getTopY() - 1;
+                    int x1 = cx << 4, z1 = cz << 4;
+
+                    if (scannedChunks.containsKey(ChunkPos.toLong(cx - 1, cz))) subscription.scan(x1 - r, minY, z1, x1 - 1, maxY, z1 + 15);
+                    if (scannedChunks.containsKey(ChunkPos.toLong(cx + 1, cz))) subscription.scan(x1 + 16, minY, z1, x1 + 15 + r, maxY, z1 + 15);
+                    if (scannedChunks.containsKey(ChunkPos.toLong(cx, cz - 1))) subscription.scan(x1, minY, z1 - r, x1 + 15, maxY, z1 - 1);
+                    if (scannedChunks.containsKey(ChunkPos.toLong(cx, cz + 1))) subscription.scan(x1, minY, z1 + 16, x1 + 15, maxY, z1 + 15 + r);
+                }
+
+                subscription.lastTickTime += System.nanoTime() - subscriptionStart;
+            }
+        }
+
+        lastTickTime += System.nanoTime() - start;
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        reset();
+        world = null;
+    }
+
+    // World
+
+    /**
+     * Drops everything known about the previous world when the client switches to another one, e.g. when changing
+     * dimensions, and queues the chunks already loaded in the new one.
+     */
+    private static void checkWorld() {
+        if (mc.world == world) return;
+
+        reset();
+        world = mc.world;
+
+        if (world != null) {
+            for (Chunk chunk : Utils.chunks()) pendingChunks.add(chunk.getPos().toLong());
+        }
+    }
+
+    private static void reset() {
+        pendingChunks.clear();
+        scannedChunks.clear();
+
+        for (Subscription subscription : subscriptions) subscription.clear();
+    }
+
+    private static long packSections(int bottom, int top) {
+        return ((long) bottom << 32) | (top & 0xFFFFFFFFL);
+    }
+
+    // Predicate
+
+    /**
+     * Results may only depend on the state and the blocks within {@link #range()} of a position, not on the position
+     * itself.
+     */
+    public interface Predicate {
+        /**
+         * @return a non zero value if the position matches, which is passed on to the listener
+         */
+        int test(BlockPos pos, BlockState state);
+
+        /**
+         * How far away blocks can influence the result of {@link #test(BlockPos, BlockState)}. When a block changes
+         * all positions in this radius are re-tested.
+         */
+        default int range() {
+            return 0;
+        }
+
+        /**
+         * Raw ids of the block states that can match, or null if any state can match. Used to skip whole chunk
+         * sections based on their palette.
+         */
+        default BitSet states() {
+            return null;
+        }
+
+        /**
+         * @return if air can match, in which case positions in empty sections are tested as well
+         */
+        default boolean matchesAir() {
+            BitSet states = states();
+            return states == null || states.get(AIR);
+        }
+
+        static Predicate blocks(Collection<Block> blocks) {
+            BitSet states = new BitSet();
+
+            for (Block block : blocks) {
+                for (BlockState state : block.getStateManager().getStates()) states.set(Block.getRawIdFromState(state));
+            }
+
+            return new Predicate() {
+                @Override
+                public int test(BlockPos pos, BlockState state) {
+                    return states.get(Block.getRawIdFromState(state)) ? 1 : 0;
+                }
+
+                @Override
+                public BitSet states() {
+                    return states;
+                }
+            };
+        }
+
+        /**
+         * Air above a floor mobs can spawn on, see {@link BlockUtils#canMobSpawnAt(BlockPos, BlockState)}. The light
+         * level is not part of the predicate since it changes without block updates.
+         */
+        static Predicate mobSpawns() {
+            BitSet states = new BitSet();
+
+            for (Block block : Registries.BLOCK) {
+                if (!(block instanceof AirBlock)) continue;
+
+                for (BlockState state : block.getStateManager().getStates()) states.set(Block.getRawIdFromState(state));
+            }
+
+            return new Predicate() {
+                @Override
+                public int test(BlockPos pos, BlockState state) {
+                    return BlockUtils.canMobSpawnAt(pos, state) ? 1 : 0;
+                }
+
+                // The floor is the block below
+                @Override
+                public int range() {
+                    return 1;
+                }
+
+                @Override
+                public BitSet states() {
+                    return states;
+                }
+            };
+        }
+    }
+
+    public interface Listener {
+        /**
+         * @param value the result of {@link Predicate#test(BlockPos, BlockState)}
+         */
+        void onAdded(long pos, BlockState state, int value);
+
+        void onRemoved(long pos);
+
+        /**
+         * Called when a position which already matched was tested again and still matches, used by listeners which
+         * keep data derived from the blocks around a match.
+         */
+        default void onRetested(long pos, BlockState state, int value) {}
+    }
+
+    // Subscription
+
+    public static class Subscription {
+        public final String name;
+
+        private final Predicate predicate;
+        private final Listener listener;
+
+        private final Long2ObjectMap<LongSet> sections = new Long2ObjectOpenHashMap<>();
+        private int size;
+
+        private long lastTickTime, totalTime;
+
+        private Subscription(String name, Predicate predicate, Listener listener) {
+            this.name = name;
+            this.predicate = predicate;
+            this.listener = listener;
+        }
+
+        /** Number of currently matching positions. */
+        public int size() {
+            return size;
+        }
+
+        public boolean contains(int x, int y, int z) {
+            LongSet section = sections.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+            return section != null && section.contains(BlockPos.asLong(x, y, z));
+        }
+
+        /** Iterates over all matching positions in the given chunk section. */
+        public LongIterator iterator(int sectionX, int sectionY, int sectionZ) {
+            LongSet section = sections.get(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+            return section == null ? LongIterators.EMPTY_ITERATOR : section.iterator();
+        }
+
+        /** Calls the action for every matching position inside the box, all coordinates are inclusive. */
+        public void forEach(int x1, int y1, int z1, int x2, int y2, int z2, LongConsumer action) {
+            for (int sectionX = x1 >> 4; sectionX <= x2 >> 4; sectionX++) {
+                for (int sectionZ = z1 >> 4; sectionZ <= z2 >> 4; sectionZ++) {
+                    for (int sectionY = y1 >> 4; sectionY <= y2 >> 4; sectionY++) {
+                        for (LongIterator it = iterator(sectionX, sectionY, sectionZ); it.hasNext(); ) {
+                            long pos = it.nextLong();
+
+                            int x = BlockPos.unpackLongX(pos);
+                            int y = BlockPos.unpackLongY(pos);
+                            int z = BlockPos.unpackLongZ(pos);
+
+                            if (x >= x1 && x <= x2 && y >= y1 && y <= y2 && z >= z1 && z <= z2) action.accept(pos);
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Time in nanoseconds spent on this subscription during the last full tick. */
+        public long getLastTickTime() {
+            return lastTickTime;
+        }
+
+        /** Total time in nanoseconds spent on this subscription since it was created. */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        private void test(int x, int y, int z, BlockState state) {
+            long key = BlockPos.asLong(x, y, z);
+            long sectionKey = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            LongSet section = sections.get(sectionKey);
+
+            int value = predicate.test(blockPos.set(x, y, z), state);
+            boolean matches = value != 0;
+            boolean matched = section != null && section.contains(key);
+
+            if (matches && !matched) {
+                if (section == null) {
+                    section = new LongOpenHashSet();
+                    sections.put(sectionKey, section);
+                }
+
+                section.add(key);
+                size++;
+                listener.onAdded(key, state, value);
+            }
+            else if (!matches && matched) {
+                section.remove(key);
+                if (section.isEmpty()) sections.remove(sectionKey);
+
+                size--;
+                listener.onRemoved(key);
+            }
+            else if (matches) listener.onRetested(key, state, value);
+        }
+
+        private void scan(int x1, int y1, int z1, int x2, int y2, int z2) {
+            y1 = Math.max(y1, mc.world.getBottomY());
+            y2 = Math.min(y2, mc.world.getTopY() - 1);
+
+            for (int x = x1; x <= x2; x++) {
+                for (int z = z1; z <= z2; z++) {
+                    for (int y = y1; y <= y2; y++) {
+                        test(x, y, z, mc.world.getBlockState(blockPos.set(x, y, z)));
+                    }
+                }
+            }
+        }
+
+        private void scanChunk(Chunk chunk) {
+            BitSet states = predicate.states();
+            java.util.function.Predicate<BlockState> isTarget = states == null ? null : state -> states.get(Block.getRawIdFromState(state));
+
+            int startX = chunk.getPos().getStartX();
+            int startZ = chunk.getPos().getStartZ();
+            ChunkSection[] chunkSections = chunk.getSectionArray();
+
+            for (int i = 0; i < chunkSections.length; i++) {
+                ChunkSection section = chunkSections[i];
+                int sectionY = chunk.sectionIndexToCoord(i);
+
+                if (section == null || section.isEmpty()) {
+                    removeSection(chunk.getPos().x, sectionY, chunk.getPos().z);
+                    if (predicate.matchesAir()) scanEmptySection(chunk.getPos().x, sectionY, chunk.getPos().z);
+
+                    continue;
+                }
+
+                // Only previously matched positions can change in sections that cannot contain a match
+                if (isTarget != null && !section.getBlockStateContainer().hasAny(isTarget)) {
+                    removeSection(chunk.getPos().x, sectionY, chunk.getPos().z);
+                    continue;
+                }
+
+                int y1 = ChunkSectionPos.getBlockCoord(sectionY);
+
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int y = 0; y < 16; y++) {
+                            test(startX + x, y1 + y, startZ + z, section.getBlockState(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Every position of an empty section which is further than the range away from its faces only sees air, so a
+         * single one of them is tested for all. Positions close to a face are only tested when the section behind the
+         * face has blocks, neighbours which get blocks later re-test their edges when they are scanned.
+         */
+        private void scanEmptySection(int sectionX, int sectionY, int sectionZ) {
+            int x1 = sectionX << 4, y1 = sectionY << 4, z1 = sectionZ << 4;
+            int r = predicate.range();
+
+            if (r >= 8 || predicate.test(blockPos.set(x1 + 8, y1 + 8, z1 + 8), AIR_STATE) != 0) {
+                scan(x1, y1, z1, x1 + 15, y1 + 15, z1 + 15);
+                return;
+            }
+
+            if (r == 0) return;
+
+            if (hasBlocks(sectionX, sectionY - 1, sectionZ)) scan(x1, y1, z1, x1 + 15, y1 + r - 1, z1 + 15);
+            if (hasBlocks(sectionX, sectionY + 1, sectionZ)) scan(x1, y1 + 16 - r, z1, x1 + 15, y1 + 15, z1 + 15);
+            if (hasBlocks(sectionX - 1, sectionY, sectionZ)) scan(x1, y1, z1, x1 + r - 1, y1 + 15, z1 + 15);
+            if (hasBlocks(sectionX + 1, sectionY, sectionZ)) scan(x1 + 16 - r, y1, z1, x1 + 15, y1 + 15, z1 + 15);
+            if (hasBlocks(sectionX, sectionY, sectionZ - 1)) scan(x1, y1, z1, x1 + 15, y1 + 15, z1 + r - 1);
+            if (hasBlocks(sectionX, sectionY, sectionZ + 1)) scan(x1, y1, z1 + 16 - r, x1 + 15, y1 + 15, z1 + 15);
+        }
+
+        private static boolean hasBlocks(int sectionX, int sectionY, int sectionZ) {
+            Chunk chunk = mc.world.getChunk(sectionX, sectionZ, ChunkStatus.FULL, false);
+            if (chunk == null) return false;
+
+            int i = chunk.sectionCoordToIndex(sectionY);
+            if (i < 0 || i >= chunk.getSectionArray().length) return false;
+
+            ChunkSection section = chunk.getSectionArray()[i];
+            return section != null && !section.isEmpty();
+        }
+
+        private void removeSection(int sectionX, int sectionY, int sectionZ) {
+            LongSet section = sections.remove(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+            if (section == null) return;
+
+            size -= section.size();
+            for (LongIterator it = section.iterator(); it.hasNext(); ) listener.onRemoved(it.nextLong());
+        }
+
+        private void clear() {
+            for (LongSet section : sections.values()) {
+                for (LongIterator it = section.iterator(); it.hasNext(); ) listener.onRemoved(it.nextLong());
+            }
+
+            sections.clear();
+            size = 0;
+        }
+
+        private void removeChunk(int cx, int cz, long sections) {
+            int bottom = (int) (sections >> 32);
+            int top = (int) sections;
+
+            for (int sectionY = bottom; sectionY <= top; sectionY++) removeSection(cx, sectionY, cz);
+        }
+    }
+}
@@ -244,16 +244,31 @@ public class BlockUtils {
     }
 
     public static MobSpawn isValidMobSpawn(BlockPos blockPos, boolean newMobSpawnLightLevel) {
-        int spawnLightLimit = newMobSpawnLightLevel ? 0 : 7;
-        if (!(mc.world.getBlockState(blockPos).getBlock() instanceof AirBlock) ||
-            mc.world.getBlockState(blockPos.down()).getBlock() == Blocks.BEDROCK) return MobSpawn.Never;
+        if (!canMobSpawnAt(blockPos, mc.world.getBlockState(blockPos))) return MobSpawn.Never;
+        return getMobSpawnLight(blockPos, newMobSpawnLightLevel);
+    }
+
+    /**
+     * @return if the block and the floor below it allow mobs to spawn at the position, without checking the light level
+     */
+    public static boolean canMobSpawnAt(BlockPos blockPos, BlockState state) {
+        if (!(state.getBlock() instanceof AirBlock) || mc.world.getBlockState(blockPos.down()).getBlock() == Blocks.BEDROCK) return false;
 
         if (!topSurface(mc.world.getBlockState(blockPos.down()))) {
             if (mc.world.getBlockState(blockPos.down()).getCollisionShape(mc.world, blockPos.down()) != VoxelShapes.fullCube())
-                return MobSpawn.Never;
-            if (mc.world.getBlockState(blockPos.down()).isTransparent(mc.world, blockPos.down())) return MobSpawn.Never;
+                return false;
+            return !mc.world.getBlockState(blockPos.down()).isTransparent(mc.world, blockPos.down());
         }
 
+        return true;
+    }
+
+    /**
+     * @return if mobs can spawn at the position based on the light level, only valid if {@link #canMobSpawnAt(BlockPos, BlockState)}
+     */
+    public static MobSpawn getMobSpawnLight(BlockPos blockPos, boolean newMobSpawnLightLevel) {
+        int spawnLightLimit = newMobSpawnLightLevel ? 0 : 7;
+
         if (mc.world.getLightLevel(blockPos, 0) <= spawnLightLimit) return MobSpawn.Potential;
         else if (mc.world.getLightLevel(LightType.BLOCK, blockPos) <= spawnLightLimit) return MobSpawn.Always;
 
@@ -0,0 +1,281 @@
+/*
+ * This file is part of the Meteor Client distribution (https://github.com/MeteorDevelopment/meteor-client).
+ * Copyright (c) Meteor Development.
+ */
+
+package meteordevelopment.meteorclient.utils.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import meteordevelopment.meteorclient.mixin.AbstractBlockAccessor;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.BitSet;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Shared index of the 1x1 and 2x1 bedrock, obsidian and mixed holes in loaded chunks. Holes are found with a
+ * {@link BlockScanner} subscription, so chunks are classified once when they are received and only the blocks around a
+ * {@link meteordevelopment.meteorclient.events.world.BlockUpdateEvent} are classified again. A position is a hole if it
+ * is not collidable and its floor and walls are bedrock or obsidian, for double holes one of the walls can be the other
+ * half of the hole. The space above holes is not part of the index since modules require different heights.
+ */
+public class HoleIndex {
+    private static final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
+    private static final Long2ByteMap holes = new Long2ByteOpenHashMap();
+
+    private static BlockScanner.Subscription subscription;
+    private static int users;
+
+    private static final int BEDROCK = 1, OBSIDIAN = 2;
+
+    public enum Type {
+        Bedrock,
+        Obsidian,
+        Mixed
+    }
+
+    @FunctionalInterface
+    public interface HoleConsumer {
+        /**
+         * @param partner direction of the other half of a double hole, null for single holes
+         */
+        void accept(int x, int y, int z, Type type, Direction partner);
+    }
+
+    // Users
+
+    /**
+     * Starts tracking holes if no other module does already, must be paired with {@link #release()}. Holes in loaded
+     * chunks are found over the next ticks.
+     */
+    public static void acquire() {
+        if (users++ > 0) return;
+
+        subscription = BlockScanner.subscribe("holes", new HolePredicate(), new BlockScanner.Listener() {
+            @Override
+            public void onAdded(long pos, BlockState state, int value) {
+                holes.put(pos, (byte) value);
+            }
+
+            @Override
+            public void onRemoved(long pos) {
+                holes.remove(pos);
+            }
+
+            @Override
+            public void onRetested(long pos, BlockState state, int value) {
+                holes.put(pos, (byte) value);
+            }
+        });
+    }
+
+    public static void release() {
+        if (users <= 0 || --users > 0) return;
+
+        BlockScanner.unsubscribe(subscription);
+        subscription = null;
+        holes.clear();
+    }
+
+    public static int size() {
+        return holes.size();
+    }
+
+    // Queries
+
+    /**
+     * Calls the consumer for every hole inside the box, both halves of double holes are reported separately.
+     */
+    public static void forEach(int x1, int y1, int z1, int x2, int y2, int z2, HoleConsumer consumer) {
+        if (subscription == null) return;
+
+        for (int sectionX = x1 >> 4; sectionX <= x2 >> 4; sectionX++) {
+            for (int sectionZ = z1 >> 4; sectionZ <= z2 >> 4; sectionZ++) {
+                for (int sectionY = y1 >> 4; sectionY <= y2 >> 4; sectionY++) {
+                    for (LongIterator it = subscription.iterator(sectionX, sectionY, sectionZ); it.hasNext(); ) {
+                        long pos = it.nextLong();
+
+                        int x = BlockPos.unpackLongX(pos);
+                        int y = BlockPos.unpackLongY(pos);
+                        int z = BlockPos.unpackLongZ(pos);
+                        if (x < x1 || x > x2 || y < y1 || y > y2 || z < z1 || z > z2) continue;
+
+                        byte hole = holes.get(pos);
+                        consumer.accept(x, y, z, getType(hole), getPartner(hole));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the closest hole within the range accepted by the filter, or null if there is none
+     */
+    public static BlockPos getNearest(BlockPos pos, int range, Filter filter) {
+        BlockPos.Mutable nearest = new BlockPos.Mutable();
+        double[] nearestDistance = { Double.MAX_VALUE };
+
+        forEach(pos.getX() - range, pos.getY() - range, pos.getZ() - range, pos.getX() + range, pos.getY() + range, pos.getZ() + range, (x, y, z, type, partner) -> {
+            double distance = pos.getSquaredDistance(x, y, z);
+            if (distance > range * range || distance >= nearestDistance[0]) return;
+            if (filter != null && !filter.test(x, y, z, type, partner)) return;
+
+            nearest.set(x, y, z);
+            nearestDistance[0] = distance;
+        });
+
+        return nearestDistance[0] == Double.MAX_VALUE ? null : nearest.toImmutable();
+    }
+
+    /**
+     * @return if the position is one of the halves of a hole
+     */
+    public static boolean isHole(int x, int y, int z) {
+        return subscription != null && subscription.contains(x, y, z);
+    }
+
+    /**
+     * @return the direction of the other half of the double hole at the position, null for single holes and positions
+     * which are not a hole
+     */
+    public static Direction getPartner(int x, int y, int z) {
+        if (!isHole(x, y, z)) return null;
+        return getPartner(holes.get(BlockPos.asLong(x, y, z)));
+    }
+
+    /**
+     * Classifies the position again against the current blocks, for modules which act on a hole and can't rely on the
+     * index having seen the latest block updates.
+     *
+     * @return if the position is still one of the halves of a hole
+     */
+    public static boolean verify(int x, int y, int z) {
+        return !isCollidable(mc.world.getBlockState(blockPos.set(x, y, z))) && classify(x, y, z) != 0;
+    }
+
+    /**
+     * @return the amount of blocks above the position, including itself, which are not collidable up to max
+     */
+    public static int getOpenHeight(int x, int y, int z, int max) {
+        for (int i = 0; i < max; i++) {
+            if (isCollidable(mc.world.getBlockState(blockPos.set(x, y + i, z)))) return i;
+        }
+
+        return max;
+    }
+
+    @FunctionalInterface
+    public interface Filter {
+        boolean test(int x, int y, int z, Type type, Direction partner);
+    }
+
+    // Classification
+
+    private static Type getType(byte hole) {
+        return Type.values()[(hole & 3) - 1];
+    }
+
+    private static Direction getPartner(byte hole) {
+        int partner = hole >> 2;
+        return partner == 0 ? null : Direction.fromHorizontal(partner - 1);
+    }
+
+    private static boolean isCollidable(BlockState state) {
+        return ((AbstractBlockAccessor) state.getBlock()).isCollidable();
+    }
+
+    private static int getResistance(int x, int y, int z) {
+        Block block = mc.world.getBlockState(blockPos.set(x, y, z)).getBlock();
+
+        if (block == Blocks.BEDROCK) return BEDROCK;
+        if (block == Blocks.OBSIDIAN) return OBSIDIAN;
+        return 0;
+    }
+
+    /**
+     * @return the hole at the position as type and partner direction, 0 if there is none
+     */
+    private static int classify(int x, int y, int z) {
+        int floor = getResistance(x, y - 1, z);
+        if (floor == 0) return 0;
+
+        int blocks = floor;
+        Direction partner = null;
+
+        for (Direction dir : Direction.Type.HORIZONTAL) {
+            int wall = getResistance(x + dir.getOffsetX(), y, z + dir.getOffsetZ());
+
+            if (wall != 0) {
+                blocks |= wall;
+                continue;
+            }
+
+            // A wall can only be missing if the other half of a double hole is behind it
+            if (partner != null) return 0;
+
+            int px = x + dir.getOffsetX(), pz = z + dir.getOffsetZ();
+            if (isCollidable(mc.world.getBlockState(blockPos.set(px, y, pz)))) return 0;
+
+            int partnerFloor = getResistance(px, y - 1, pz);
+            if (partnerFloor == 0) return 0;
+            blocks |= partnerFloor;
+
+            for (Direction partnerDir : Direction.Type.HORIZONTAL) {
+                if (partnerDir == dir.getOpposite()) continue;
+
+                int partnerWall = getResistance(px + partnerDir.getOffsetX(), y, pz + partnerDir.getOffsetZ());
+                if (partnerWall == 0) return 0;
+                blocks |= partnerWall;
+            }
+
+            partner = dir;
+        }
+
+        int type = switch (blocks) {
+            case BEDROCK -> Type.Bedrock.ordinal();
+            case OBSIDIAN -> Type.Obsidian.ordinal();
+            default -> Type.Mixed.ordinal();
+        };
+
+        return (type + 1) | (partner == null ? 0 : (partner.getHorizontal() + 1) << 2);
+    }
+
+    private static class HolePredicate implements BlockScanner.Predicate {
+        private static final BitSet STATES = new BitSet();
+
+        static {
+            for (Block block : Registries.BLOCK) {
+                if (((AbstractBlockAccessor) block).isCollidable()) continue;
+
+                for (BlockState state : block.getStateManager().getStates()) STATES.set(Block.getRawIdFromState(state));
+            }
+        }
+
+        @Override
+        public int test(BlockPos pos, BlockState state) {
+            if (isCollidable(state)) return 0;
+            return classify(pos.getX(), pos.getY(), pos.getZ());
+        }
+
+        // Walls of the other half of a double hole are two blocks away
+        @Override
+        public int range() {
+            return 2;
+        }
+
+        // Sections without any open blocks can't contain holes
+        @Override
+        public BitSet states() {
+            return STATES;
+        }
+    }
+}